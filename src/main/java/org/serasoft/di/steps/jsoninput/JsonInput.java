@@ -22,10 +22,15 @@
 
 package org.serasoft.di.steps.jsoninput;
 
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.BitSet;
 
+import javax.management.JMException;
+
+import org.apache.commons.io.input.CountingInputStream;
 import org.apache.commons.lang.NotImplementedException;
 import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
@@ -43,6 +48,7 @@ import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.core.vfs.KettleVFS;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransAdapter;
 import org.pentaho.di.trans.TransMeta;
 import org.pentaho.di.trans.step.StepDataInterface;
 import org.pentaho.di.trans.step.StepInterface;
@@ -50,9 +56,20 @@ import org.pentaho.di.trans.step.StepMeta;
 import org.pentaho.di.trans.step.StepMetaInterface;
 import org.pentaho.di.trans.steps.file.BaseFileInputStep;
 import org.pentaho.di.trans.steps.file.IBaseFileInputReader;
+import org.serasoft.di.steps.jsoninput.reader.BadRecordException;
+import org.serasoft.di.steps.jsoninput.reader.ColumnarJsonReader;
 import org.serasoft.di.steps.jsoninput.reader.FastJsonReader;
+import org.serasoft.di.steps.jsoninput.reader.FileStateStore;
+import org.serasoft.di.steps.jsoninput.reader.IJsonReader;
+import org.serasoft.di.steps.jsoninput.reader.InputMetrics;
 import org.serasoft.di.steps.jsoninput.reader.InputsReader;
+import org.serasoft.di.steps.jsoninput.reader.JsonLinesReader;
+import org.serasoft.di.steps.jsoninput.reader.LazyRowSet;
 import org.serasoft.di.steps.jsoninput.reader.RowOutputConverter;
+import org.serasoft.di.steps.jsoninput.reader.SpilledRowSet;
+import org.serasoft.di.steps.jsoninput.reader.StreamingJsonReader;
+import org.serasoft.di.steps.jsoninput.reader.StringInputStream;
+import org.serasoft.di.steps.jsoninput.reader.ValueDictionary;
 
 /**
  * Read Json files, parse them and convert them to rows and writes these to one or more output streams.
@@ -76,6 +93,7 @@ public class JsonInput extends BaseFileInputStep<JsonInputMeta, JsonInputData> i
         data.rownr = 1L;
         data.nrInputFields = meta.getInputFields().length;
         data.repeatedFields = new BitSet(data.nrInputFields);
+        data.dedupedFields = new BitSet(data.nrInputFields);
         // Take care of variable substitution
         for (int i = 0; i < data.nrInputFields; i++) {
             JsonInputField field = meta.getInputFields()[i];
@@ -83,6 +101,19 @@ public class JsonInput extends BaseFileInputStep<JsonInputMeta, JsonInputData> i
             if (field.isRepeated()) {
                 data.repeatedFields.set(i);
             }
+            if (field.isDeduplicated()) {
+                data.dedupedFields.set(i);
+            }
+        }
+        if (!data.dedupedFields.isEmpty()) {
+            data.dictionary = new ValueDictionary(ValueDictionary.DEFAULT_MAX_ENTRIES);
+        }
+        data.metrics = new InputMetrics();
+        try {
+            data.metrics.register(Const.NVL(getTransMeta().getName(), ""), getStepname(), getCopy());
+        } catch (JMException e) {
+            // the step runs as well without them
+            logBasic(BaseMessages.getString(PKG, "JsonInput.Log.MetricsNotRegistered", e.toString()));
         }
         try {
             // Init a new JSON reader
@@ -188,11 +219,40 @@ public class JsonInput extends BaseFileInputStep<JsonInputMeta, JsonInputData> i
 
         // Create convert meta-data objects that will contain Date & Number formatters
         data.convertRowMeta = data.outputRowMeta.cloneToType(ValueMetaInterface.TYPE_STRING);
+        if (meta.isIncremental() && (!meta.isInFields() || meta.getIsAFile())) {
+            openFileStates();
+        }
         data.inputs = new InputsReader(this, meta, data, new InputErrorHandler()).iterator();
         // data.recordnr = 0;
         data.readerRowSet = new QueueRowSet();
         data.readerRowSet.setDone();
-        this.rowOutputConverter = new RowOutputConverter(getLogChannel());
+        this.rowOutputConverter = new RowOutputConverter(data, getLogChannel());
+    }
+
+    /**
+     * Loads the files read by the previous runs, the files read by this one are added when the transformation ends
+     * without error.
+     */
+    private void openFileStates() throws KettleException {
+        if (Const.isEmpty(meta.getStateFile())) {
+            throw new KettleException(BaseMessages.getString(PKG, "JsonInputMeta.CheckResult.NoStateFile"));
+        }
+        final FileStateStore fileStates =
+                FileStateStore.load(environmentSubstitute(meta.getStateFile()), meta.isStateHash());
+        data.fileStates = fileStates;
+        getTrans().addTransListener(new TransAdapter() {
+            @Override
+            public void transFinished(Trans trans) throws KettleException {
+                if (trans.getErrors() > 0 || trans.isStopped()) {
+                    // the files of a failed run are read again by the next one
+                    return;
+                }
+                int processed = fileStates.getProcessed();
+                fileStates.commit();
+                logBasic(BaseMessages.getString(PKG, "JsonInput.Log.StateCommitted", processed,
+                        fileStates.getSkipped(), fileStates.getPath()));
+            }
+        });
     }
 
     private void addFileToResultFilesname(FileObject file) {
@@ -244,10 +304,16 @@ public class JsonInput extends BaseFileInputStep<JsonInputMeta, JsonInputData> i
         addFileToResultFilesname(file);
     }
 
-    private boolean parseNextInputToRowSet(InputStream input) throws KettleException {
+    private boolean parseNextInputToRowSet(InputStream input, long size) throws KettleException {
         if (input != null) {
             try {
-                data.readerRowSet = data.reader.parse(input);
+                boolean large = isLargeInput(size);
+                IJsonReader reader = large && data.largeInputReader != null ? data.largeInputReader : data.reader;
+                if (meta.getRowLimit() > 0) {
+                    // the reader stops parsing once it has given the rows left before the limit
+                    reader.setRowLimit(meta.getRowLimit() - data.rownr + 1);
+                }
+                data.readerRowSet = large ? parseLargeInput(input, size) : reader.parse(input);
                 return true;
             } catch (KettleException ke) {
                 logInputError(ke);
@@ -258,6 +324,31 @@ public class JsonInput extends BaseFileInputStep<JsonInputMeta, JsonInputData> i
         return false;
     }
 
+    /**
+     * @return true if the input is larger than the spill threshold and the reader would hold it whole
+     */
+    private boolean isLargeInput(long size) {
+        return meta.getSpillThreshold() > 0 && data.reader instanceof FastJsonReader
+                && size > meta.getSpillThreshold() * 1024L * 1024L;
+    }
+
+    /**
+     * Reads the input one record at a time when the paths allow it, or else parses the document whole and spills the
+     * rows after the parse: the values are written to temporary files and the document released once the paths are
+     * evaluated, which bounds what is held while the rows are handed out but not the memory taken by the parse.
+     */
+    private RowSet parseLargeInput(InputStream input, long size) throws KettleException {
+        if (data.largeInputReader != null) {
+            logBasic(BaseMessages.getString(PKG, "JsonInput.Log.LargeInputStreaming", getInputName(), size,
+                    meta.getSpillThreshold()));
+            return data.largeInputReader.parse(input);
+        }
+        SpilledRowSet rowSet = ((FastJsonReader) data.reader).parseSpilled(input);
+        logBasic(BaseMessages.getString(PKG, "JsonInput.Log.LargeInputSpilled", getInputName(), size,
+                meta.getSpillThreshold(), rowSet.getBytes(), rowSet.getDirectory()));
+        return rowSet;
+    }
+
     private void logInputError(KettleException e) {
         logError(e.getLocalizedMessage(), e);
         inputError(e.getLocalizedMessage());
@@ -293,6 +384,9 @@ public class JsonInput extends BaseFileInputStep<JsonInputMeta, JsonInputData> i
 
         @Override
         public void fileOpenError(FileObject file, FileSystemException e) {
+            if (data.fileStates != null) {
+                data.failedFile = file;
+            }
             String msg = BaseMessages.getString(
                     PKG, "JsonInput.Log.UnableToOpenFile", "" + data.filenr, file.toString(), e.toString());
             logError(msg);
@@ -303,6 +397,13 @@ public class JsonInput extends BaseFileInputStep<JsonInputMeta, JsonInputData> i
         public void fileCloseError(FileObject file, FileSystemException e) {
             error(e);
         }
+
+        @Override
+        public void urlError(String url, Exception e) {
+            String msg = BaseMessages.getString(PKG, "JsonInput.Log.UnableToReadUrl", url, e.toString());
+            logError(msg);
+            inputError(msg);
+        }
     }
 
     /**
@@ -310,29 +411,163 @@ public class JsonInput extends BaseFileInputStep<JsonInputMeta, JsonInputData> i
      */
     private Object[] getOneOutputRow() throws KettleException {
         Object[] rawReaderRow = null;
-        while ((rawReaderRow = data.readerRowSet.getRow()) == null) {
+        while ((rawReaderRow = getReaderRow()) == null) {
+            // the reader may stream its rows out of the input, so it is only released once they are all read
+            closeCurrentInput();
             if (data.inputs.hasNext() && data.readerRowSet.isDone()) {
-                try (InputStream nextIn = data.inputs.next()) {
-                    boolean parsed = parseNextInputToRowSet(nextIn);
-                    if (parsed && shouldOutputEmpty()) {
-                        return buildBaseOutputRow();
-                    }
-                } catch (IOException e) {
-                    logError(BaseMessages.getString(PKG, "JsonInput.Log.UnexpectedError", e.toString()), e);
-                    incrementErrors();
+                long start = System.nanoTime();
+                data.currentInput = data.inputs.next();
+                long size = -1;
+                if (data.currentInput != null) {
+                    data.metrics.opened(getInputName(), System.nanoTime() - start);
+                    size = getInputSize(data.currentInput);
+                    data.currentInput = countBytes(data.currentInput);
+                }
+                if (data.parsedFile != data.file) {
+                    // all read, unless the next input is another slice of the same file
+                    markFileProcessed();
+                }
+                start = System.nanoTime();
+                boolean parsed = parseNextInputToRowSet(data.currentInput, size);
+                data.metrics.parsed(System.nanoTime() - start);
+                if (parsed && data.fileStates != null) {
+                    data.parsedFile = data.file;
+                } else if (data.currentInput != null) {
+                    markInputFailed();
+                }
+                if (parsed && shouldOutputEmpty()) {
+                    data.metrics.rowEmitted();
+                    return buildBaseOutputRow();
                 }
             } else {
+                markFileProcessed();
                 if (isDetailed()) {
                     logDetailed(BaseMessages.getString(PKG, "JsonInput.Log.FinishedProcessing"));
                 }
                 return null;
             }
         }
+        long start = System.nanoTime();
         Object[] outputRow = rowOutputConverter.getRow(buildBaseOutputRow(), rawReaderRow, data);
         addExtraFields(outputRow, data);
+        data.metrics.converted(System.nanoTime() - start);
+        data.metrics.rowEmitted();
         return outputRow;
     }
 
+    /**
+     * @return the file or the url being read, or the input row holding the content
+     */
+    private String getInputName() {
+        if (!meta.isInFields() || meta.getIsAFile()) {
+            return data.filename;
+        }
+        if (meta.isReadUrl() && data.readrow != null) {
+            return String.valueOf(data.readrow[data.indexSourceField]);
+        }
+        return BaseMessages.getString(PKG, "JsonInput.Metrics.FieldInput", getLinesRead());
+    }
+
+    /**
+     * @return bytes of the input known before reading it, the compressed size of a compressed file, or -1
+     */
+    private long getInputSize(InputStream input) {
+        if (input instanceof StringInputStream) {
+            return ((StringInputStream) input).getString().length();
+        }
+        if (input instanceof ByteArrayInputStream) {
+            // fetched url
+            return input.available();
+        }
+        if (data.file != null && (!meta.isInFields() || meta.getIsAFile())) {
+            try {
+                return data.file.getContent().getSize();
+            } catch (FileSystemException e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Counts the bytes of the input as the reader reads them. Strings are handed to the reader as they are, their
+     * length is counted instead.
+     */
+    private InputStream countBytes(InputStream input) {
+        if (input instanceof StringInputStream) {
+            data.currentInputSize = ((StringInputStream) input).getString().length();
+            return input;
+        }
+        data.currentInputSize = -1;
+        return new CountingInputStream(input);
+    }
+
+    private Object[] getReaderRow() throws KettleException {
+        while (true) {
+            long start = System.nanoTime();
+            try {
+                return data.readerRowSet.getRow();
+            } catch (LazyRowSet.RowReadException e) {
+                markInputFailed();
+                if (!(e.getKettleException() instanceof BadRecordException)) {
+                    throw e.getKettleException();
+                }
+                // only this record is lost, carry on with the next ones
+                String errMsg = e.getKettleException().getMessage().trim();
+                logError(errMsg);
+                inputError(errMsg);
+            } finally {
+                data.metrics.pathsRead(System.nanoTime() - start);
+            }
+        }
+    }
+
+    private void closeCurrentInput() {
+        if (data.currentInput != null) {
+            try {
+                data.currentInput.close();
+            } catch (IOException e) {
+                logError(BaseMessages.getString(PKG, "JsonInput.Log.UnexpectedError", e.toString()), e);
+                incrementErrors();
+            }
+            if (data.metrics.isOpen()) {
+                data.metrics.closed(data.currentInput instanceof CountingInputStream
+                        ? ((CountingInputStream) data.currentInput).getByteCount() : data.currentInputSize);
+                if (isDetailed()) {
+                    logDetailed(data.metrics.getLastInputSummary());
+                }
+            }
+            data.currentInput = null;
+        }
+    }
+
+    /**
+     * Records the file whose rows were all read, in incremental mode.
+     */
+    private void markFileProcessed() {
+        if (data.parsedFile != null) {
+            if (data.parsedFile != data.failedFile) {
+                try {
+                    data.fileStates.processed(data.parsedFile);
+                } catch (IOException e) {
+                    logError(BaseMessages.getString(PKG, "JsonInput.Log.UnexpectedError", e.toString()), e);
+                    incrementErrors();
+                }
+            }
+            data.parsedFile = null;
+        }
+    }
+
+    /**
+     * Keeps the file of the current input from being recorded as processed, in incremental mode, so that the next run
+     * reads it again whatever its other slices gave.
+     */
+    private void markInputFailed() {
+        if (data.fileStates != null && data.file != null) {
+            data.failedFile = data.file;
+        }
+    }
+
     private void sendErrorRow(String errorMsg) {
         try {
             // same error as before
@@ -432,8 +667,50 @@ public class JsonInput extends BaseFileInputStep<JsonInputMeta, JsonInputData> i
     }
 
     private void createReader() throws KettleException {
-        data.reader = new FastJsonReader(meta.getInputFields(), meta.isDefaultPathLeafToNull(), log);
+        if (meta.isJsonLines()) {
+            data.reader = new JsonLinesReader(meta.getInputFields(), meta.isDefaultPathLeafToNull(),
+                    meta.getJsonLinesThreads(), log);
+        } else {
+            switch (meta.getReaderType()) {
+                case JsonInputMeta.READER_TYPE_STREAMING:
+                    data.reader = new StreamingJsonReader(meta.getInputFields(), meta.isDefaultPathLeafToNull(), log);
+                    break;
+                case JsonInputMeta.READER_TYPE_LAZY:
+                    FastJsonReader lazyReader =
+                            new FastJsonReader(meta.getInputFields(), meta.isDefaultPathLeafToNull(), log);
+                    lazyReader.setLazyRows(true);
+                    data.reader = lazyReader;
+                    break;
+                case JsonInputMeta.READER_TYPE_INDEXED:
+                    FastJsonReader indexedReader =
+                            new FastJsonReader(meta.getInputFields(), meta.isDefaultPathLeafToNull(), log);
+                    indexedReader.setStructuralIndex(true);
+                    data.reader = indexedReader;
+                    break;
+                case JsonInputMeta.READER_TYPE_COLUMNAR:
+                    data.reader = new ColumnarJsonReader(meta.getInputFields(), log);
+                    break;
+                default:
+                    data.reader = new FastJsonReader(meta.getInputFields(), meta.isDefaultPathLeafToNull(), log);
+                    break;
+            }
+        }
         data.reader.setIgnoreMissingPath(meta.isIgnoreMissingPath());
+        // a stopAll() from downstream ends the parsing of the current input
+        data.reader.setStopped(() -> isStopped());
+        if (meta.getSpillThreshold() > 0 && data.reader instanceof FastJsonReader) {
+            try {
+                data.largeInputReader =
+                        new StreamingJsonReader(meta.getInputFields(), meta.isDefaultPathLeafToNull(), log);
+                data.largeInputReader.setIgnoreMissingPath(meta.isIgnoreMissingPath());
+            } catch (KettleException e) {
+                // the inputs over the threshold are spilled after the parse
+                if (isDetailed()) {
+                    logDetailed(BaseMessages.getString(PKG, "JsonInput.Log.LargeInputNoStreaming",
+                            e.getMessage().trim()));
+                }
+            }
+        }
     }
 
     public void dispose(StepMetaInterface smi, StepDataInterface sdi) {
@@ -442,10 +719,41 @@ public class JsonInput extends BaseFileInputStep<JsonInputMeta, JsonInputData> i
         if (data.file != null) {
             IOUtils.closeQuietly(data.file);
         }
+        if (data.readerRowSet != null) {
+            data.readerRowSet.clear();
+        }
+        if (data.currentInput != null) {
+            IOUtils.closeQuietly(data.currentInput);
+            data.currentInput = null;
+        }
+        if (data.reader != null) {
+            data.reader.dispose();
+        }
+        if (data.metrics != null) {
+            if (data.metrics.getInputs() > 0) {
+                logBasic(data.metrics.getSummary());
+            }
+            try {
+                data.metrics.unregister();
+            } catch (JMException e) {
+                logError(BaseMessages.getString(PKG, "JsonInput.Log.UnexpectedError", e.toString()), e);
+            }
+        }
+        if (data.dictionary != null && data.dictionary.getLookups() > 0) {
+            logBasic(BaseMessages.getString(PKG, "JsonInput.Log.Dedupe", data.dictionary.getLookups(),
+                    String.format("%.1f", data.dictionary.getHitRate()), data.dictionary.getBytesSaved(),
+                    data.dictionary.size()));
+        }
+        if (data.inputs instanceof Closeable) {
+            IOUtils.closeQuietly((Closeable) data.inputs);
+        }
         data.inputs = null;
         data.reader = null;
         data.readerRowSet = null;
         data.repeatedFields = null;
+        data.dedupedFields = null;
+        data.dictionary = null;
+        data.metrics = null;
         super.dispose(smi, sdi);
     }
 
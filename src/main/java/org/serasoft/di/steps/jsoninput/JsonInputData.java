@@ -29,11 +29,15 @@ import java.util.BitSet;
 import java.util.Iterator;
 import java.util.List;
 
+import org.apache.commons.vfs2.FileObject;
 import org.pentaho.di.core.RowSet;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.trans.step.StepDataInterface;
 import org.pentaho.di.trans.steps.file.BaseFileInputStepData;
+import org.serasoft.di.steps.jsoninput.reader.FileStateStore;
 import org.serasoft.di.steps.jsoninput.reader.IJsonReader;
+import org.serasoft.di.steps.jsoninput.reader.InputMetrics;
+import org.serasoft.di.steps.jsoninput.reader.ValueDictionary;
 
 /**
  * @author Samatar
@@ -81,9 +85,39 @@ public class JsonInputData extends BaseFileInputStepData implements StepDataInte
   public int indexSourceField;
 
   public Iterator<InputStream> inputs;
+  /**
+   * input the reader row set is reading from
+   */
+  public InputStream currentInput;
+  /**
+   * size of the current input when it is not counted as it is read
+   */
+  public long currentInputSize;
+  public InputMetrics metrics;
+  /**
+   * file of the input the reader row set is reading from, once parsed
+   */
+  public FileObject parsedFile;
+  /**
+   * file one input of which failed to be read, never recorded as processed
+   */
+  public FileObject failedFile;
+  /**
+   * files read by the previous runs, in incremental mode
+   */
+  public FileStateStore fileStates;
   public IJsonReader reader;
+  /**
+   * Reads the inputs larger than the spill threshold one record at a time, null if the paths do not allow it
+   */
+  public IJsonReader largeInputReader;
   public RowSet readerRowSet;
   public BitSet repeatedFields;
+  /**
+   * fields whose values are deduplicated, through the dictionary
+   */
+  public BitSet dedupedFields;
+  public ValueDictionary dictionary;
 
   public JsonInputData() {
     super();
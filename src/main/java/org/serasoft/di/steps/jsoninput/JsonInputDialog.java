@@ -118,6 +118,14 @@ public class JsonInputDialog extends BaseStepDialog implements StepDialogInterfa
     private Button wreadUrl;
     private FormData fdlreadUrl, fdreadUrl;
 
+    private Label wlUrlConcurrency;
+    private Text wUrlConcurrency;
+    private FormData fdlUrlConcurrency, fdUrlConcurrency;
+
+    private Label wlUrlCache;
+    private Button wUrlCache;
+    private FormData fdlUrlCache, fdUrlCache;
+
     //  private Label wlremoveSourceField;
     //  private Button wremoveSourceField;
     //  private FormData fdlremoveSourceField, fdremoveSourceField;
@@ -137,6 +145,58 @@ public class JsonInputDialog extends BaseStepDialog implements StepDialogInterfa
     private Text wLimit;
     private FormData fdlLimit, fdLimit;
 
+    private Label wlReaderType;
+    private CCombo wReaderType;
+    private FormData fdlReaderType, fdReaderType;
+
+    private Label wlJsonLines;
+    private Button wJsonLines;
+    private FormData fdlJsonLines, fdJsonLines;
+
+    private Label wlJsonLinesThreads;
+    private Text wJsonLinesThreads;
+    private FormData fdlJsonLinesThreads, fdJsonLinesThreads;
+
+    private Label wlSpillThreshold;
+    private Text wSpillThreshold;
+    private FormData fdlSpillThreshold, fdSpillThreshold;
+
+    private Label wlPrefetchFiles;
+    private Text wPrefetchFiles;
+    private FormData fdlPrefetchFiles, fdPrefetchFiles;
+
+    private Label wlPrefetchContent;
+    private Button wPrefetchContent;
+    private FormData fdlPrefetchContent, fdPrefetchContent;
+
+    private Label wlIncremental;
+    private Button wIncremental;
+    private FormData fdlIncremental, fdIncremental;
+
+    private Label wlStateFile;
+    private TextVar wStateFile;
+    private FormData fdlStateFile, fdStateFile;
+
+    private Label wlStateHash;
+    private Button wStateHash;
+    private FormData fdlStateHash, fdStateHash;
+
+    private Label wlArrayIndex;
+    private Button wArrayIndex;
+    private FormData fdlArrayIndex, fdArrayIndex;
+
+    private Label wlArrayIndexInterval;
+    private Text wArrayIndexInterval;
+    private FormData fdlArrayIndexInterval, fdArrayIndexInterval;
+
+    private Label wlPartitionType;
+    private CCombo wPartitionType;
+    private FormData fdlPartitionType, fdPartitionType;
+
+    private Label wlSplitFiles;
+    private Button wSplitFiles;
+    private FormData fdlSplitFiles, fdSplitFiles;
+
     private TableView wFields;
     private FormData fdFields;
 
@@ -526,12 +586,18 @@ public class JsonInputDialog extends BaseStepDialog implements StepDialogInterfa
                                 ColumnInfo.COLUMN_TYPE_CCOMBO, new String[]{
                                 BaseMessages.getString(PKG, "System.Combo.Yes"),
                                 BaseMessages.getString(PKG, "System.Combo.No")}, true),
+                        new ColumnInfo(
+                                BaseMessages.getString(PKG, "JsonInputDialog.FieldsTable.Dedupe.Column"),
+                                ColumnInfo.COLUMN_TYPE_CCOMBO, new String[]{
+                                BaseMessages.getString(PKG, "System.Combo.Yes"),
+                                BaseMessages.getString(PKG, "System.Combo.No")}, true),
                 };
 
         colinf[0].setUsingVariables(true);
         colinf[0].setToolTip(BaseMessages.getString(PKG, "JsonInputDialog.FieldsTable.Name.Column.Tooltip"));
         colinf[1].setUsingVariables(true);
         colinf[1].setToolTip(BaseMessages.getString(PKG, "JsonInputDialog.FieldsTable.Path.Column.Tooltip"));
+        colinf[11].setToolTip(BaseMessages.getString(PKG, "JsonInputDialog.FieldsTable.Dedupe.Column.Tooltip"));
 
         wFields =
                 new TableView(transMeta, wFieldsComp, SWT.FULL_SELECTION | SWT.MULTI, colinf, FieldsRows, lsMod, props);
@@ -672,6 +738,275 @@ public class JsonInputDialog extends BaseStepDialog implements StepDialogInterfa
         fdLimit.right = new FormAttachment(100, 0);
         wLimit.setLayoutData(fdLimit);
 
+        // Reader type
+        wlReaderType = new Label(wConf, SWT.RIGHT);
+        wlReaderType.setText(BaseMessages.getString(PKG, "JsonInputDialog.ReaderType.Label"));
+        props.setLook(wlReaderType);
+        fdlReaderType = new FormData();
+        fdlReaderType.left = new FormAttachment(0, 0);
+        fdlReaderType.top = new FormAttachment(wLimit, margin);
+        fdlReaderType.right = new FormAttachment(middle, -margin);
+        wlReaderType.setLayoutData(fdlReaderType);
+        wReaderType = new CCombo(wConf, SWT.BORDER | SWT.READ_ONLY);
+        props.setLook(wReaderType);
+        wReaderType.setItems(JsonInputMeta.readerTypeDesc);
+        wReaderType.setToolTipText(BaseMessages.getString(PKG, "JsonInputDialog.ReaderType.Tooltip"));
+        wReaderType.addModifyListener(lsMod);
+        fdReaderType = new FormData();
+        fdReaderType.left = new FormAttachment(middle, 0);
+        fdReaderType.top = new FormAttachment(wLimit, margin);
+        fdReaderType.right = new FormAttachment(100, 0);
+        wReaderType.setLayoutData(fdReaderType);
+
+        // Json lines
+        wlJsonLines = new Label(wConf, SWT.RIGHT);
+        wlJsonLines.setText(BaseMessages.getString(PKG, "JsonInputDialog.JsonLines.Label"));
+        props.setLook(wlJsonLines);
+        fdlJsonLines = new FormData();
+        fdlJsonLines.left = new FormAttachment(0, 0);
+        fdlJsonLines.top = new FormAttachment(wReaderType, margin);
+        fdlJsonLines.right = new FormAttachment(middle, -margin);
+        wlJsonLines.setLayoutData(fdlJsonLines);
+        wJsonLines = new Button(wConf, SWT.CHECK);
+        props.setLook(wJsonLines);
+        wJsonLines.addSelectionListener(new SelectionAdapter() {
+            public void widgetSelected(SelectionEvent e) {
+                input.setChanged();
+                wJsonLinesThreads.setEnabled(wJsonLines.getSelection());
+            }
+        });
+        wJsonLines.setToolTipText(BaseMessages.getString(PKG, "JsonInputDialog.JsonLines.Tooltip"));
+        fdJsonLines = new FormData();
+        fdJsonLines.left = new FormAttachment(middle, 0);
+        fdJsonLines.top = new FormAttachment(wReaderType, margin);
+        wJsonLines.setLayoutData(fdJsonLines);
+
+        wlJsonLinesThreads = new Label(wConf, SWT.RIGHT);
+        wlJsonLinesThreads.setText(BaseMessages.getString(PKG, "JsonInputDialog.JsonLinesThreads.Label"));
+        props.setLook(wlJsonLinesThreads);
+        fdlJsonLinesThreads = new FormData();
+        fdlJsonLinesThreads.left = new FormAttachment(0, 0);
+        fdlJsonLinesThreads.top = new FormAttachment(wJsonLines, margin);
+        fdlJsonLinesThreads.right = new FormAttachment(middle, -margin);
+        wlJsonLinesThreads.setLayoutData(fdlJsonLinesThreads);
+        wJsonLinesThreads = new Text(wConf, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        props.setLook(wJsonLinesThreads);
+        wJsonLinesThreads.setToolTipText(BaseMessages.getString(PKG, "JsonInputDialog.JsonLinesThreads.Tooltip"));
+        wJsonLinesThreads.addModifyListener(lsMod);
+        fdJsonLinesThreads = new FormData();
+        fdJsonLinesThreads.left = new FormAttachment(middle, 0);
+        fdJsonLinesThreads.top = new FormAttachment(wJsonLines, margin);
+        fdJsonLinesThreads.right = new FormAttachment(100, 0);
+        wJsonLinesThreads.setLayoutData(fdJsonLinesThreads);
+
+        // Spill threshold
+        wlSpillThreshold = new Label(wConf, SWT.RIGHT);
+        wlSpillThreshold.setText(BaseMessages.getString(PKG, "JsonInputDialog.SpillThreshold.Label"));
+        props.setLook(wlSpillThreshold);
+        fdlSpillThreshold = new FormData();
+        fdlSpillThreshold.left = new FormAttachment(0, 0);
+        fdlSpillThreshold.top = new FormAttachment(wJsonLinesThreads, margin);
+        fdlSpillThreshold.right = new FormAttachment(middle, -margin);
+        wlSpillThreshold.setLayoutData(fdlSpillThreshold);
+        wSpillThreshold = new Text(wConf, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        props.setLook(wSpillThreshold);
+        wSpillThreshold.setToolTipText(BaseMessages.getString(PKG, "JsonInputDialog.SpillThreshold.Tooltip"));
+        wSpillThreshold.addModifyListener(lsMod);
+        fdSpillThreshold = new FormData();
+        fdSpillThreshold.left = new FormAttachment(middle, 0);
+        fdSpillThreshold.top = new FormAttachment(wJsonLinesThreads, margin);
+        fdSpillThreshold.right = new FormAttachment(100, 0);
+        wSpillThreshold.setLayoutData(fdSpillThreshold);
+
+        // Files read ahead
+        wlPrefetchFiles = new Label(wConf, SWT.RIGHT);
+        wlPrefetchFiles.setText(BaseMessages.getString(PKG, "JsonInputDialog.PrefetchFiles.Label"));
+        props.setLook(wlPrefetchFiles);
+        fdlPrefetchFiles = new FormData();
+        fdlPrefetchFiles.left = new FormAttachment(0, 0);
+        fdlPrefetchFiles.top = new FormAttachment(wSpillThreshold, margin);
+        fdlPrefetchFiles.right = new FormAttachment(middle, -margin);
+        wlPrefetchFiles.setLayoutData(fdlPrefetchFiles);
+        wPrefetchFiles = new Text(wConf, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        props.setLook(wPrefetchFiles);
+        wPrefetchFiles.setToolTipText(BaseMessages.getString(PKG, "JsonInputDialog.PrefetchFiles.Tooltip"));
+        wPrefetchFiles.addModifyListener(lsMod);
+        fdPrefetchFiles = new FormData();
+        fdPrefetchFiles.left = new FormAttachment(middle, 0);
+        fdPrefetchFiles.top = new FormAttachment(wSpillThreshold, margin);
+        fdPrefetchFiles.right = new FormAttachment(100, 0);
+        wPrefetchFiles.setLayoutData(fdPrefetchFiles);
+
+        wlPrefetchContent = new Label(wConf, SWT.RIGHT);
+        wlPrefetchContent.setText(BaseMessages.getString(PKG, "JsonInputDialog.PrefetchContent.Label"));
+        props.setLook(wlPrefetchContent);
+        fdlPrefetchContent = new FormData();
+        fdlPrefetchContent.left = new FormAttachment(0, 0);
+        fdlPrefetchContent.top = new FormAttachment(wPrefetchFiles, margin);
+        fdlPrefetchContent.right = new FormAttachment(middle, -margin);
+        wlPrefetchContent.setLayoutData(fdlPrefetchContent);
+        wPrefetchContent = new Button(wConf, SWT.CHECK);
+        props.setLook(wPrefetchContent);
+        wPrefetchContent.addSelectionListener(new SelectionAdapter() {
+            public void widgetSelected(SelectionEvent e) {
+                input.setChanged();
+            }
+        });
+        wPrefetchContent.setToolTipText(BaseMessages.getString(PKG, "JsonInputDialog.PrefetchContent.Tooltip"));
+        fdPrefetchContent = new FormData();
+        fdPrefetchContent.left = new FormAttachment(middle, 0);
+        fdPrefetchContent.top = new FormAttachment(wPrefetchFiles, margin);
+        wPrefetchContent.setLayoutData(fdPrefetchContent);
+
+        // Only new or changed files
+        wlIncremental = new Label(wConf, SWT.RIGHT);
+        wlIncremental.setText(BaseMessages.getString(PKG, "JsonInputDialog.Incremental.Label"));
+        props.setLook(wlIncremental);
+        fdlIncremental = new FormData();
+        fdlIncremental.left = new FormAttachment(0, 0);
+        fdlIncremental.top = new FormAttachment(wPrefetchContent, margin);
+        fdlIncremental.right = new FormAttachment(middle, -margin);
+        wlIncremental.setLayoutData(fdlIncremental);
+        wIncremental = new Button(wConf, SWT.CHECK);
+        props.setLook(wIncremental);
+        wIncremental.addSelectionListener(new SelectionAdapter() {
+            public void widgetSelected(SelectionEvent e) {
+                input.setChanged();
+                setIncremental();
+            }
+        });
+        wIncremental.setToolTipText(BaseMessages.getString(PKG, "JsonInputDialog.Incremental.Tooltip"));
+        fdIncremental = new FormData();
+        fdIncremental.left = new FormAttachment(middle, 0);
+        fdIncremental.top = new FormAttachment(wPrefetchContent, margin);
+        wIncremental.setLayoutData(fdIncremental);
+
+        wlStateFile = new Label(wConf, SWT.RIGHT);
+        wlStateFile.setText(BaseMessages.getString(PKG, "JsonInputDialog.StateFile.Label"));
+        props.setLook(wlStateFile);
+        fdlStateFile = new FormData();
+        fdlStateFile.left = new FormAttachment(0, 0);
+        fdlStateFile.top = new FormAttachment(wIncremental, margin);
+        fdlStateFile.right = new FormAttachment(middle, -margin);
+        wlStateFile.setLayoutData(fdlStateFile);
+        wStateFile = new TextVar(transMeta, wConf, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        props.setLook(wStateFile);
+        wStateFile.setToolTipText(BaseMessages.getString(PKG, "JsonInputDialog.StateFile.Tooltip"));
+        wStateFile.addModifyListener(lsMod);
+        fdStateFile = new FormData();
+        fdStateFile.left = new FormAttachment(middle, 0);
+        fdStateFile.top = new FormAttachment(wIncremental, margin);
+        fdStateFile.right = new FormAttachment(100, 0);
+        wStateFile.setLayoutData(fdStateFile);
+
+        wlStateHash = new Label(wConf, SWT.RIGHT);
+        wlStateHash.setText(BaseMessages.getString(PKG, "JsonInputDialog.StateHash.Label"));
+        props.setLook(wlStateHash);
+        fdlStateHash = new FormData();
+        fdlStateHash.left = new FormAttachment(0, 0);
+        fdlStateHash.top = new FormAttachment(wStateFile, margin);
+        fdlStateHash.right = new FormAttachment(middle, -margin);
+        wlStateHash.setLayoutData(fdlStateHash);
+        wStateHash = new Button(wConf, SWT.CHECK);
+        props.setLook(wStateHash);
+        wStateHash.addSelectionListener(new SelectionAdapter() {
+            public void widgetSelected(SelectionEvent e) {
+                input.setChanged();
+            }
+        });
+        wStateHash.setToolTipText(BaseMessages.getString(PKG, "JsonInputDialog.StateHash.Tooltip"));
+        fdStateHash = new FormData();
+        fdStateHash.left = new FormAttachment(middle, 0);
+        fdStateHash.top = new FormAttachment(wStateFile, margin);
+        wStateHash.setLayoutData(fdStateHash);
+
+        // Array index
+        wlArrayIndex = new Label(wConf, SWT.RIGHT);
+        wlArrayIndex.setText(BaseMessages.getString(PKG, "JsonInputDialog.ArrayIndex.Label"));
+        props.setLook(wlArrayIndex);
+        fdlArrayIndex = new FormData();
+        fdlArrayIndex.left = new FormAttachment(0, 0);
+        fdlArrayIndex.top = new FormAttachment(wStateHash, margin);
+        fdlArrayIndex.right = new FormAttachment(middle, -margin);
+        wlArrayIndex.setLayoutData(fdlArrayIndex);
+        wArrayIndex = new Button(wConf, SWT.CHECK);
+        props.setLook(wArrayIndex);
+        wArrayIndex.addSelectionListener(new SelectionAdapter() {
+            public void widgetSelected(SelectionEvent e) {
+                input.setChanged();
+                wArrayIndexInterval.setEnabled(wArrayIndex.getSelection());
+            }
+        });
+        wArrayIndex.setToolTipText(BaseMessages.getString(PKG, "JsonInputDialog.ArrayIndex.Tooltip"));
+        fdArrayIndex = new FormData();
+        fdArrayIndex.left = new FormAttachment(middle, 0);
+        fdArrayIndex.top = new FormAttachment(wStateHash, margin);
+        wArrayIndex.setLayoutData(fdArrayIndex);
+
+        wlArrayIndexInterval = new Label(wConf, SWT.RIGHT);
+        wlArrayIndexInterval.setText(BaseMessages.getString(PKG, "JsonInputDialog.ArrayIndexInterval.Label"));
+        props.setLook(wlArrayIndexInterval);
+        fdlArrayIndexInterval = new FormData();
+        fdlArrayIndexInterval.left = new FormAttachment(0, 0);
+        fdlArrayIndexInterval.top = new FormAttachment(wArrayIndex, margin);
+        fdlArrayIndexInterval.right = new FormAttachment(middle, -margin);
+        wlArrayIndexInterval.setLayoutData(fdlArrayIndexInterval);
+        wArrayIndexInterval = new Text(wConf, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        props.setLook(wArrayIndexInterval);
+        wArrayIndexInterval.setToolTipText(BaseMessages.getString(PKG, "JsonInputDialog.ArrayIndexInterval.Tooltip"));
+        wArrayIndexInterval.addModifyListener(lsMod);
+        fdArrayIndexInterval = new FormData();
+        fdArrayIndexInterval.left = new FormAttachment(middle, 0);
+        fdArrayIndexInterval.top = new FormAttachment(wArrayIndex, margin);
+        fdArrayIndexInterval.right = new FormAttachment(100, 0);
+        wArrayIndexInterval.setLayoutData(fdArrayIndexInterval);
+
+        // Files shared between the step copies
+        wlPartitionType = new Label(wConf, SWT.RIGHT);
+        wlPartitionType.setText(BaseMessages.getString(PKG, "JsonInputDialog.PartitionType.Label"));
+        props.setLook(wlPartitionType);
+        fdlPartitionType = new FormData();
+        fdlPartitionType.left = new FormAttachment(0, 0);
+        fdlPartitionType.top = new FormAttachment(wArrayIndexInterval, margin);
+        fdlPartitionType.right = new FormAttachment(middle, -margin);
+        wlPartitionType.setLayoutData(fdlPartitionType);
+        wPartitionType = new CCombo(wConf, SWT.BORDER | SWT.READ_ONLY);
+        props.setLook(wPartitionType);
+        wPartitionType.setItems(JsonInputMeta.partitionTypeDesc);
+        wPartitionType.setToolTipText(BaseMessages.getString(PKG, "JsonInputDialog.PartitionType.Tooltip"));
+        wPartitionType.addModifyListener(lsMod);
+        wPartitionType.addSelectionListener(new SelectionAdapter() {
+            public void widgetSelected(SelectionEvent e) {
+                setPartitionType();
+            }
+        });
+        fdPartitionType = new FormData();
+        fdPartitionType.left = new FormAttachment(middle, 0);
+        fdPartitionType.top = new FormAttachment(wArrayIndexInterval, margin);
+        fdPartitionType.right = new FormAttachment(100, 0);
+        wPartitionType.setLayoutData(fdPartitionType);
+
+        wlSplitFiles = new Label(wConf, SWT.RIGHT);
+        wlSplitFiles.setText(BaseMessages.getString(PKG, "JsonInputDialog.SplitFiles.Label"));
+        props.setLook(wlSplitFiles);
+        fdlSplitFiles = new FormData();
+        fdlSplitFiles.left = new FormAttachment(0, 0);
+        fdlSplitFiles.top = new FormAttachment(wPartitionType, margin);
+        fdlSplitFiles.right = new FormAttachment(middle, -margin);
+        wlSplitFiles.setLayoutData(fdlSplitFiles);
+        wSplitFiles = new Button(wConf, SWT.CHECK);
+        props.setLook(wSplitFiles);
+        wSplitFiles.addSelectionListener(new SelectionAdapter() {
+            public void widgetSelected(SelectionEvent e) {
+                input.setChanged();
+            }
+        });
+        wSplitFiles.setToolTipText(BaseMessages.getString(PKG, "JsonInputDialog.SplitFiles.Tooltip"));
+        fdSplitFiles = new FormData();
+        fdSplitFiles.left = new FormAttachment(middle, 0);
+        fdSplitFiles.top = new FormAttachment(wPartitionType, margin);
+        wSplitFiles.setLayoutData(fdSplitFiles);
+
         fdConf = new FormData();
         fdConf.left = new FormAttachment(0, margin);
         fdConf.top = new FormAttachment(0, margin);
@@ -899,6 +1234,7 @@ public class JsonInputDialog extends BaseStepDialog implements StepDialogInterfa
                 if (wSourceIsAFile.getSelection()) {
                     wreadUrl.setSelection(false);
                 }
+                setReadUrl();
                 input.setChanged();
             }
         };
@@ -925,18 +1261,60 @@ public class JsonInputDialog extends BaseStepDialog implements StepDialogInterfa
                 if (wreadUrl.getSelection()) {
                     wSourceIsAFile.setSelection(false);
                 }
+                setReadUrl();
                 input.setChanged();
             }
         };
         wreadUrl.addSelectionListener(lsreadurl);
 
+        // Urls fetched at once
+        wlUrlConcurrency = new Label(wOutputField, SWT.RIGHT);
+        wlUrlConcurrency.setText(BaseMessages.getString(PKG, "JsonInputDialog.UrlConcurrency.Label"));
+        props.setLook(wlUrlConcurrency);
+        fdlUrlConcurrency = new FormData();
+        fdlUrlConcurrency.left = new FormAttachment(0, -margin);
+        fdlUrlConcurrency.top = new FormAttachment(wreadUrl, margin);
+        fdlUrlConcurrency.right = new FormAttachment(middle, -2 * margin);
+        wlUrlConcurrency.setLayoutData(fdlUrlConcurrency);
+        wUrlConcurrency = new Text(wOutputField, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        props.setLook(wUrlConcurrency);
+        wUrlConcurrency.setToolTipText(BaseMessages.getString(PKG, "JsonInputDialog.UrlConcurrency.Tooltip"));
+        wUrlConcurrency.addModifyListener(lsMod);
+        fdUrlConcurrency = new FormData();
+        fdUrlConcurrency.left = new FormAttachment(middle, -margin);
+        fdUrlConcurrency.top = new FormAttachment(wreadUrl, margin);
+        fdUrlConcurrency.right = new FormAttachment(100, -margin);
+        wUrlConcurrency.setLayoutData(fdUrlConcurrency);
+
+        // Conditional requests for the responses kept
+        wlUrlCache = new Label(wOutputField, SWT.RIGHT);
+        wlUrlCache.setText(BaseMessages.getString(PKG, "JsonInputDialog.UrlCache.Label"));
+        props.setLook(wlUrlCache);
+        fdlUrlCache = new FormData();
+        fdlUrlCache.left = new FormAttachment(0, -margin);
+        fdlUrlCache.top = new FormAttachment(wUrlConcurrency, margin);
+        fdlUrlCache.right = new FormAttachment(middle, -2 * margin);
+        wlUrlCache.setLayoutData(fdlUrlCache);
+        wUrlCache = new Button(wOutputField, SWT.CHECK);
+        props.setLook(wUrlCache);
+        wUrlCache.setToolTipText(BaseMessages.getString(PKG, "JsonInputDialog.UrlCache.Tooltip"));
+        fdUrlCache = new FormData();
+        fdUrlCache.left = new FormAttachment(middle, -margin);
+        fdUrlCache.top = new FormAttachment(wUrlConcurrency, margin);
+        wUrlCache.setLayoutData(fdUrlCache);
+        wUrlCache.addSelectionListener(new SelectionAdapter() {
+            public void widgetSelected(SelectionEvent arg0) {
+                input.setChanged();
+            }
+        });
+
         // If source string defined in a Field
         wlSourceField = new Label(wOutputField, SWT.RIGHT);
         wlSourceField.setText(BaseMessages.getString(PKG, "JsonInputDialog.wlSourceField.Label"));
         props.setLook(wlSourceField);
         fdlFieldValue = new FormData();
         fdlFieldValue.left = new FormAttachment(0, -margin);
-        fdlFieldValue.top = new FormAttachment(wreadUrl, margin);
+        fdlFieldValue.top = new FormAttachment(wUrlCache, margin);
         fdlFieldValue.right = new FormAttachment(middle, -2 * margin);
         wlSourceField.setLayoutData(fdlFieldValue);
 
@@ -946,7 +1324,7 @@ public class JsonInputDialog extends BaseStepDialog implements StepDialogInterfa
         wFieldValue.addModifyListener(lsMod);
         fdFieldValue = new FormData();
         fdFieldValue.left = new FormAttachment(middle, -margin);
-        fdFieldValue.top = new FormAttachment(wreadUrl, margin);
+        fdFieldValue.top = new FormAttachment(wUrlCache, margin);
         fdFieldValue.right = new FormAttachment(100, -margin);
         wFieldValue.setLayoutData(fdFieldValue);
         setSourceStreamField();
@@ -1161,6 +1539,28 @@ public class JsonInputDialog extends BaseStepDialog implements StepDialogInterfa
         }
     }
 
+    private void setPartitionType() {
+        boolean partitioned =
+                JsonInputMeta.getPartitionTypeByDesc(wPartitionType.getText()) != JsonInputMeta.PARTITION_NONE;
+        wlSplitFiles.setEnabled(partitioned);
+        wSplitFiles.setEnabled(partitioned);
+    }
+
+    private void setIncremental() {
+        wlStateFile.setEnabled(wIncremental.getSelection());
+        wStateFile.setEnabled(wIncremental.getSelection());
+        wlStateHash.setEnabled(wIncremental.getSelection());
+        wStateHash.setEnabled(wIncremental.getSelection());
+    }
+
+    private void setReadUrl() {
+        boolean readUrl = wSourceStreamField.getSelection() && wreadUrl.getSelection();
+        wlUrlConcurrency.setEnabled(readUrl);
+        wUrlConcurrency.setEnabled(readUrl);
+        wlUrlCache.setEnabled(readUrl);
+        wUrlCache.setEnabled(readUrl);
+    }
+
     private void activeStreamField() {
         wlSourceField.setEnabled(wSourceStreamField.getSelection());
         wFieldValue.setEnabled(wSourceStreamField.getSelection());
@@ -1168,6 +1568,7 @@ public class JsonInputDialog extends BaseStepDialog implements StepDialogInterfa
         wSourceIsAFile.setEnabled(wSourceStreamField.getSelection());
         wlreadUrl.setEnabled(wSourceStreamField.getSelection());
         wreadUrl.setEnabled(wSourceStreamField.getSelection());
+        setReadUrl();
         //  wlremoveSourceField.setEnabled( wSourceStreamField.getSelection() );
         //  wremoveSourceField.setEnabled( wSourceStreamField.getSelection() );
 
@@ -1187,6 +1588,10 @@ public class JsonInputDialog extends BaseStepDialog implements StepDialogInterfa
 
         wFilenameList.setEnabled(!wSourceStreamField.getSelection());
         setCompositeEnabled(wFilenameList, !wSourceStreamField.getSelection());
+        wlPrefetchFiles.setEnabled(!wSourceStreamField.getSelection());
+        wPrefetchFiles.setEnabled(!wSourceStreamField.getSelection());
+        wlPrefetchContent.setEnabled(!wSourceStreamField.getSelection());
+        wPrefetchContent.setEnabled(!wSourceStreamField.getSelection());
 
         wInclFilename.setEnabled(!wSourceStreamField.getSelection());
         wlInclFilename.setEnabled(!wSourceStreamField.getSelection());
@@ -1249,6 +1654,8 @@ public class JsonInputDialog extends BaseStepDialog implements StepDialogInterfa
         wInclRownum.setSelection(in.includeRowNumber());
         wAddResult.setSelection(in.addResultFile());
         wreadUrl.setSelection(in.isReadUrl());
+        wUrlConcurrency.setText("" + in.getUrlConcurrency());
+        wUrlCache.setSelection(in.isUrlCache());
         wIgnoreEmptyFile.setSelection(in.isIgnoreEmptyFile());
         wdoNotFailIfNoFile.setSelection(in.isDoNotFailIfNoFile());
         wIgnoreMissingPath.setSelection(in.isIgnoreMissingPath());
@@ -1269,6 +1676,23 @@ public class JsonInputDialog extends BaseStepDialog implements StepDialogInterfa
             wInclRownumField.setText(in.getRowNumberField());
         }
         wLimit.setText("" + in.getRowLimit());
+        wReaderType.setText(JsonInputMeta.getReaderTypeDesc(in.getReaderType()));
+        wJsonLines.setSelection(in.isJsonLines());
+        wJsonLinesThreads.setText("" + in.getJsonLinesThreads());
+        wJsonLinesThreads.setEnabled(in.isJsonLines());
+        wSpillThreshold.setText("" + in.getSpillThreshold());
+        wPrefetchFiles.setText("" + in.getPrefetchFiles());
+        wPrefetchContent.setSelection(in.isPrefetchContent());
+        wIncremental.setSelection(in.isIncremental());
+        wStateFile.setText(Const.NVL(in.getStateFile(), ""));
+        wStateHash.setSelection(in.isStateHash());
+        setIncremental();
+        wArrayIndex.setSelection(in.isArrayIndex());
+        wArrayIndexInterval.setText("" + in.getArrayIndexInterval());
+        wArrayIndexInterval.setEnabled(in.isArrayIndex());
+        wPartitionType.setText(JsonInputMeta.getPartitionTypeDesc(in.getPartitionType()));
+        wSplitFiles.setSelection(in.isSplitFiles());
+        setPartitionType();
 
         if (isDebug()) {
             logDebug(BaseMessages.getString(PKG, "JsonInputDialog.Log.GettingFieldsInfo"));
@@ -1291,6 +1715,9 @@ public class JsonInputDialog extends BaseStepDialog implements StepDialogInterfa
                 String rep =
                         field.isRepeated() ? BaseMessages.getString(PKG, "System.Combo.Yes") : BaseMessages.getString(
                                 PKG, "System.Combo.No");
+                String dedupe =
+                        field.isDeduplicated() ? BaseMessages.getString(PKG, "System.Combo.Yes") : BaseMessages.getString(
+                                PKG, "System.Combo.No");
 
                 if (name != null) {
                     item.setText(1, name);
@@ -1325,6 +1752,9 @@ public class JsonInputDialog extends BaseStepDialog implements StepDialogInterfa
                 if (rep != null) {
                     item.setText(11, rep);
                 }
+                if (dedupe != null) {
+                    item.setText(12, dedupe);
+                }
 
             }
         }
@@ -1386,12 +1816,27 @@ public class JsonInputDialog extends BaseStepDialog implements StepDialogInterfa
         stepname = wStepname.getText(); // return value
 
         in.setRowLimit(Const.toLong(wLimit.getText(), 0L));
+        in.setReaderType(JsonInputMeta.getReaderTypeByDesc(wReaderType.getText()));
+        in.setJsonLines(wJsonLines.getSelection());
+        in.setJsonLinesThreads(Const.toInt(wJsonLinesThreads.getText(), 0));
+        in.setSpillThreshold(Const.toInt(wSpillThreshold.getText(), 0));
+        in.setPrefetchFiles(Const.toInt(wPrefetchFiles.getText(), 0));
+        in.setPrefetchContent(wPrefetchContent.getSelection());
+        in.setIncremental(wIncremental.getSelection());
+        in.setStateFile(wStateFile.getText());
+        in.setStateHash(wStateHash.getSelection());
+        in.setArrayIndex(wArrayIndex.getSelection());
+        in.setPartitionType(JsonInputMeta.getPartitionTypeByDesc(wPartitionType.getText()));
+        in.setSplitFiles(wSplitFiles.getSelection());
+        in.setArrayIndexInterval(Const.toInt(wArrayIndexInterval.getText(), JsonInputMeta.DEFAULT_ARRAY_INDEX_INTERVAL));
         in.setFilenameField(wInclFilenameField.getText());
         in.setRowNumberField(wInclRownumField.getText());
         in.setAddResultFile(wAddResult.getSelection());
         in.setIncludeFilename(wInclFilename.getSelection());
         in.setIncludeRowNumber(wInclRownum.getSelection());
         in.setReadUrl(wreadUrl.getSelection());
+        in.setUrlConcurrency(Const.toInt(wUrlConcurrency.getText(), JsonInputMeta.DEFAULT_URL_CONCURRENCY));
+        in.setUrlCache(wUrlCache.getSelection());
         in.setIgnoreEmptyFile(wIgnoreEmptyFile.getSelection());
         in.setDoNotFailIfNoFile(wdoNotFailIfNoFile.getSelection());
         in.setIgnoreMissingPath(wIgnoreMissingPath.getSelection());
@@ -1427,6 +1872,7 @@ public class JsonInputDialog extends BaseStepDialog implements StepDialogInterfa
             field.setGroupSymbol(item.getText(9));
             field.setTrimType(ValueMetaBase.getTrimTypeByDesc(item.getText(10)));
             field.setRepeated(BaseMessages.getString(PKG, "System.Combo.Yes").equalsIgnoreCase(item.getText(11)));
+            field.setDeduplicated(BaseMessages.getString(PKG, "System.Combo.Yes").equalsIgnoreCase(item.getText(12)));
 
             in.getInputFields()[i] = field;
         }
@@ -52,6 +52,11 @@ public class JsonInputField extends BaseFileField implements Cloneable {
 
   private String path;
 
+  /**
+   * repeated values share one instance
+   */
+  private boolean deduplicated;
+
   public JsonInputField( String fieldname ) {
     super();
     setName( fieldname );
@@ -76,6 +81,7 @@ public class JsonInputField extends BaseFileField implements Cloneable {
     retval.append( "        " ).append( XMLHandler.addTagValue( "precision", getPrecision() ) );
     retval.append( "        " ).append( XMLHandler.addTagValue( "trim_type", getTrimTypeCode() ) );
     retval.append( "        " ).append( XMLHandler.addTagValue( "repeat", isRepeated() ) );
+    retval.append( "        " ).append( XMLHandler.addTagValue( "dedupe", isDeduplicated() ) );
 
     retval.append( "      </field>" ).append( Const.CR );
 
@@ -94,6 +100,7 @@ public class JsonInputField extends BaseFileField implements Cloneable {
     setPrecision( Const.toInt( XMLHandler.getTagValue( fnode, "precision" ), -1 ) );
     setTrimType( getTrimTypeByCode( XMLHandler.getTagValue( fnode, "trim_type" ) ) );
     setRepeated( !"N".equalsIgnoreCase( XMLHandler.getTagValue( fnode, "repeat" ) ) );
+    setDeduplicated( "Y".equalsIgnoreCase( XMLHandler.getTagValue( fnode, "dedupe" ) ) );
   }
 
   public ValueMetaInterface toValueMeta( String fieldOriginStepName, VariableSpace vspace ) throws KettlePluginException {
@@ -139,4 +146,12 @@ public class JsonInputField extends BaseFileField implements Cloneable {
     this.path = value;
   }
 
+  public boolean isDeduplicated() {
+    return deduplicated;
+  }
+
+  public void setDeduplicated( boolean deduplicated ) {
+    this.deduplicated = deduplicated;
+  }
+
 }
@@ -74,6 +74,60 @@ public class JsonInputMeta extends
     public static final String[] RequiredFilesDesc = new String[]{
             BaseMessages.getString(PKG, "System.Combo.No"), BaseMessages.getString(PKG, "System.Combo.Yes")};
 
+    public static final int READER_TYPE_DEFAULT = 0;
+
+    public static final int READER_TYPE_STREAMING = 1;
+
+    public static final int READER_TYPE_LAZY = 2;
+
+    public static final int READER_TYPE_INDEXED = 3;
+
+    public static final int READER_TYPE_COLUMNAR = 4;
+
+    /**
+     * The reader type descriptions
+     */
+    public static final String[] readerTypeDesc = {
+            BaseMessages.getString(PKG, "JsonInputMeta.readerType.Default"),
+            BaseMessages.getString(PKG, "JsonInputMeta.readerType.Streaming"),
+            BaseMessages.getString(PKG, "JsonInputMeta.readerType.Lazy"),
+            BaseMessages.getString(PKG, "JsonInputMeta.readerType.Indexed"),
+            BaseMessages.getString(PKG, "JsonInputMeta.readerType.Columnar")};
+
+    /**
+     * The reader type codes
+     */
+    public static final String[] readerTypeCode = {"default", "streaming", "lazy", "indexed", "columnar"};
+
+    public static final int PARTITION_NONE = 0;
+
+    public static final int PARTITION_NAME_HASH = 1;
+
+    public static final int PARTITION_FILE_SIZE = 2;
+
+    /**
+     * The descriptions of the ways the files are shared between the step copies
+     */
+    public static final String[] partitionTypeDesc = {
+            BaseMessages.getString(PKG, "JsonInputMeta.partitionType.None"),
+            BaseMessages.getString(PKG, "JsonInputMeta.partitionType.NameHash"),
+            BaseMessages.getString(PKG, "JsonInputMeta.partitionType.FileSize")};
+
+    /**
+     * The codes of the ways the files are shared between the step copies
+     */
+    public static final String[] partitionTypeCode = {"none", "name_hash", "file_size"};
+
+    /**
+     * Number of array elements per slice of the array index, unless set
+     */
+    public static final int DEFAULT_ARRAY_INDEX_INTERVAL = 10000;
+
+    /**
+     * Number of urls fetched at once, unless set
+     */
+    public static final int DEFAULT_URL_CONCURRENCY = 4;
+
     // TextFileInputMeta.Content.includeFilename
     /**
      * Flag indicating that we should include the filename in the output
@@ -246,8 +300,84 @@ public class JsonInputMeta extends
      */
     private boolean readurl;
 
+    /**
+     * Number of urls fetched at once, and of connections kept open
+     */
+    private int urlConcurrency;
+
+    /**
+     * Flag : keep the responses with an ETag and fetch them again with a conditional request
+     */
+    private boolean urlCache;
+
     private boolean removeSourceField;
 
+    /**
+     * Reader used to evaluate the field paths
+     */
+    private int readerType;
+
+    /**
+     * Flag : the input holds one Json document per line
+     */
+    private boolean jsonLines;
+
+    /**
+     * Number of threads parsing the Json lines, 0 for one per processor
+     */
+    private int jsonLinesThreads;
+
+    /**
+     * Size in megabytes above which an input is streamed, or else its rows are spilled to temporary files after the
+     * parse, 0 for never
+     */
+    private int spillThreshold;
+
+    /**
+     * Number of files opened ahead of the one being read, 0 to open them one at a time
+     */
+    private int prefetchFiles;
+
+    /**
+     * Flag : files opened ahead are also read in memory
+     */
+    private boolean prefetchContent;
+
+    /**
+     * Flag : only read the files that are new or changed since the last successful run
+     */
+    private boolean incremental;
+
+    /**
+     * Local file recording the files read by the successful runs
+     */
+    private String stateFile;
+
+    /**
+     * Flag : also record a hash of the content, so that a file touched without being changed is not read again
+     */
+    private boolean stateHash;
+
+    /**
+     * Flag : files holding an array are indexed, and read a slice of elements at a time
+     */
+    private boolean arrayIndex;
+
+    /**
+     * Number of array elements per slice of the index
+     */
+    private int arrayIndexInterval;
+
+    /**
+     * How the listed files are shared between the step copies
+     */
+    private int partitionType;
+
+    /**
+     * Flag : the large Json lines and indexed files are split in ranges read by all the step copies
+     */
+    private boolean splitFiles;
+
     public JsonInputMeta() {
         super(); // allocate BaseStepMeta
         setInputFiles(new InputFiles());
@@ -393,6 +523,22 @@ public class JsonInputMeta extends
         this.readurl = readurl;
     }
 
+    public int getUrlConcurrency() {
+        return urlConcurrency;
+    }
+
+    public void setUrlConcurrency(int urlConcurrency) {
+        this.urlConcurrency = urlConcurrency;
+    }
+
+    public boolean isUrlCache() {
+        return urlCache;
+    }
+
+    public void setUrlCache(boolean urlCache) {
+        this.urlCache = urlCache;
+    }
+
     public boolean isRemoveSourceField() {
         return removeSourceField;
     }
@@ -401,6 +547,192 @@ public class JsonInputMeta extends
         this.removeSourceField = removeSourceField;
     }
 
+    public int getReaderType() {
+        return readerType;
+    }
+
+    public void setReaderType(int readerType) {
+        this.readerType = readerType;
+    }
+
+    public boolean isJsonLines() {
+        return jsonLines;
+    }
+
+    public void setJsonLines(boolean jsonLines) {
+        this.jsonLines = jsonLines;
+    }
+
+    public int getJsonLinesThreads() {
+        return jsonLinesThreads;
+    }
+
+    public void setJsonLinesThreads(int jsonLinesThreads) {
+        this.jsonLinesThreads = jsonLinesThreads;
+    }
+
+    public int getSpillThreshold() {
+        return spillThreshold;
+    }
+
+    public void setSpillThreshold(int spillThreshold) {
+        this.spillThreshold = spillThreshold;
+    }
+
+    public int getPrefetchFiles() {
+        return prefetchFiles;
+    }
+
+    public void setPrefetchFiles(int prefetchFiles) {
+        this.prefetchFiles = prefetchFiles;
+    }
+
+    public boolean isPrefetchContent() {
+        return prefetchContent;
+    }
+
+    public void setPrefetchContent(boolean prefetchContent) {
+        this.prefetchContent = prefetchContent;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    public String getStateFile() {
+        return stateFile;
+    }
+
+    public void setStateFile(String stateFile) {
+        this.stateFile = stateFile;
+    }
+
+    public boolean isStateHash() {
+        return stateHash;
+    }
+
+    public void setStateHash(boolean stateHash) {
+        this.stateHash = stateHash;
+    }
+
+    public boolean isArrayIndex() {
+        return arrayIndex;
+    }
+
+    public void setArrayIndex(boolean arrayIndex) {
+        this.arrayIndex = arrayIndex;
+    }
+
+    public int getArrayIndexInterval() {
+        return arrayIndexInterval;
+    }
+
+    public void setArrayIndexInterval(int arrayIndexInterval) {
+        this.arrayIndexInterval = arrayIndexInterval;
+    }
+
+    public int getPartitionType() {
+        return partitionType;
+    }
+
+    public void setPartitionType(int partitionType) {
+        this.partitionType = partitionType;
+    }
+
+    public boolean isSplitFiles() {
+        return splitFiles;
+    }
+
+    public void setSplitFiles(boolean splitFiles) {
+        this.splitFiles = splitFiles;
+    }
+
+    public static int getReaderTypeByDesc(String tt) {
+        if (tt == null) {
+            return 0;
+        }
+
+        for (int i = 0; i < readerTypeDesc.length; i++) {
+            if (readerTypeDesc[i].equalsIgnoreCase(tt)) {
+                return i;
+            }
+        }
+        // If this fails, try to match using the code.
+        return getReaderTypeByCode(tt);
+    }
+
+    private static int getReaderTypeByCode(String tt) {
+        if (tt == null) {
+            return 0;
+        }
+
+        for (int i = 0; i < readerTypeCode.length; i++) {
+            if (readerTypeCode[i].equalsIgnoreCase(tt)) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    public static String getReaderTypeDesc(int i) {
+        if (i < 0 || i >= readerTypeDesc.length) {
+            return readerTypeDesc[0];
+        }
+        return readerTypeDesc[i];
+    }
+
+    private static String getReaderTypeCode(int i) {
+        if (i < 0 || i >= readerTypeCode.length) {
+            return readerTypeCode[0];
+        }
+        return readerTypeCode[i];
+    }
+
+    public static int getPartitionTypeByDesc(String tt) {
+        if (tt == null) {
+            return 0;
+        }
+
+        for (int i = 0; i < partitionTypeDesc.length; i++) {
+            if (partitionTypeDesc[i].equalsIgnoreCase(tt)) {
+                return i;
+            }
+        }
+        // If this fails, try to match using the code.
+        return getPartitionTypeByCode(tt);
+    }
+
+    private static int getPartitionTypeByCode(String tt) {
+        if (tt == null) {
+            return 0;
+        }
+
+        for (int i = 0; i < partitionTypeCode.length; i++) {
+            if (partitionTypeCode[i].equalsIgnoreCase(tt)) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    public static String getPartitionTypeDesc(int i) {
+        if (i < 0 || i >= partitionTypeDesc.length) {
+            return partitionTypeDesc[0];
+        }
+        return partitionTypeDesc[i];
+    }
+
+    private static String getPartitionTypeCode(int i) {
+        if (i < 0 || i >= partitionTypeCode.length) {
+            return partitionTypeCode[0];
+        }
+        return partitionTypeCode[i];
+    }
+
     public void setAddResultFile(boolean addResultFile) {
         this.addResultFile = addResultFile;
     }
@@ -613,6 +945,8 @@ public class JsonInputMeta extends
         retval.append("    ").append(XMLHandler.addTagValue("addresultfile", addResultFile));
 
         retval.append("    ").append(XMLHandler.addTagValue("readurl", readurl));
+        retval.append("    ").append(XMLHandler.addTagValue("url_concurrency", urlConcurrency));
+        retval.append("    ").append(XMLHandler.addTagValue("url_cache", urlCache));
 
         retval.append("    ").append(XMLHandler.addTagValue("removeSourceField", removeSourceField));
 
@@ -621,6 +955,19 @@ public class JsonInputMeta extends
         retval.append("    " + XMLHandler.addTagValue("ignoreMissingPath", ignoreMissingPath));
         retval.append("    " + XMLHandler.addTagValue("defaultPathLeafToNull", defaultPathLeafToNull));
         retval.append("    ").append(XMLHandler.addTagValue("rownum_field", rowNumberField));
+        retval.append("    ").append(XMLHandler.addTagValue("reader_type", getReaderTypeCode(readerType)));
+        retval.append("    ").append(XMLHandler.addTagValue("json_lines", jsonLines));
+        retval.append("    ").append(XMLHandler.addTagValue("json_lines_threads", jsonLinesThreads));
+        retval.append("    ").append(XMLHandler.addTagValue("spill_threshold", spillThreshold));
+        retval.append("    ").append(XMLHandler.addTagValue("prefetch_files", prefetchFiles));
+        retval.append("    ").append(XMLHandler.addTagValue("prefetch_content", prefetchContent));
+        retval.append("    ").append(XMLHandler.addTagValue("incremental", incremental));
+        retval.append("    ").append(XMLHandler.addTagValue("state_file", stateFile));
+        retval.append("    ").append(XMLHandler.addTagValue("state_hash", stateHash));
+        retval.append("    ").append(XMLHandler.addTagValue("array_index", arrayIndex));
+        retval.append("    ").append(XMLHandler.addTagValue("array_index_interval", arrayIndexInterval));
+        retval.append("    ").append(XMLHandler.addTagValue("partition_type", getPartitionTypeCode(partitionType)));
+        retval.append("    ").append(XMLHandler.addTagValue("split_files", splitFiles));
 
         retval.append("    <file>").append(Const.CR);
         for (int i = 0; i < getFileName().length; i++) {
@@ -675,6 +1022,8 @@ public class JsonInputMeta extends
             filenameField = XMLHandler.getTagValue(stepnode, "include_field");
             addResultFile = "Y".equalsIgnoreCase(XMLHandler.getTagValue(stepnode, "addresultfile"));
             readurl = "Y".equalsIgnoreCase(XMLHandler.getTagValue(stepnode, "readurl"));
+            urlConcurrency = Const.toInt(XMLHandler.getTagValue(stepnode, "url_concurrency"), DEFAULT_URL_CONCURRENCY);
+            urlCache = "Y".equalsIgnoreCase(XMLHandler.getTagValue(stepnode, "url_cache"));
             removeSourceField = "Y".equalsIgnoreCase(XMLHandler.getTagValue(stepnode, "removeSourceField"));
             isIgnoreEmptyFile = "Y".equalsIgnoreCase(XMLHandler.getTagValue(stepnode, "IsIgnoreEmptyFile"));
             ignoreMissingPath = "Y".equalsIgnoreCase(XMLHandler.getTagValue(stepnode, "ignoreMissingPath"));
@@ -683,6 +1032,20 @@ public class JsonInputMeta extends
             doNotFailIfNoFile = "Y".equalsIgnoreCase(XMLHandler.getTagValue(stepnode, "doNotFailIfNoFile"));
             includeRowNumber = "Y".equalsIgnoreCase(XMLHandler.getTagValue(stepnode, "rownum"));
             rowNumberField = XMLHandler.getTagValue(stepnode, "rownum_field");
+            readerType = getReaderTypeByCode(Const.NVL(XMLHandler.getTagValue(stepnode, "reader_type"), ""));
+            jsonLines = "Y".equalsIgnoreCase(XMLHandler.getTagValue(stepnode, "json_lines"));
+            jsonLinesThreads = Const.toInt(XMLHandler.getTagValue(stepnode, "json_lines_threads"), 0);
+            spillThreshold = Const.toInt(XMLHandler.getTagValue(stepnode, "spill_threshold"), 0);
+            prefetchFiles = Const.toInt(XMLHandler.getTagValue(stepnode, "prefetch_files"), 0);
+            prefetchContent = "Y".equalsIgnoreCase(XMLHandler.getTagValue(stepnode, "prefetch_content"));
+            incremental = "Y".equalsIgnoreCase(XMLHandler.getTagValue(stepnode, "incremental"));
+            stateFile = XMLHandler.getTagValue(stepnode, "state_file");
+            stateHash = "Y".equalsIgnoreCase(XMLHandler.getTagValue(stepnode, "state_hash"));
+            arrayIndex = "Y".equalsIgnoreCase(XMLHandler.getTagValue(stepnode, "array_index"));
+            arrayIndexInterval = Const.toInt(XMLHandler.getTagValue(stepnode, "array_index_interval"),
+                    DEFAULT_ARRAY_INDEX_INTERVAL);
+            partitionType = getPartitionTypeByCode(Const.NVL(XMLHandler.getTagValue(stepnode, "partition_type"), ""));
+            splitFiles = "Y".equalsIgnoreCase(XMLHandler.getTagValue(stepnode, "split_files"));
 
             Node filenode = XMLHandler.getSubNode(stepnode, "file");
             Node fields = XMLHandler.getSubNode(stepnode, "fields");
@@ -755,9 +1118,25 @@ public class JsonInputMeta extends
         addResultFile = false;
 
         readurl = false;
+        urlConcurrency = DEFAULT_URL_CONCURRENCY;
+        urlCache = false;
 
         removeSourceField = false;
 
+        readerType = READER_TYPE_DEFAULT;
+        jsonLines = false;
+        jsonLinesThreads = 0;
+        spillThreshold = 0;
+        prefetchFiles = 0;
+        prefetchContent = false;
+        incremental = false;
+        stateFile = null;
+        stateHash = false;
+        arrayIndex = false;
+        arrayIndexInterval = DEFAULT_ARRAY_INDEX_INTERVAL;
+        partitionType = PARTITION_NONE;
+        splitFiles = false;
+
         int nrFiles = 0;
         int nrFields = 0;
 
@@ -814,6 +1193,11 @@ public class JsonInputMeta extends
             addResultFile = rep.getStepAttributeBoolean(id_step, "addresultfile");
 
             readurl = rep.getStepAttributeBoolean(id_step, "readurl");
+            urlConcurrency = (int) rep.getStepAttributeInteger(id_step, "url_concurrency");
+            if (urlConcurrency <= 0) {
+                urlConcurrency = DEFAULT_URL_CONCURRENCY;
+            }
+            urlCache = rep.getStepAttributeBoolean(id_step, "url_cache");
 
             removeSourceField = rep.getStepAttributeBoolean(id_step, "removeSourceField");
 
@@ -826,6 +1210,23 @@ public class JsonInputMeta extends
             includeRowNumber = rep.getStepAttributeBoolean(id_step, "rownum");
             rowNumberField = rep.getStepAttributeString(id_step, "rownum_field");
             rowLimit = rep.getStepAttributeInteger(id_step, "limit");
+            readerType = getReaderTypeByCode(Const.NVL(rep.getStepAttributeString(id_step, "reader_type"), ""));
+            jsonLines = rep.getStepAttributeBoolean(id_step, "json_lines");
+            jsonLinesThreads = (int) rep.getStepAttributeInteger(id_step, "json_lines_threads");
+            spillThreshold = (int) rep.getStepAttributeInteger(id_step, "spill_threshold");
+            prefetchFiles = (int) rep.getStepAttributeInteger(id_step, "prefetch_files");
+            prefetchContent = rep.getStepAttributeBoolean(id_step, "prefetch_content");
+            incremental = rep.getStepAttributeBoolean(id_step, "incremental");
+            stateFile = rep.getStepAttributeString(id_step, "state_file");
+            stateHash = rep.getStepAttributeBoolean(id_step, "state_hash");
+            arrayIndex = rep.getStepAttributeBoolean(id_step, "array_index");
+            arrayIndexInterval = (int) rep.getStepAttributeInteger(id_step, "array_index_interval");
+            if (arrayIndexInterval <= 0) {
+                arrayIndexInterval = DEFAULT_ARRAY_INDEX_INTERVAL;
+            }
+            partitionType =
+                    getPartitionTypeByCode(Const.NVL(rep.getStepAttributeString(id_step, "partition_type"), ""));
+            splitFiles = rep.getStepAttributeBoolean(id_step, "split_files");
 
             int nrFiles = rep.countNrStepAttributes(id_step, "file_name");
             int nrFields = rep.countNrStepAttributes(id_step, "field_name");
@@ -855,6 +1256,7 @@ public class JsonInputMeta extends
                 field.setTrimType(ValueMetaBase.getTrimTypeByCode(rep.getStepAttributeString(
                         id_step, i, "field_trim_type")));
                 field.setRepeated(rep.getStepAttributeBoolean(id_step, i, "field_repeat"));
+                field.setDeduplicated(rep.getStepAttributeBoolean(id_step, i, "field_dedupe"));
 
                 getInputFields()[i] = field;
             }
@@ -883,6 +1285,8 @@ public class JsonInputMeta extends
             rep.saveStepAttribute(id_transformation, id_step, "include_field", filenameField);
             rep.saveStepAttribute(id_transformation, id_step, "addresultfile", addResultFile);
             rep.saveStepAttribute(id_transformation, id_step, "readurl", readurl);
+            rep.saveStepAttribute(id_transformation, id_step, "url_concurrency", urlConcurrency);
+            rep.saveStepAttribute(id_transformation, id_step, "url_cache", urlCache);
 
             rep.saveStepAttribute(id_transformation, id_step, "removeSourceField", removeSourceField);
 
@@ -895,6 +1299,19 @@ public class JsonInputMeta extends
             rep.saveStepAttribute(id_transformation, id_step, "rownum", includeRowNumber);
             rep.saveStepAttribute(id_transformation, id_step, "rownum_field", rowNumberField);
             rep.saveStepAttribute(id_transformation, id_step, "limit", rowLimit);
+            rep.saveStepAttribute(id_transformation, id_step, "reader_type", getReaderTypeCode(readerType));
+            rep.saveStepAttribute(id_transformation, id_step, "json_lines", jsonLines);
+            rep.saveStepAttribute(id_transformation, id_step, "json_lines_threads", jsonLinesThreads);
+            rep.saveStepAttribute(id_transformation, id_step, "spill_threshold", spillThreshold);
+            rep.saveStepAttribute(id_transformation, id_step, "prefetch_files", prefetchFiles);
+            rep.saveStepAttribute(id_transformation, id_step, "prefetch_content", prefetchContent);
+            rep.saveStepAttribute(id_transformation, id_step, "incremental", incremental);
+            rep.saveStepAttribute(id_transformation, id_step, "state_file", stateFile);
+            rep.saveStepAttribute(id_transformation, id_step, "state_hash", stateHash);
+            rep.saveStepAttribute(id_transformation, id_step, "array_index", arrayIndex);
+            rep.saveStepAttribute(id_transformation, id_step, "array_index_interval", arrayIndexInterval);
+            rep.saveStepAttribute(id_transformation, id_step, "partition_type", getPartitionTypeCode(partitionType));
+            rep.saveStepAttribute(id_transformation, id_step, "split_files", splitFiles);
 
             for (int i = 0; i < getFileName().length; i++) {
                 rep.saveStepAttribute(id_transformation, id_step, i, "file_name", getFileName()[i]);
@@ -918,6 +1335,7 @@ public class JsonInputMeta extends
                 rep.saveStepAttribute(id_transformation, id_step, i, "field_precision", field.getPrecision());
                 rep.saveStepAttribute(id_transformation, id_step, i, "field_trim_type", field.getTrimTypeCode());
                 rep.saveStepAttribute(id_transformation, id_step, i, "field_repeat", field.isRepeated());
+                rep.saveStepAttribute(id_transformation, id_step, i, "field_dedupe", field.isDeduplicated());
             }
             rep.saveStepAttribute(id_transformation, id_step, "IsInFields", inFields);
             rep.saveStepAttribute(id_transformation, id_step, "IsAFile", isAFile);
@@ -996,6 +1414,13 @@ public class JsonInputMeta extends
                 remarks.add(cr);
             }
         }
+
+        if (incremental && Const.isEmpty(stateFile)) {
+            cr =
+                    new CheckResult(CheckResult.TYPE_RESULT_ERROR, BaseMessages.getString(PKG,
+                            "JsonInputMeta.CheckResult.NoStateFile"), stepMeta);
+            remarks.add(cr);
+        }
     }
 
     public StepInterface getStep(StepMeta stepMeta, StepDataInterface stepDataInterface, int cnr, TransMeta tr,
@@ -0,0 +1,227 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.serasoft.di.steps.jsoninput.reader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.commons.vfs2.FileContent;
+import org.apache.commons.vfs2.FileObject;
+import org.pentaho.di.core.vfs.KettleVFS;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Byte offsets of the elements of a file holding a Json array, kept in a sidecar file next to it.
+ * <p>
+ * The elements are grouped in slices of a fixed number of elements, and the index keeps where each slice starts and
+ * ends, so that a slice can be read on its own as an array of its elements without reading what comes before. The
+ * sidecar records the size and the modification time of the file it was built from, and is built again when they no
+ * longer match.
+ */
+public class ArrayIndex {
+
+  /**
+   * Appended to the name of the indexed file to name its sidecar
+   */
+  public static final String SUFFIX = ".jidx";
+
+  private static final int MAGIC = 0x4A494458;
+  private static final int VERSION = 1;
+
+  private static final byte[] ARRAY_START = { '[' };
+  private static final byte[] ARRAY_END = { ']' };
+
+  /**
+   * Locks shared by the files whose names hash to the same stripe, so that their number does not grow with the files
+   * read by a long running server
+   */
+  private static final Object[] LOCKS = new Object[ 64 ];
+
+  static {
+    for ( int i = 0; i < LOCKS.length; i++ ) {
+      LOCKS[ i ] = new Object();
+    }
+  }
+
+  private final long fileSize;
+  private final long modified;
+  private final int interval;
+  private final long elementCount;
+  private final long[] starts;
+  private final long[] ends;
+
+  private ArrayIndex( long fileSize, long modified, int interval, long elementCount, long[] starts, long[] ends ) {
+    this.fileSize = fileSize;
+    this.modified = modified;
+    this.interval = interval;
+    this.elementCount = elementCount;
+    this.starts = starts;
+    this.ends = ends;
+  }
+
+  /**
+   * @return the lock to hold while loading or building the index of a file, so that the step copies reading parts of
+   *         the same file build its index once
+   */
+  public static Object getLock( FileObject file ) {
+    return LOCKS[ Math.floorMod( file.getName().getURI().hashCode(), LOCKS.length ) ];
+  }
+
+  /**
+   * @return the sidecar of the file
+   */
+  public static FileObject getSidecar( FileObject file ) throws IOException {
+    return KettleVFS.getFileObject( file.getName().getURI() + SUFFIX );
+  }
+
+  /**
+   * Reads the sidecar of the file.
+   *
+   * @return the index, or null if there is none or it does not match the file as it is now
+   */
+  public static ArrayIndex load( FileObject file, int interval ) throws IOException {
+    FileObject sidecar = getSidecar( file );
+    if ( !sidecar.exists() ) {
+      return null;
+    }
+    FileContent content = file.getContent();
+    try ( DataInputStream in = new DataInputStream( new BufferedInputStream( KettleVFS.getInputStream( sidecar ) ) ) ) {
+      if ( in.readInt() != MAGIC || in.readInt() != VERSION ) {
+        return null;
+      }
+      long fileSize = in.readLong();
+      long modified = in.readLong();
+      int sidecarInterval = in.readInt();
+      if ( fileSize != content.getSize() || modified != content.getLastModifiedTime() || sidecarInterval != interval ) {
+        return null;
+      }
+      long elementCount = in.readLong();
+      int sliceCount = in.readInt();
+      long[] starts = new long[ sliceCount ];
+      long[] ends = new long[ sliceCount ];
+      for ( int i = 0; i < sliceCount; i++ ) {
+        starts[ i ] = in.readLong();
+        ends[ i ] = in.readLong();
+      }
+      return new ArrayIndex( fileSize, modified, interval, elementCount, starts, ends );
+    }
+  }
+
+  /**
+   * Scans the file once, without building its values.
+   *
+   * @param interval number of elements per slice
+   * @return the index, or null if the file does not hold an array
+   */
+  public static ArrayIndex build( FileObject file, int interval ) throws IOException {
+    FileContent content = file.getContent();
+    long fileSize = content.getSize();
+    long modified = content.getLastModifiedTime();
+    long[] starts = new long[ 16 ];
+    long[] ends = new long[ 16 ];
+    int sliceCount = 0;
+    long elementCount = 0;
+    try ( JsonParser parser = JsonProjection.createJsonFactory().createParser(
+      MappedFileInputStream.open( file ) ) ) {
+      if ( parser.nextToken() != JsonToken.START_ARRAY ) {
+        return null;
+      }
+      while ( parser.nextToken() != JsonToken.END_ARRAY ) {
+        if ( elementCount % interval == 0 ) {
+          if ( sliceCount == starts.length ) {
+            starts = Arrays.copyOf( starts, sliceCount * 2 );
+            ends = Arrays.copyOf( ends, sliceCount * 2 );
+          }
+          starts[ sliceCount++ ] = parser.getTokenLocation().getByteOffset();
+        }
+        if ( parser.getCurrentToken() == JsonToken.VALUE_STRING ) {
+          // strings are only read up to their end when asked for
+          parser.getTextLength();
+        }
+        parser.skipChildren();
+        ends[ sliceCount - 1 ] = parser.getCurrentLocation().getByteOffset();
+        elementCount++;
+      }
+    }
+    return new ArrayIndex( fileSize, modified, interval, elementCount,
+      Arrays.copyOf( starts, sliceCount ), Arrays.copyOf( ends, sliceCount ) );
+  }
+
+  /**
+   * Writes the sidecar of the file.
+   */
+  public void save( FileObject file ) throws IOException {
+    try ( DataOutputStream out = new DataOutputStream( new BufferedOutputStream(
+      KettleVFS.getOutputStream( getSidecar( file ), false ) ) ) ) {
+      out.writeInt( MAGIC );
+      out.writeInt( VERSION );
+      out.writeLong( fileSize );
+      out.writeLong( modified );
+      out.writeInt( interval );
+      out.writeLong( elementCount );
+      out.writeInt( starts.length );
+      for ( int i = 0; i < starts.length; i++ ) {
+        out.writeLong( starts[ i ] );
+        out.writeLong( ends[ i ] );
+      }
+    }
+  }
+
+  public long getElementCount() {
+    return elementCount;
+  }
+
+  public int getSliceCount() {
+    return starts.length;
+  }
+
+  /**
+   * Opens one slice of the file, read as an array of its elements.
+   */
+  public InputStream openSlice( FileObject file, int slice ) throws IOException {
+    InputStream in = MappedFileInputStream.open( file );
+    try {
+      MappedFileInputStream.skipFully( in, starts[ slice ] );
+    } catch ( IOException e ) {
+      IOUtils.closeQuietly( in );
+      throw e;
+    }
+    // closing the bounded stream closes the file
+    BoundedInputStream elements = new BoundedInputStream( in, ends[ slice ] - starts[ slice ] );
+    return new SequenceInputStream( Collections.enumeration( Arrays.asList(
+      new ByteArrayInputStream( ARRAY_START ), new BufferedInputStream( elements ),
+      new ByteArrayInputStream( ARRAY_END ) ) ) );
+  }
+}
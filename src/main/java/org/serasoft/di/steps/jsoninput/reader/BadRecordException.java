@@ -0,0 +1,36 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.serasoft.di.steps.jsoninput.reader;
+
+import org.pentaho.di.core.exception.KettleException;
+
+/**
+ * A single record of the input could not be read, the records that follow it still can.
+ */
+public class BadRecordException extends KettleException {
+  private static final long serialVersionUID = 1L;
+
+  public BadRecordException( String message, Throwable cause ) {
+    super( message, cause );
+  }
+}
@@ -0,0 +1,353 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.serasoft.di.steps.jsoninput.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.i18n.BaseMessages;
+import org.serasoft.di.steps.jsoninput.JsonInputField;
+import org.serasoft.di.steps.jsoninput.JsonInputMeta;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.spi.json.JsonProvider;
+
+/**
+ * Reads column oriented documents, where a header names the columns once and each row is an array of cells:
+ *
+ * <pre>
+ * {"cols":["id",{"name":"price","type":"decimal"}],"rows":[[1,"9.90"],[2,"12.50"]]}
+ * </pre>
+ *
+ * The path of each field names its column, either as is or as a single property (<code>$.price</code>). The positions
+ * of the columns are found once from the header, then the rows are read one at a time straight from the tokens, the
+ * cells of the columns no field reads being skipped.
+ * <p>
+ * A column of the header can be an object giving its name and type. The type tells how its cells are read, so that a
+ * cell comes out of the reader as the Java type the step converts to without going through its string form:
+ * <code>string</code> cells keep their text, <code>integer</code> ones are read as longs, <code>number</code> ones as
+ * doubles and <code>decimal</code> ones as big decimals. Cells of other types, and cells that do not have the token
+ * of their type, are read as by the other readers.
+ * <p>
+ * The header is also looked for under <code>columns</code> and the rows under <code>data</code>. Other members of the
+ * document are skipped, the header must come before the rows.
+ */
+public class ColumnarJsonReader implements IJsonReader {
+  private static Class<?> PKG = JsonInputMeta.class; // for i18n purposes, needed by Translator2!!
+
+  private static final List<String> HEADER_KEYS = Arrays.asList( "cols", "columns" );
+  private static final List<String> ROWS_KEYS = Arrays.asList( "rows", "data" );
+
+  private enum CellType {
+    ANY, STRING, INTEGER, NUMBER, DECIMAL
+  }
+
+  private static final Map<String, CellType> CELL_TYPES = new HashMap<>();
+
+  static {
+    for ( String name : new String[] { "string", "text", "varchar", "char" } ) {
+      CELL_TYPES.put( name, CellType.STRING );
+    }
+    for ( String name : new String[] { "integer", "int", "long", "bigint", "smallint" } ) {
+      CELL_TYPES.put( name, CellType.INTEGER );
+    }
+    for ( String name : new String[] { "number", "double", "float", "real" } ) {
+      CELL_TYPES.put( name, CellType.NUMBER );
+    }
+    for ( String name : new String[] { "decimal", "numeric", "bignumber" } ) {
+      CELL_TYPES.put( name, CellType.DECIMAL );
+    }
+  }
+
+  private final JsonFactory jsonFactory = JsonProjection.createJsonFactory();
+  private final JsonProvider provider = Configuration.defaultConfiguration().jsonProvider();
+  private final LogChannelInterface log;
+
+  private String[] columnNames;
+  private boolean ignoreMissingPath;
+  private long rowLimit;
+
+  public ColumnarJsonReader( JsonInputField[] fields, LogChannelInterface log ) throws KettleException {
+    this.log = log;
+    setFields( fields );
+  }
+
+  @Override
+  public void setFields( JsonInputField[] fields ) throws KettleException {
+    columnNames = new String[ fields.length ];
+    for ( int i = 0; i < fields.length; i++ ) {
+      columnNames[ i ] = getColumnName( fields[ i ].getPath() );
+    }
+  }
+
+  /**
+   * @return the property a path made of a single one reads, or the path itself
+   */
+  static String getColumnName( String path ) {
+    PathStep.Parsed parsed = PathStep.parse( path );
+    if ( parsed.isComplete() && parsed.getSteps().size() == 1
+      && parsed.getSteps().get( 0 ).getType() == PathStep.Type.KEY ) {
+      return parsed.getSteps().get( 0 ).getKey();
+    }
+    return path;
+  }
+
+  @Override
+  public boolean isIgnoreMissingPath() {
+    return ignoreMissingPath;
+  }
+
+  @Override
+  public void setIgnoreMissingPath( boolean value ) {
+    this.ignoreMissingPath = value;
+  }
+
+  @Override
+  public void setRowLimit( long rowLimit ) {
+    this.rowLimit = rowLimit;
+  }
+
+  @Override
+  public RowSet parse( InputStream in ) throws KettleException {
+    try {
+      ColumnRowSet rowSet = new ColumnRowSet( JsonProjection.createParser( jsonFactory, in ) );
+      rowSet.init();
+      return rowSet;
+    } catch ( IOException e ) {
+      throw new KettleException( e );
+    }
+  }
+
+  /**
+   * Turns each row array into a row as the parser reaches it.
+   */
+  private class ColumnRowSet extends LazyRowSet {
+    private final JsonParser parser;
+    private final long recordLimit = rowLimit;
+    private boolean started;
+    private boolean inRows;
+    private long records;
+
+    /**
+     * Field reading each column, -1 for the columns no field reads
+     */
+    private int[] columnFields;
+    /**
+     * Further fields reading the same column as another one, as pairs of field indexes
+     */
+    private int[] sharedColumns;
+    private CellType[] columnTypes;
+
+    ColumnRowSet( JsonParser parser ) {
+      this.parser = parser;
+    }
+
+    @Override
+    protected Object[] fetchNext() throws KettleException {
+      try {
+        if ( !started ) {
+          started = true;
+          inRows = findRows();
+        }
+        if ( !inRows || ( recordLimit > 0 && records >= recordLimit ) ) {
+          return null;
+        }
+        JsonToken token = parser.nextToken();
+        if ( token == null || token == JsonToken.END_ARRAY ) {
+          // what follows the rows is not read
+          inRows = false;
+          return null;
+        }
+        records++;
+        if ( token != JsonToken.START_ARRAY ) {
+          String text = parser.getText();
+          parser.skipChildren();
+          throw new BadRecordException( BaseMessages.getString( PKG, "JsonReader.Error.ColumnarRowNotArray",
+            records, text ), null );
+        }
+        return readRow();
+      } catch ( IOException e ) {
+        throw new KettleException( e );
+      }
+    }
+
+    @Override
+    protected void close() {
+      if ( log.isDetailed() ) {
+        log.logDetailed( BaseMessages.getString( PKG, "JsonInput.Log.NrRecords", records ) );
+      }
+      try {
+        parser.close();
+      } catch ( IOException e ) {
+        if ( log.isDebug() ) {
+          log.logDebug( e.getLocalizedMessage(), e );
+        }
+      }
+    }
+
+    /**
+     * Reads the header and moves the parser into the array of rows.
+     *
+     * @return false if the document has no rows
+     */
+    private boolean findRows() throws IOException, KettleException {
+      if ( parser.nextToken() != JsonToken.START_OBJECT ) {
+        return false;
+      }
+      while ( parser.nextToken() == JsonToken.FIELD_NAME ) {
+        String name = parser.getCurrentName();
+        JsonToken token = parser.nextToken();
+        if ( HEADER_KEYS.contains( name ) && token == JsonToken.START_ARRAY && columnTypes == null ) {
+          readHeader();
+        } else if ( ROWS_KEYS.contains( name ) && token == JsonToken.START_ARRAY ) {
+          if ( columnTypes == null ) {
+            throw new KettleException( BaseMessages.getString( PKG, "JsonReader.Error.ColumnarNoHeader", name ) );
+          }
+          return true;
+        } else {
+          parser.skipChildren();
+        }
+      }
+      return false;
+    }
+
+    private void readHeader() throws IOException, KettleException {
+      List<String> names = new ArrayList<>();
+      List<CellType> types = new ArrayList<>();
+      JsonToken token;
+      while ( ( token = parser.nextToken() ) != JsonToken.END_ARRAY ) {
+        String name = null;
+        CellType type = CellType.ANY;
+        if ( token == JsonToken.START_OBJECT ) {
+          while ( parser.nextToken() == JsonToken.FIELD_NAME ) {
+            String key = parser.getCurrentName();
+            parser.nextToken();
+            if ( "name".equals( key ) && parser.getCurrentToken().isScalarValue() ) {
+              name = parser.getText();
+            } else if ( "type".equals( key ) && parser.getCurrentToken().isScalarValue() ) {
+              CellType known = CELL_TYPES.get( parser.getText().toLowerCase( Locale.ROOT ) );
+              type = known == null ? CellType.ANY : known;
+            } else {
+              parser.skipChildren();
+            }
+          }
+        } else if ( token.isScalarValue() ) {
+          name = parser.getText();
+        } else {
+          parser.skipChildren();
+        }
+        names.add( name );
+        types.add( type );
+      }
+      mapColumns( names );
+      columnTypes = types.toArray( new CellType[ types.size() ] );
+    }
+
+    /**
+     * Finds the column of each field, once per document.
+     */
+    private void mapColumns( List<String> names ) throws KettleException {
+      columnFields = new int[ names.size() ];
+      Arrays.fill( columnFields, -1 );
+      List<Integer> shared = new ArrayList<>();
+      for ( int field = 0; field < columnNames.length; field++ ) {
+        int column = names.indexOf( columnNames[ field ] );
+        if ( column < 0 ) {
+          if ( !isIgnoreMissingPath() ) {
+            throw new KettleException( BaseMessages.getString( PKG, "JsonReader.Error.CanNotFindPath",
+              columnNames[ field ] ) );
+          }
+        } else if ( columnFields[ column ] < 0 ) {
+          columnFields[ column ] = field;
+        } else {
+          shared.add( columnFields[ column ] );
+          shared.add( field );
+        }
+      }
+      sharedColumns = new int[ shared.size() ];
+      for ( int i = 0; i < sharedColumns.length; i++ ) {
+        sharedColumns[ i ] = shared.get( i );
+      }
+    }
+
+    private Object[] readRow() throws IOException {
+      Object[] row = new Object[ columnNames.length ];
+      int column = 0;
+      while ( parser.nextToken() != JsonToken.END_ARRAY ) {
+        int field = column < columnFields.length ? columnFields[ column ] : -1;
+        if ( field < 0 ) {
+          parser.skipChildren();
+        } else {
+          row[ field ] = readCell( columnTypes[ column ] );
+        }
+        column++;
+      }
+      for ( int i = 0; i < sharedColumns.length; i += 2 ) {
+        row[ sharedColumns[ i + 1 ] ] = row[ sharedColumns[ i ] ];
+      }
+      return row;
+    }
+
+    private Object readCell( CellType type ) throws IOException {
+      JsonToken token = parser.getCurrentToken();
+      switch ( type ) {
+        case STRING:
+          if ( token.isScalarValue() && token != JsonToken.VALUE_NULL ) {
+            return parser.getText();
+          }
+          break;
+        case INTEGER:
+          if ( token == JsonToken.VALUE_NUMBER_INT && parser.getNumberType() != JsonParser.NumberType.BIG_INTEGER ) {
+            return parser.getLongValue();
+          }
+          break;
+        case NUMBER:
+          if ( token.isNumeric() ) {
+            return parser.getDoubleValue();
+          }
+          break;
+        case DECIMAL:
+          if ( token.isNumeric() ) {
+            return parser.getDecimalValue();
+          }
+          break;
+        default:
+          break;
+      }
+      return JsonProjection.readValue( parser, provider );
+    }
+  }
+
+}
@@ -0,0 +1,145 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.serasoft.di.steps.jsoninput.reader;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdUtils;
+import org.pentaho.di.i18n.BaseMessages;
+import org.serasoft.di.steps.jsoninput.JsonInputMeta;
+
+/**
+ * Recognizes compressed inputs, by their file extension or else their first bytes, and decompresses them as they
+ * are read.
+ */
+public class Decompression {
+  private static Class<?> PKG = JsonInputMeta.class; // for i18n purposes, needed by Translator2!!
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  public enum Format {
+    NONE, GZIP, BZIP2, ZSTD
+  }
+
+  private static final byte[] GZIP_MAGIC = { (byte) 0x1f, (byte) 0x8b };
+  private static final byte[] BZIP2_MAGIC = { 'B', 'Z', 'h' };
+  private static final byte[] ZSTD_MAGIC = { (byte) 0x28, (byte) 0xb5, (byte) 0x2f, (byte) 0xfd };
+
+  private Decompression() {
+  }
+
+  /**
+   * @param fileName name of the input, null if it has none
+   * @param in input supporting mark and reset
+   */
+  public static Format detect( String fileName, InputStream in ) throws IOException {
+    in.mark( ZSTD_MAGIC.length );
+    byte[] head = new byte[ ZSTD_MAGIC.length ];
+    int len = 0;
+    int n;
+    while ( len < head.length && ( n = in.read( head, len, head.length - len ) ) > 0 ) {
+      len += n;
+    }
+    in.reset();
+    if ( len == 0 ) {
+      // nothing to decompress
+      return Format.NONE;
+    }
+    Format byName = detectByName( fileName );
+    if ( byName != Format.NONE ) {
+      return byName;
+    }
+    if ( startsWith( head, len, GZIP_MAGIC ) ) {
+      return Format.GZIP;
+    }
+    if ( startsWith( head, len, BZIP2_MAGIC ) ) {
+      return Format.BZIP2;
+    }
+    if ( startsWith( head, len, ZSTD_MAGIC ) ) {
+      return Format.ZSTD;
+    }
+    return Format.NONE;
+  }
+
+  private static Format detectByName( String fileName ) {
+    if ( fileName == null ) {
+      return Format.NONE;
+    }
+    String name = fileName.toLowerCase( Locale.ROOT );
+    if ( name.endsWith( ".gz" ) || name.endsWith( ".gzip" ) ) {
+      return Format.GZIP;
+    }
+    if ( name.endsWith( ".bz2" ) ) {
+      return Format.BZIP2;
+    }
+    if ( name.endsWith( ".zst" ) || name.endsWith( ".zstd" ) ) {
+      return Format.ZSTD;
+    }
+    return Format.NONE;
+  }
+
+  private static boolean startsWith( byte[] head, int len, byte[] magic ) {
+    if ( len < magic.length ) {
+      return false;
+    }
+    for ( int i = 0; i < magic.length; i++ ) {
+      if ( head[ i ] != magic[ i ] ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the input, able to go back to its start after {@link #detect(String, InputStream)}
+   */
+  public static InputStream markable( InputStream in ) {
+    return in.markSupported() ? in : new BufferedInputStream( in, BUFFER_SIZE );
+  }
+
+  /**
+   * @return the input decompressed as it is read. Concatenated gzip members and bzip2 streams are all read.
+   */
+  public static InputStream open( Format format, InputStream in ) throws IOException {
+    switch ( format ) {
+      case GZIP:
+        // reads the members one after the other, finding the next one by reading rather than from available()
+        return new GzipCompressorInputStream( in, true );
+      case BZIP2:
+        return new BZip2CompressorInputStream( in, true );
+      case ZSTD:
+        if ( !ZstdUtils.isZstdCompressionAvailable() ) {
+          throw new IOException( BaseMessages.getString( PKG, "JsonReader.Error.ZstdUnavailable" ) );
+        }
+        return new ZstdCompressorInputStream( in );
+      default:
+        return in;
+    }
+  }
+}
@@ -22,9 +22,14 @@
 
 package org.serasoft.di.steps.jsoninput.reader;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.BooleanSupplier;
 
 import org.pentaho.di.core.RowSet;
 import org.pentaho.di.core.SingleRowRowSet;
@@ -34,6 +39,7 @@ import org.pentaho.di.i18n.BaseMessages;
 import org.serasoft.di.steps.jsoninput.JsonInputField;
 import org.serasoft.di.steps.jsoninput.JsonInputMeta;
 
+import com.fasterxml.jackson.core.JsonFactory;
 import com.jayway.jsonpath.Configuration;
 import com.jayway.jsonpath.JsonPath;
 import com.jayway.jsonpath.Option;
@@ -61,8 +67,23 @@ public class FastJsonReader implements IJsonReader {
 
   private JsonInputField[] fields;
   private JsonPath[] paths = null;
+  private PathTrie pathTrie;
+  private JsonProjection projection;
+  private final JsonFactory jsonFactory = JsonProjection.createJsonFactory();
   private LogChannelInterface log;
 
+  private boolean lazyRows;
+  private boolean structuralIndex;
+  private RecordPaths recordPaths;
+
+  private long rowLimit;
+  private BooleanSupplier stopped;
+
+  /**
+   * Larger documents are read by the tokenizer, as they would not fit in an array
+   */
+  private static final int MAX_INDEXED_SIZE = 1 << 30;
+
   private static final Option[] DEFAULT_OPTIONS = { Option.SUPPRESS_EXCEPTIONS, Option.ALWAYS_RETURN_LIST };
 
   protected FastJsonReader( LogChannelInterface log ) throws KettleException {
@@ -76,6 +97,8 @@ public class FastJsonReader implements IJsonReader {
     this( log );
     this.fields = fields;
     this.paths = compilePaths( fields );
+    this.pathTrie = compilePathTrie( fields, paths );
+    this.projection = compileProjection( fields );
   }
 
   public FastJsonReader( JsonInputField[] fields, boolean defaultPathLeafToNull, LogChannelInterface log )
@@ -114,6 +137,80 @@ public class FastJsonReader implements IJsonReader {
     }
   }
 
+  /**
+   * When enabled, the rows are built one at a time from the records shared by the field paths instead of all at once
+   * at parse time. Falls back to building them all at once if the paths can not be split into records.
+   */
+  public void setLazyRows( boolean value ) {
+    this.lazyRows = value;
+    compileRecordPaths();
+  }
+
+  public boolean isLazyRows() {
+    return lazyRows;
+  }
+
+  /**
+   * When enabled, the documents are read in memory and projected through their {@link StructuralIndex}, skipping the
+   * values the paths do not reach without parsing them. The documents that are not plain Json are read by the
+   * tokenizer.
+   */
+  public void setStructuralIndex( boolean value ) {
+    this.structuralIndex = value;
+  }
+
+  public boolean isStructuralIndex() {
+    return structuralIndex;
+  }
+
+  private void compileRecordPaths() {
+    recordPaths = null;
+    if ( !lazyRows || fields == null ) {
+      return;
+    }
+    try {
+      recordPaths = RecordPaths.compile( fields );
+    } catch ( KettleException e ) {
+      if ( log.isDetailed() ) {
+        log.logDetailed( BaseMessages.getString( PKG, "JsonReader.Log.EagerFallback", e.getMessage().trim() ) );
+      }
+    }
+  }
+
+  @Override
+  public void setRowLimit( long rowLimit ) {
+    this.rowLimit = rowLimit;
+  }
+
+  @Override
+  public void setStopped( BooleanSupplier stopped ) {
+    this.stopped = stopped;
+  }
+
+  /**
+   * Compiles the projection with the record path when the fields have one, so that the reading can stop after a
+   * number of records, see {@link #getRecordLimit()}.
+   */
+  private static JsonProjection compileProjection( JsonInputField[] fields ) {
+    List<PathStep> recordPath;
+    try {
+      recordPath = RecordPaths.compile( fields ).getRecordPath();
+    } catch ( KettleException e ) {
+      recordPath = null;
+    }
+    return JsonProjection.compile( fields, recordPath );
+  }
+
+  /**
+   * @return the number of records the projection reads, the row limit when each record is sure to give exactly one
+   *         row, 0 to read them all otherwise. Only the lazy rows give one row per record: eagerly evaluated, a record
+   *         missing a property or an index on the way to a field gives no row, even with missing leaves read as null,
+   *         so the rows are counted once evaluated instead.
+   */
+  private long getRecordLimit() {
+    return recordPaths != null ? rowLimit : 0;
+  }
+
   private ParseContext getParseContext() {
     return JsonPath.using( jsonConfiguration );
   }
@@ -131,13 +228,60 @@ public class FastJsonReader implements IJsonReader {
     return paths;
   }
 
+  private static PathTrie compilePathTrie( JsonInputField[] fields, JsonPath[] paths ) {
+    String[] pathTexts = new String[ fields.length ];
+    for ( int i = 0; i < fields.length; i++ ) {
+      pathTexts[ i ] = fields[ i ].getPath();
+    }
+    return new PathTrie( paths, pathTexts );
+  }
+
   protected void readInput( InputStream is ) throws KettleException {
-    jsonReadContext = getParseContext().parse( is, JSON_CHARSET );
+    if ( projection != null ) {
+      // only build what the paths can reach
+      try {
+        Object document = structuralIndex && !( is instanceof StringInputStream ) ? readIndexed( is )
+          : projection.read( jsonFactory, is, jsonConfiguration.jsonProvider(), getRecordLimit(), stopped );
+        jsonReadContext = getParseContext().parse( document );
+      } catch ( IOException e ) {
+        throw new KettleException( e );
+      }
+    } else if ( is instanceof StringInputStream ) {
+      // no need to go through bytes
+      jsonReadContext = getParseContext().parse( ( (StringInputStream) is ).getString() );
+    } else {
+      jsonReadContext = getParseContext().parse( is, JSON_CHARSET );
+    }
     if ( jsonReadContext == null ) {
       throw new KettleException( BaseMessages.getString( PKG, "JsonReader.Error.ReadUrl.Null" ) );
     }
   }
 
+  private Object readIndexed( InputStream is ) throws IOException {
+    byte[] buf = new byte[ 64 * 1024 ];
+    int length = 0;
+    int n;
+    while ( ( n = is.read( buf, length, buf.length - length ) ) >= 0 ) {
+      length += n;
+      if ( length == buf.length ) {
+        if ( length == MAX_INDEXED_SIZE ) {
+          InputStream rest = new SequenceInputStream( new ByteArrayInputStream( buf, 0, length ), is );
+          return projection.read( jsonFactory, rest, jsonConfiguration.jsonProvider(), getRecordLimit(), stopped );
+        }
+        buf = Arrays.copyOf( buf, Math.min( MAX_INDEXED_SIZE, 2 * length ) );
+      }
+    }
+    try {
+      return projection.read( buf, length, jsonConfiguration.jsonProvider(), getRecordLimit(), stopped );
+    } catch ( StructuralIndex.UnsupportedInputException e ) {
+      if ( log.isDetailed() ) {
+        log.logDetailed( BaseMessages.getString( PKG, "JsonReader.Log.IndexFallback", e.getMessage() ) );
+      }
+      InputStream in = new ByteArrayInputStream( buf, 0, length );
+      return projection.read( jsonFactory, in, jsonConfiguration.jsonProvider(), getRecordLimit(), stopped );
+    }
+  }
+
   public boolean isIgnoreMissingPath() {
     return this.ignoreMissingPath;
   }
@@ -146,17 +290,111 @@ public class FastJsonReader implements IJsonReader {
   public void setFields( JsonInputField[] fields ) throws KettleException {
     this.fields = fields;
     this.paths = compilePaths( fields );
+    this.pathTrie = compilePathTrie( fields, paths );
+    this.projection = compileProjection( fields );
+    compileRecordPaths();
   }
 
   @Override
   public RowSet parse( InputStream in ) throws KettleException {
     readInput( in );
+    if ( recordPaths != null ) {
+      return parseLazily();
+    }
     List<List<?>> results = evalCombinedResult();
     if ( log.isDetailed() ) {
       int len = results.isEmpty() ? 0 : results.get( 0 ).size();
       log.logDetailed( BaseMessages.getString( PKG, "JsonInput.Log.NrRecords", len ) );
     }
-    return new TransposedRowSet( results );
+    return new TransposedRowSet( results, rowLimit );
+  }
+
+  /**
+   * Reads the input as {@link #parse(InputStream)} does, except that the rows are spilled after the parse: the values
+   * of the fields are written to temporary files once evaluated, and neither the document nor the column lists are kept
+   * while the rows are read. The document is still parsed whole, so the peak memory is that of the parse.
+   */
+  public SpilledRowSet parseSpilled( InputStream in ) throws KettleException {
+    readInput( in );
+    List<List<?>> results = evalCombinedResult();
+    jsonReadContext = null;
+    return SpilledRowSet.spill( results );
+  }
+
+  /**
+   * Evaluates the fields on one document and returns all its rows, without keeping the document.
+   */
+  List<Object[]> readRows( InputStream in ) throws KettleException {
+    readInput( in );
+    List<List<?>> results = evalCombinedResult();
+    jsonReadContext = null;
+    int rowCount = results.isEmpty() ? 0 : results.get( 0 ).size();
+    List<Object[]> rows = new ArrayList<>( rowCount );
+    for ( int rowNbr = 0; rowNbr < rowCount; rowNbr++ ) {
+      Object[] rowData = new Object[ results.size() ];
+      for ( int col = 0; col < results.size(); col++ ) {
+        rowData[ col ] = results.get( col ).get( rowNbr );
+      }
+      rows.add( rowData );
+    }
+    return rows;
+  }
+
+  private RowSet parseLazily() throws KettleException {
+    List<Object> records;
+    if ( recordPaths.getRecordPath() == null ) {
+      // no field, nothing to read
+      records = new ArrayList<>();
+    } else if ( recordPaths.getRecordPath().isEmpty() ) {
+      // no wildcard, the whole document is the only record
+      records = new ArrayList<>();
+      records.add( getReadContext().json() );
+    } else {
+      // a single walk to the records, they are only references into the document
+      records = getReadContext().read( recordPaths.getRecordExpression() );
+      if ( records.isEmpty() && !isIgnoreMissingPath() ) {
+        throw new KettleException(
+          BaseMessages.getString( PKG, "JsonReader.Error.CanNotFindPath", fields[0].getPath() ) );
+      }
+    }
+    // the records now hold all that is left to read
+    jsonReadContext = null;
+    RecordRowSet rowSet = new RecordRowSet( records );
+    rowSet.init();
+    return rowSet;
+  }
+
+  /**
+   * Evaluates the field paths on each record when its row is asked for.
+   */
+  private class RecordRowSet extends LazyRowSet {
+    private final List<Object> records;
+    private final int recordCount;
+    private int recordNbr;
+
+    RecordRowSet( List<Object> records ) {
+      this.records = records;
+      this.recordCount = records.size();
+    }
+
+    @Override
+    protected Object[] fetchNext() throws KettleException {
+      if ( recordNbr >= recordCount ) {
+        return null;
+      }
+      Object record = records.get( recordNbr );
+      // let the record go as soon as its row is built
+      records.set( recordNbr++, null );
+      return recordPaths.evaluate( record, jsonConfiguration, isIgnoreMissingPath() );
+    }
+
+    @Override
+    protected void close() {
+      if ( log.isDetailed() ) {
+        log.logDetailed( BaseMessages.getString( PKG, "JsonInput.Log.NrRecords", recordNbr ) );
+      }
+      records.clear();
+    }
   }
 
   private static class TransposedRowSet extends SingleRowRowSet {
@@ -164,10 +402,14 @@ public class FastJsonReader implements IJsonReader {
     int rowCount;
     int rowNbr;
 
-    public TransposedRowSet( List<List<?>> results ) {
+    /**
+     * @param rowLimit number of rows given at most, 0 for all of them
+     */
+    public TransposedRowSet( List<List<?>> results, long rowLimit ) {
       super();
       this.results = results;
-      this.rowCount = results.isEmpty() ? 0 : results.get( 0 ).size();
+      int evaluated = results.isEmpty() ? 0 : results.get( 0 ).size();
+      this.rowCount = rowLimit > 0 && rowLimit < evaluated ? (int) rowLimit : evaluated;
     }
 
     @Override
@@ -204,10 +446,11 @@ public class FastJsonReader implements IJsonReader {
   private List<List<?>> evalCombinedResult() throws KettleException {
     int lastSize = -1;
     String prevPath = null;
-    List<List<?>> results = new ArrayList<>( paths.length );
-    int i = 0;
-    for ( JsonPath path : paths ) {
-      List<Object> res = getReadContext().read( path );
+    // shared path prefixes are only walked once
+    List<List<?>> results =
+      pathTrie.evaluate( getReadContext(), jsonConfiguration.jsonProvider(), defaultPathLeafToNull );
+    for ( int i = 0; i < paths.length; i++ ) {
+      List<?> res = results.get( i );
       if ( res.size() != lastSize && lastSize > 0 ) {
         throw new KettleException( BaseMessages.getString(
             PKG, "JsonInput.Error.BadStructure", res.size(), fields[i].getPath(), prevPath, lastSize ) );
@@ -215,10 +458,8 @@ public class FastJsonReader implements IJsonReader {
       if ( res.size() == 0 && !isIgnoreMissingPath() ) {
         throw new KettleException( BaseMessages.getString( PKG, "JsonReader.Error.CanNotFindPath", fields[i].getPath() ) );
       }
-      results.add( res );
       lastSize = res.size();
       prevPath = fields[i].getPath();
-      i++;
     }
     return results;
   }
@@ -0,0 +1,171 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.serasoft.di.steps.jsoninput.reader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.serasoft.di.steps.jsoninput.JsonInputMeta;
+
+/**
+ * Shares the listed files between the copies of the step, so that each file, or each part of a split file, is read
+ * by exactly one copy.
+ * <p>
+ * All the copies list the same files and make the same choices, without talking to each other: a file goes to the
+ * copy given by a stable hash of its path, or the files are spread so that each copy gets about the same number of
+ * bytes. A file that can be split is read by all the copies, each one reading its own range of it.
+ */
+public class FilePartitioner {
+
+  /**
+   * Files smaller than this are not split, they are handed out whole
+   */
+  public static final long MIN_SPLIT_SIZE = 16L * 1024 * 1024;
+
+  private final int partitionType;
+  private final int copyNr;
+  private final int copyCount;
+  private final Set<String> splitFiles = new HashSet<>();
+  private long splitBytes;
+
+  /**
+   * @param partitionType one of the <code>JsonInputMeta.PARTITION_*</code> types
+   * @param copyNr number of this copy, from 0
+   * @param copyCount number of copies
+   */
+  public FilePartitioner( int partitionType, int copyNr, int copyCount ) {
+    this.partitionType = partitionType;
+    this.copyNr = copyNr;
+    this.copyCount = copyCount;
+  }
+
+  /**
+   * @param splittable tells the files that can be read in ranges, null to never split a file
+   * @return the files this copy reads, whole or in part, in their listed order
+   */
+  public List<FileObject> assign( List<FileObject> files, Predicate<FileObject> splittable ) {
+    Map<FileObject, Long> sizes = new IdentityHashMap<>();
+    List<FileObject> whole = new ArrayList<>();
+    // the hash alone does not look at the files
+    boolean sized = splittable != null || partitionType == JsonInputMeta.PARTITION_FILE_SIZE;
+    for ( FileObject file : files ) {
+      long size = sized ? getSize( file ) : 0;
+      sizes.put( file, size );
+      if ( splittable != null && size >= MIN_SPLIT_SIZE && splittable.test( file ) ) {
+        splitFiles.add( file.getName().getURI() );
+        splitBytes += size;
+      } else {
+        whole.add( file );
+      }
+    }
+    Set<FileObject> mine = Collections.newSetFromMap( new IdentityHashMap<FileObject, Boolean>() );
+    if ( partitionType == JsonInputMeta.PARTITION_FILE_SIZE ) {
+      // largest first, each to the copy with the fewest bytes so far
+      List<FileObject> bySize = new ArrayList<>( whole );
+      bySize.sort( ( a, b ) -> {
+        int cmp = Long.compare( sizes.get( b ), sizes.get( a ) );
+        return cmp != 0 ? cmp : a.getName().getPath().compareTo( b.getName().getPath() );
+      } );
+      long[] loads = new long[ copyCount ];
+      for ( FileObject file : bySize ) {
+        int copy = 0;
+        for ( int i = 1; i < copyCount; i++ ) {
+          if ( loads[ i ] < loads[ copy ] ) {
+            copy = i;
+          }
+        }
+        loads[ copy ] += sizes.get( file );
+        if ( copy == copyNr ) {
+          mine.add( file );
+        }
+      }
+    } else {
+      for ( FileObject file : whole ) {
+        if ( isOwner( file ) ) {
+          mine.add( file );
+        }
+      }
+    }
+    List<FileObject> assigned = new ArrayList<>();
+    for ( FileObject file : files ) {
+      if ( mine.contains( file ) || isSplit( file ) ) {
+        assigned.add( file );
+      }
+    }
+    return assigned;
+  }
+
+  /**
+   * @return true if the file is read in ranges by all the copies
+   */
+  public boolean isSplit( FileObject file ) {
+    return splitFiles.contains( file.getName().getURI() );
+  }
+
+  /**
+   * @return true if this copy is the one the hash of the file path gives
+   */
+  public boolean isOwner( FileObject file ) {
+    return Math.floorMod( file.getName().getPath().hashCode(), copyCount ) == copyNr;
+  }
+
+  /**
+   * @return the start and the end of the bytes of a split file this copy reads
+   */
+  public long[] getRange( long size ) {
+    return new long[] { size * copyNr / copyCount, size * ( copyNr + 1 ) / copyCount };
+  }
+
+  /**
+   * @return the first slice and the slice after the last one of an indexed file this copy reads
+   */
+  public int[] getSliceRange( int sliceCount ) {
+    return new int[] { (int) ( (long) sliceCount * copyNr / copyCount ),
+      (int) ( (long) sliceCount * ( copyNr + 1 ) / copyCount ) };
+  }
+
+  public int getSplitCount() {
+    return splitFiles.size();
+  }
+
+  public long getSplitBytes() {
+    return splitBytes;
+  }
+
+  private static long getSize( FileObject file ) {
+    try {
+      return file.exists() ? file.getContent().getSize() : 0;
+    } catch ( FileSystemException e ) {
+      // left to the step to report when opening it
+      return 0;
+    }
+  }
+}
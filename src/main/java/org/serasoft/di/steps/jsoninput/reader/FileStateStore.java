@@ -0,0 +1,264 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.serasoft.di.steps.jsoninput.reader;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.vfs2.FileContent;
+import org.apache.commons.vfs2.FileObject;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.i18n.BaseMessages;
+import org.serasoft.di.steps.jsoninput.JsonInputMeta;
+
+/**
+ * Local file recording the input files read by the successful runs, so that the next runs only read the new or
+ * changed ones.
+ * <p>
+ * A file is known by its URI, and is unchanged while its size and modification time are the same. With the content
+ * hash enabled, a file whose size or time changed is still unchanged if its content hash is the same.
+ * <p>
+ * The files read by a run are only added to the state by {@link #commit()}, which merges them with what the state
+ * file holds at that time under a lock, so that the step copies and concurrent runs sharing the state file do not
+ * lose each other's files. File locks are held by the whole JVM, so the commits of one JVM to a state file are first
+ * serialized on a lock of their own.
+ */
+public class FileStateStore {
+  private static Class<?> PKG = JsonInputMeta.class; // for i18n purposes, needed by Translator2!!
+
+  private static final String HEADER = "# size\tmodified\thash\turi";
+  private static final String HASH_ALGORITHM = "SHA-256";
+  private static final String NO_HASH = "-";
+
+  /**
+   * Lock of the commits of this JVM, by canonical path of the state file
+   */
+  private static final ConcurrentMap<String, Object> COMMIT_LOCKS = new ConcurrentHashMap<>();
+
+  private final Path path;
+  private final boolean hashContent;
+  private final Map<String, Entry> committed;
+  private final Map<String, Entry> seen = new HashMap<>();
+  private final Map<String, Entry> processed = new LinkedHashMap<>();
+  private long skipped;
+
+  private FileStateStore( Path path, boolean hashContent, Map<String, Entry> committed ) {
+    this.path = path;
+    this.hashContent = hashContent;
+    this.committed = committed;
+  }
+
+  /**
+   * @param stateFile local path or <code>file:</code> URI of the state file, created at the first commit
+   * @param hashContent also compare and record the content hash of the files
+   */
+  public static FileStateStore load( String stateFile, boolean hashContent ) throws KettleException {
+    Path path = stateFile.startsWith( "file:" ) ? Paths.get( URI.create( stateFile ) ) : Paths.get( stateFile );
+    try {
+      return new FileStateStore( path, hashContent, read( path ) );
+    } catch ( IOException | RuntimeException e ) {
+      throw new KettleException( BaseMessages.getString( PKG, "JsonInput.Error.StateFile", path, e.toString() ), e );
+    }
+  }
+
+  public Path getPath() {
+    return path;
+  }
+
+  /**
+   * @return true if the file was read by a successful run and has not changed since; the file is not opened unless
+   *         its content hash has to be compared
+   */
+  public boolean isUnchanged( FileObject file ) throws IOException {
+    String uri = file.getName().getURI();
+    Entry current = stat( file );
+    Entry previous = committed.get( uri );
+    if ( previous == null ) {
+      seen.put( uri, current );
+      return false;
+    }
+    boolean unchanged = previous.size == current.size && previous.modified == current.modified;
+    if ( !unchanged && hashContent && previous.hash != null && previous.size == current.size ) {
+      current.hash = hash( file );
+      unchanged = previous.hash.equals( current.hash );
+      if ( unchanged ) {
+        // only touched, record the new time so it is not hashed again
+        processed.put( uri, current );
+      }
+    }
+    if ( unchanged ) {
+      skipped++;
+    } else {
+      seen.put( uri, current );
+    }
+    return unchanged;
+  }
+
+  /**
+   * Records a file as read, it is added to the state at the next commit.
+   */
+  public void processed( FileObject file ) throws IOException {
+    String uri = file.getName().getURI();
+    Entry entry = seen.remove( uri );
+    if ( entry == null ) {
+      entry = stat( file );
+    }
+    if ( hashContent && entry.hash == null ) {
+      entry.hash = hash( file );
+    }
+    processed.put( uri, entry );
+  }
+
+  /**
+   * @return number of files found unchanged
+   */
+  public long getSkipped() {
+    return skipped;
+  }
+
+  /**
+   * @return number of files waiting for the commit
+   */
+  public int getProcessed() {
+    return processed.size();
+  }
+
+  /**
+   * Adds the files read to the state file. The state file is replaced at once, it is never left half written.
+   */
+  public synchronized void commit() throws KettleException {
+    if ( processed.isEmpty() ) {
+      return;
+    }
+    Path lockPath = path.resolveSibling( path.getFileName() + ".lock" );
+    Path tmpPath = path.resolveSibling( path.getFileName() + ".tmp" );
+    try {
+      if ( path.getParent() != null ) {
+        Files.createDirectories( path.getParent() );
+      }
+      // another store of the JVM holding the file lock would make lock() throw rather than wait
+      Object commitLock = COMMIT_LOCKS.computeIfAbsent( path.toFile().getCanonicalPath(), key -> new Object() );
+      synchronized ( commitLock ) {
+        try ( FileChannel lockChannel =
+                FileChannel.open( lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE );
+              FileLock lock = lockChannel.lock() ) {
+          Map<String, Entry> state = read( path );
+          state.putAll( processed );
+          try ( BufferedWriter writer = Files.newBufferedWriter( tmpPath, StandardCharsets.UTF_8 ) ) {
+            writer.write( HEADER );
+            writer.newLine();
+            for ( Map.Entry<String, Entry> entry : state.entrySet() ) {
+              Entry value = entry.getValue();
+              writer.write( value.size + "\t" + value.modified + "\t" + ( value.hash == null ? NO_HASH : value.hash )
+                + "\t" + entry.getKey() );
+              writer.newLine();
+            }
+          }
+          Files.move( tmpPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+          committed.putAll( processed );
+          processed.clear();
+        }
+      }
+    } catch ( IOException | RuntimeException e ) {
+      throw new KettleException( BaseMessages.getString( PKG, "JsonInput.Error.StateFile", path, e.toString() ), e );
+    }
+  }
+
+  private static Map<String, Entry> read( Path path ) throws IOException {
+    Map<String, Entry> state = new LinkedHashMap<>();
+    if ( !Files.exists( path ) ) {
+      return state;
+    }
+    try ( BufferedReader reader = Files.newBufferedReader( path, StandardCharsets.UTF_8 ) ) {
+      String line;
+      while ( ( line = reader.readLine() ) != null ) {
+        if ( line.isEmpty() || line.startsWith( "#" ) ) {
+          continue;
+        }
+        String[] parts = line.split( "\t", 4 );
+        if ( parts.length < 4 ) {
+          throw new IOException( line );
+        }
+        Entry entry = new Entry( Long.parseLong( parts[0] ), Long.parseLong( parts[1] ) );
+        entry.hash = NO_HASH.equals( parts[2] ) ? null : parts[2];
+        state.put( parts[3], entry );
+      }
+    }
+    return state;
+  }
+
+  private static Entry stat( FileObject file ) throws IOException {
+    FileContent content = file.getContent();
+    return new Entry( content.getSize(), content.getLastModifiedTime() );
+  }
+
+  private static String hash( FileObject file ) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance( HASH_ALGORITHM );
+    } catch ( NoSuchAlgorithmException e ) {
+      throw new IOException( e );
+    }
+    byte[] buf = new byte[ 64 * 1024 ];
+    try ( InputStream in = MappedFileInputStream.open( file ) ) {
+      int n;
+      while ( ( n = in.read( buf ) ) >= 0 ) {
+        digest.update( buf, 0, n );
+      }
+    }
+    StringBuilder hex = new StringBuilder();
+    for ( byte b : digest.digest() ) {
+      hex.append( String.format( "%02x", b ) );
+    }
+    return hex.toString();
+  }
+
+  private static class Entry {
+    final long size;
+    final long modified;
+    String hash;
+
+    Entry( long size, long modified ) {
+      this.size = size;
+      this.modified = modified;
+    }
+  }
+}
@@ -23,6 +23,7 @@
 package org.serasoft.di.steps.jsoninput.reader;
 
 import java.io.InputStream;
+import java.util.function.BooleanSupplier;
 
 import org.pentaho.di.core.RowSet;
 import org.pentaho.di.core.exception.KettleException;
@@ -47,4 +48,23 @@ public interface IJsonReader {
    */
   public RowSet parse( InputStream in ) throws KettleException;
 
+  /**
+   * Lets the reader stop parsing once the next inputs have given this many rows, 0 for no limit. Applies to the
+   * inputs parsed after the call.
+   */
+  default void setRowLimit( long rowLimit ) {
+  }
+
+  /**
+   * Lets the reader stop parsing as soon as the step is stopped.
+   */
+  default void setStopped( BooleanSupplier stopped ) {
+  }
+
+  /**
+   * Releases the resources the reader holds across inputs, once the step is done with it.
+   */
+  default void dispose() {
+  }
+
 }
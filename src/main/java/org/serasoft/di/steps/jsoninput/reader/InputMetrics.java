@@ -0,0 +1,217 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.serasoft.di.steps.jsoninput.reader;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.pentaho.di.i18n.BaseMessages;
+import org.serasoft.di.steps.jsoninput.JsonInputMeta;
+
+/**
+ * Where a copy of the step spends its time, per input and for all the inputs read so far.
+ * <p>
+ * The step thread opens an input, hands it to the reader, gets the values of the field paths out of the reader row by
+ * row and converts them to the output types. Readers reading as the rows are asked for parse in the path phase, and
+ * the Json lines reader parses in its own threads, so only the time the step thread waits for them is counted.
+ * <p>
+ * Only the step thread updates the metrics, JMX clients read them while they change.
+ */
+public class InputMetrics implements InputMetricsMBean {
+  private static Class<?> PKG = JsonInputMeta.class; // for i18n purposes, needed by Translator2!!
+
+  /**
+   * Domain of the names the metrics are registered under
+   */
+  public static final String JMX_DOMAIN = "org.serasoft.di.steps.jsoninput";
+
+  private volatile String input;
+  private long inputBytes;
+  private long inputOpenNanos;
+  private long inputParseNanos;
+  private long inputPathNanos;
+  private long inputConvertNanos;
+  private long inputRows;
+  private volatile String lastInputSummary;
+
+  private volatile long inputs;
+  private volatile long bytes;
+  private volatile long openNanos;
+  private volatile long parseNanos;
+  private volatile long pathNanos;
+  private volatile long convertNanos;
+  private volatile long rows;
+  private volatile long peakDocumentBytes;
+
+  private ObjectName objectName;
+
+  /**
+   * Starts the metrics of an input.
+   *
+   * @param name file name or url of the input
+   * @param nanos time spent opening it
+   */
+  public void opened( String name, long nanos ) {
+    input = name;
+    inputBytes = 0;
+    inputOpenNanos = nanos;
+    inputParseNanos = 0;
+    inputPathNanos = 0;
+    inputConvertNanos = 0;
+    inputRows = 0;
+    openNanos += nanos;
+  }
+
+  public void parsed( long nanos ) {
+    inputParseNanos += nanos;
+    parseNanos += nanos;
+  }
+
+  public void pathsRead( long nanos ) {
+    inputPathNanos += nanos;
+    pathNanos += nanos;
+  }
+
+  public void converted( long nanos ) {
+    inputConvertNanos += nanos;
+    convertNanos += nanos;
+  }
+
+  public void rowEmitted() {
+    inputRows++;
+    rows++;
+  }
+
+  /**
+   * Ends the metrics of the current input.
+   *
+   * @param size bytes read from it
+   */
+  public void closed( long size ) {
+    inputBytes = size;
+    bytes += size;
+    inputs++;
+    if ( size > peakDocumentBytes ) {
+      peakDocumentBytes = size;
+    }
+    lastInputSummary = BaseMessages.getString( PKG, "JsonInput.Metrics.Input", input, inputBytes,
+      millis( inputOpenNanos ), millis( inputParseNanos ), millis( inputPathNanos ), millis( inputConvertNanos ),
+      inputRows );
+    input = null;
+  }
+
+  /**
+   * @return true between {@link #opened(String, long)} and {@link #closed(long)}
+   */
+  public boolean isOpen() {
+    return input != null;
+  }
+
+  /**
+   * @return the metrics of all the inputs, for the log
+   */
+  public String getSummary() {
+    return BaseMessages.getString( PKG, "JsonInput.Metrics.Total", inputs, bytes, getOpenMillis(), getParseMillis(),
+      getPathMillis(), getConvertMillis(), rows, peakDocumentBytes );
+  }
+
+  /**
+   * Makes the metrics readable through the platform MBean server.
+   */
+  public void register( String transName, String stepName, int copy ) throws JMException {
+    ObjectName name = new ObjectName( JMX_DOMAIN + ":type=JsonInput,transformation=" + ObjectName.quote( transName )
+      + ",step=" + ObjectName.quote( stepName ) + ",copy=" + copy );
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    if ( server.isRegistered( name ) ) {
+      // another run of the same transformation
+      name = new ObjectName( name + ",instance=" + Integer.toHexString( System.identityHashCode( this ) ) );
+    }
+    server.registerMBean( this, name );
+    objectName = name;
+  }
+
+  public void unregister() throws JMException {
+    if ( objectName != null ) {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean( objectName );
+      objectName = null;
+    }
+  }
+
+  private static long millis( long nanos ) {
+    return TimeUnit.NANOSECONDS.toMillis( nanos );
+  }
+
+  @Override
+  public long getInputs() {
+    return inputs;
+  }
+
+  @Override
+  public long getBytesRead() {
+    return bytes;
+  }
+
+  @Override
+  public long getOpenMillis() {
+    return millis( openNanos );
+  }
+
+  @Override
+  public long getParseMillis() {
+    return millis( parseNanos );
+  }
+
+  @Override
+  public long getPathMillis() {
+    return millis( pathNanos );
+  }
+
+  @Override
+  public long getConvertMillis() {
+    return millis( convertNanos );
+  }
+
+  @Override
+  public long getRows() {
+    return rows;
+  }
+
+  @Override
+  public long getPeakDocumentBytes() {
+    return peakDocumentBytes;
+  }
+
+  @Override
+  public String getCurrentInput() {
+    return input;
+  }
+
+  @Override
+  public String getLastInputSummary() {
+    return lastInputSummary;
+  }
+}
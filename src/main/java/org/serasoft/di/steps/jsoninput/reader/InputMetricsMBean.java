@@ -0,0 +1,74 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.serasoft.di.steps.jsoninput.reader;
+
+/**
+ * Metrics of a running copy of the step, as seen through JMX. The times are in milliseconds and add up the time spent
+ * by the step thread in each phase.
+ */
+public interface InputMetricsMBean {
+
+  /**
+   * @return number of inputs read to their end
+   */
+  long getInputs();
+
+  long getBytesRead();
+
+  /**
+   * @return time spent finding and opening the inputs
+   */
+  long getOpenMillis();
+
+  /**
+   * @return time spent handing the inputs to the reader
+   */
+  long getParseMillis();
+
+  /**
+   * @return time spent getting the values of the field paths out of the reader
+   */
+  long getPathMillis();
+
+  /**
+   * @return time spent converting the values to the output types
+   */
+  long getConvertMillis();
+
+  long getRows();
+
+  /**
+   * @return bytes of the largest input
+   */
+  long getPeakDocumentBytes();
+
+  /**
+   * @return the input being read, null between two inputs
+   */
+  String getCurrentInput();
+
+  /**
+   * @return the metrics of the last input read to its end
+   */
+  String getLastInputSummary();
+}
@@ -22,9 +22,23 @@
 
 package org.serasoft.di.steps.jsoninput.reader;
 
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.vfs2.FileObject;
@@ -33,6 +47,7 @@ import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleFileException;
 import org.pentaho.di.core.variables.VariableSpace;
 import org.pentaho.di.core.vfs.KettleVFS;
+import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.step.StepInterface;
 import org.pentaho.di.trans.steps.file.BaseFileInputStepData;
 import org.serasoft.di.steps.jsoninput.JsonInput;
@@ -40,11 +55,15 @@ import org.serasoft.di.steps.jsoninput.JsonInputData;
 import org.serasoft.di.steps.jsoninput.JsonInputMeta;
 
 public class InputsReader implements Iterable<InputStream> {
+  private static Class<?> PKG = JsonInputMeta.class; // for i18n purposes, needed by Translator2!!
 
   private JsonInput step;
   private JsonInputMeta meta;
   private JsonInputData data;
   private ErrorHandler errorHandler;
+  private Boolean sliced;
+  private FilePartitioner partitioner;
+  private boolean filtered;
 
   public InputsReader(JsonInput step, JsonInputMeta meta, JsonInputData data, ErrorHandler errorHandler ) {
     this.step = step;
@@ -66,19 +85,186 @@ public class InputsReader implements Iterable<InputStream> {
           data.files = meta.getFileInputList( step );
         }
         files = data.files.getFiles().listIterator( data.currentFileIndex );
+        if ( isPartitioned() ) {
+          files = partition( files ).iterator();
+        }
+      }
+      if ( data.fileStates != null && !filtered ) {
+        files = new ChangedFilesIterator( files );
+      }
+      boolean split = partitioner != null && partitioner.getSplitCount() > 0;
+      if ( meta.getPrefetchFiles() > 0 && !meta.inputFiles.acceptingFilenames && !isSliced() && !split ) {
+        // file names from input come with their row, they can only be read in step
+        return new PrefetchingFileContentIterator(
+          files, data, errorHandler, meta.getPrefetchFiles(), meta.isPrefetchContent() );
       }
       return new FileContentIterator( files, data, errorHandler );
+    } else if ( meta.isReadUrl() ) {
+      return new UrlContentIterator();
     } else {
-      // direct content
-      return new ChainedIterator<InputStream, String>( getFieldIterator(), errorHandler ) {
-        protected InputStream tryNext() throws IOException {
-          String next = inner.next();
-          return next == null ? null : IOUtils.toInputStream( next, meta.getEncoding() );
+      // direct content, handed to the reader without copy
+      return new ChainedIterator<InputStream, Object[]>( new RowIterator( step, data, errorHandler ), errorHandler ) {
+        protected InputStream tryNext() {
+          Object[] row = inner.next();
+          Object next = ( row == null || row.length <= data.indexSourceField ) ? null : row[data.indexSourceField];
+          if ( next instanceof byte[] ) {
+            return new ByteArrayInputStream( (byte[]) next );
+          }
+          return next == null ? null : new StringInputStream( next.toString(), meta.getEncoding() );
         }
       };
     }
   }
 
+  /**
+   * Opens a file, decompressing it as it is read if it is compressed.
+   */
+  protected InputStream openInput( FileObject file ) throws FileSystemException {
+    InputStream in;
+    try {
+      in = Decompression.markable( MappedFileInputStream.open( file ) );
+    } catch ( FileSystemException e ) {
+      throw e;
+    } catch ( IOException e ) {
+      throw new FileSystemException( e );
+    }
+    String fileName = file.getName().getBaseName();
+    try {
+      Decompression.Format format = Decompression.detect( fileName, in );
+      if ( format == Decompression.Format.NONE ) {
+        return in;
+      }
+      if ( step.isDetailed() ) {
+        step.logDetailed( BaseMessages.getString( PKG, "JsonInput.Log.Decompressing", fileName, format ) );
+      }
+      InputStream decompressed = Decompression.open( format, in );
+      if ( meta.isJsonLines() || meta.getReaderType() == JsonInputMeta.READER_TYPE_STREAMING
+        || meta.getReaderType() == JsonInputMeta.READER_TYPE_COLUMNAR ) {
+        // the parser reads as it goes, decompress alongside
+        return new ReadAheadInputStream( decompressed, fileName );
+      }
+      return decompressed;
+    } catch ( IOException e ) {
+      IOUtils.closeQuietly( in );
+      throw new FileSystemException( e );
+    }
+  }
+
+  /**
+   * @return true if the listed files are shared between the copies of the step
+   */
+  protected boolean isPartitioned() {
+    return meta.getPartitionType() != JsonInputMeta.PARTITION_NONE && step.getUniqueStepCountAcrossSlaves() > 1;
+  }
+
+  /**
+   * @return the files this copy of the step reads, whole or in part
+   */
+  protected List<FileObject> partition( Iterator<FileObject> files ) {
+    if ( meta.getPartitionType() == JsonInputMeta.PARTITION_FILE_SIZE && data.fileStates != null ) {
+      // balance what is left to read, not what the previous runs read
+      files = new ChangedFilesIterator( files );
+      filtered = true;
+    }
+    List<FileObject> listed = new ArrayList<>();
+    while ( files.hasNext() ) {
+      listed.add( files.next() );
+    }
+    int copyNr = step.getUniqueStepNrAcrossSlaves();
+    int copyCount = step.getUniqueStepCountAcrossSlaves();
+    partitioner = new FilePartitioner( meta.getPartitionType(), copyNr, copyCount );
+    List<FileObject> assigned = partitioner.assign( listed, meta.isSplitFiles() ? this::isSplittable : null );
+    if ( step.isDetailed() ) {
+      step.logDetailed( BaseMessages.getString( PKG, "JsonInput.Log.Partition", copyNr + 1, copyCount,
+        assigned.size() - partitioner.getSplitCount(), listed.size(), partitioner.getSplitCount() ) );
+    }
+    return assigned;
+  }
+
+  /**
+   * @return true if the file can be read in ranges: Json lines or indexed arrays, not compressed
+   */
+  protected boolean isSplittable( FileObject file ) {
+    if ( !meta.isJsonLines() && !isSliced() ) {
+      return false;
+    }
+    try ( InputStream in = Decompression.markable( MappedFileInputStream.open( file ) ) ) {
+      return Decompression.detect( file.getName().getBaseName(), in ) == Decompression.Format.NONE;
+    } catch ( IOException e ) {
+      return false;
+    }
+  }
+
+  /**
+   * @return true if the files holding an array are read a slice of elements at a time, which needs all the field
+   *         paths to read the elements of the root array
+   */
+  protected boolean isSliced() {
+    if ( sliced == null ) {
+      sliced = false;
+      if ( meta.isArrayIndex() && !meta.isJsonLines() ) {
+        try {
+          List<PathStep> recordPath = RecordPaths.compile( meta.getInputFields() ).getRecordPath();
+          sliced = recordPath != null && !recordPath.isEmpty()
+            && recordPath.get( 0 ).getType() == PathStep.Type.WILDCARD;
+        } catch ( KettleException e ) {
+          if ( step.isDetailed() ) {
+            step.logDetailed( BaseMessages.getString( PKG, "JsonInput.Log.ArrayIndexUnused", e.getMessage().trim() ) );
+          }
+        }
+      }
+    }
+    return sliced;
+  }
+
+  /**
+   * Loads the array index of a file, building it when the file has none or changed since.
+   *
+   * @return the index, or null if the file is to be read whole
+   */
+  protected ArrayIndex getArrayIndex( FileObject file ) {
+    String fileName = file.getName().getFriendlyURI();
+    int interval = meta.getArrayIndexInterval() > 0
+      ? meta.getArrayIndexInterval() : JsonInputMeta.DEFAULT_ARRAY_INDEX_INTERVAL;
+    try {
+      try ( InputStream in = Decompression.markable( MappedFileInputStream.open( file ) ) ) {
+        if ( Decompression.detect( file.getName().getBaseName(), in ) != Decompression.Format.NONE ) {
+          // no seeking into compressed data
+          return null;
+        }
+      }
+      ArrayIndex index;
+      synchronized ( ArrayIndex.getLock( file ) ) {
+        index = ArrayIndex.load( file, interval );
+        if ( index == null ) {
+          if ( step.isDetailed() ) {
+            step.logDetailed( BaseMessages.getString( PKG, "JsonInput.Log.BuildingArrayIndex", fileName ) );
+          }
+          index = ArrayIndex.build( file, interval );
+          if ( index == null ) {
+            return null;
+          }
+          try {
+            index.save( file );
+          } catch ( IOException e ) {
+            step.logBasic( BaseMessages.getString( PKG, "JsonInput.Log.ArrayIndexNotSaved", fileName, e.toString() ) );
+          }
+        }
+      }
+      if ( step.isDetailed() ) {
+        step.logDetailed( BaseMessages.getString(
+          PKG, "JsonInput.Log.ArrayIndex", fileName, index.getElementCount(), index.getSliceCount() ) );
+      }
+      return index.getSliceCount() > 0 ? index : null;
+    } catch ( IOException e ) {
+      // the error, if any, is reported when reading it whole
+      if ( step.isDetailed() ) {
+        step.logDetailed( BaseMessages.getString( PKG, "JsonInput.Log.ArrayIndexFailed", fileName, e.toString() ) );
+      }
+      return null;
+    }
+  }
+
   protected StringFieldIterator getFieldIterator() {
     return new StringFieldIterator(
         new RowIterator( step, data, errorHandler ), data.indexSourceField );
@@ -93,6 +279,11 @@ public class InputsReader implements Iterable<InputStream> {
     void fileOpenError( FileObject file, FileSystemException exception );
     void fileCloseError( FileObject file, FileSystemException exception );
 
+    /**
+     * The url of the current row could not be fetched
+     */
+    void urlError( String url, Exception exception );
+
   }
 
   protected abstract class ChainedIterator<T, C> implements Iterator<T> {
@@ -130,15 +321,27 @@ public class InputsReader implements Iterable<InputStream> {
 
   protected class FileContentIterator extends ChainedIterator<InputStream, FileObject> {
 
-    ErrorHandler handler;
     BaseFileInputStepData data;
+    private SliceIterator slices;
+
     FileContentIterator( Iterator<FileObject> inner, BaseFileInputStepData data, ErrorHandler handler ) {
       super( inner, handler );
       this.data = data;
     }
 
+    @Override
+    public boolean hasNext() {
+      return ( slices != null && slices.hasNext() ) || inner.hasNext();
+    }
+
     @Override
     public InputStream tryNext() {
+      if ( slices != null ) {
+        if ( slices.hasNext() ) {
+          return slices.next();
+        }
+        slices = null;
+      }
       if ( hasNext() ) {
         if ( data.file != null ) {
           try {
@@ -151,14 +354,431 @@ public class InputsReader implements Iterable<InputStream> {
           data.file = inner.next();
           data.currentFileIndex++;
           if ( step.onNewFile( data.file ) ) {
-            return KettleVFS.getInputStream( data.file );
+            if ( partitioner != null && partitioner.isSplit( data.file ) ) {
+              return openPart( data.file );
+            }
+            ArrayIndex index = isSliced() ? getArrayIndex( data.file ) : null;
+            if ( index != null ) {
+              slices = new SliceIterator( data.file, index, 0, index.getSliceCount() );
+              return slices.next();
+            }
+            return openInput( data.file );
           }
         } catch ( FileSystemException e ) {
           handler.fileOpenError( data.file, e );
+        } catch ( IOException e ) {
+          handler.fileOpenError( data.file, new FileSystemException( e ) );
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Opens the part of a split file this copy of the step reads.
+     *
+     * @return the input, or null if this copy has nothing to read in it
+     */
+    private InputStream openPart( FileObject file ) throws IOException {
+      if ( meta.isJsonLines() ) {
+        long[] range = partitioner.getRange( file.getContent().getSize() );
+        return new LineRangeInputStream( MappedFileInputStream.open( file ), range[0], range[1] );
+      }
+      ArrayIndex index = getArrayIndex( file );
+      if ( index == null ) {
+        // not an array after all, read whole by a single copy
+        return partitioner.isOwner( file ) ? openInput( file ) : null;
+      }
+      int[] range = partitioner.getSliceRange( index.getSliceCount() );
+      if ( range[0] == range[1] ) {
+        return null;
+      }
+      slices = new SliceIterator( file, index, range[0], range[1] );
+      return slices.next();
+    }
+  }
+
+  /**
+   * Opens the slices of an indexed file one after the other, each one read as an array of its elements.
+   */
+  private class SliceIterator implements Iterator<InputStream> {
+    private final FileObject file;
+    private final ArrayIndex index;
+    private final int end;
+    private int slice;
+
+    /**
+     * @param start first slice to read
+     * @param end slice after the last one to read
+     */
+    SliceIterator( FileObject file, ArrayIndex index, int start, int end ) {
+      this.file = file;
+      this.index = index;
+      this.slice = start;
+      this.end = end;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return slice < end;
+    }
+
+    @Override
+    public InputStream next() {
+      if ( !hasNext() ) {
+        throw new NoSuchElementException();
+      }
+      try {
+        return index.openSlice( file, slice++ );
+      } catch ( IOException e ) {
+        errorHandler.fileOpenError( file, new FileSystemException( e ) );
+        return null;
+      }
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException( "remove" );
+    }
+  }
+
+  /**
+   * Opens the next files on background threads while the current one is read. The files are still handed out one
+   * at a time and in order, and {@link JsonInput#onNewFile(FileObject)} is called on the step thread for each of them
+   * as before; a file it rejects is closed without being read.
+   */
+  protected class PrefetchingFileContentIterator extends FileContentIterator implements Closeable {
+
+    private final int depth;
+    private final boolean readContent;
+    private final Deque<PrefetchedFile> prefetched = new ArrayDeque<>();
+    private ExecutorService executor;
+
+    PrefetchingFileContentIterator( Iterator<FileObject> inner, BaseFileInputStepData data, ErrorHandler handler,
+                                    int depth, boolean readContent ) {
+      super( inner, data, handler );
+      this.depth = depth;
+      this.readContent = readContent;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return !prefetched.isEmpty() || inner.hasNext();
+    }
+
+    @Override
+    public InputStream tryNext() {
+      prefetch();
+      PrefetchedFile next = prefetched.poll();
+      if ( next == null ) {
+        return null;
+      }
+      // keep the pipeline full while this one is read
+      prefetch();
+      if ( prefetched.isEmpty() && executor != null ) {
+        // last file
+        executor.shutdown();
+        executor = null;
+      }
+      if ( data.file != null ) {
+        try {
+          data.file.close();
+        } catch ( FileSystemException e ) {
+          handler.fileCloseError( data.file, e );
         }
       }
+      data.file = next.file;
+      data.currentFileIndex++;
+      try {
+        if ( step.onNewFile( data.file ) ) {
+          return next.getInput();
+        }
+      } catch ( FileSystemException e ) {
+        handler.fileOpenError( data.file, e );
+      }
+      next.discard();
       return null;
     }
+
+    private void prefetch() {
+      while ( prefetched.size() < depth && inner.hasNext() ) {
+        FileObject file = inner.next();
+        prefetched.add( new PrefetchedFile( file, getExecutor().submit( new FileOpener( file, readContent ) ) ) );
+      }
+    }
+
+    private ExecutorService getExecutor() {
+      if ( executor == null ) {
+        executor = Executors.newFixedThreadPool( depth, new PrefetchThreadFactory() );
+      }
+      return executor;
+    }
+
+    /**
+     * Closes the files opened ahead that were not read.
+     */
+    @Override
+    public void close() {
+      for ( PrefetchedFile file : prefetched ) {
+        file.discard();
+        try {
+          file.file.close();
+        } catch ( FileSystemException e ) {
+          handler.fileCloseError( file.file, e );
+        }
+      }
+      prefetched.clear();
+      if ( executor != null ) {
+        executor.shutdownNow();
+        executor = null;
+      }
+    }
+  }
+
+  /**
+   * Fetches the urls of the input rows several at once, and gives their content in the order of the rows, each one
+   * with its row made the current one.
+   */
+  protected class UrlContentIterator implements Iterator<InputStream>, Closeable {
+
+    private final int inFlight;
+    private final UrlFetcher fetcher;
+    private final ExecutorService executor;
+    private final Deque<PendingUrl> pending = new ArrayDeque<>();
+    private boolean inputDone;
+
+    UrlContentIterator() {
+      inFlight = meta.getUrlConcurrency() > 0 ? meta.getUrlConcurrency() : JsonInputMeta.DEFAULT_URL_CONCURRENCY;
+      fetcher = new UrlFetcher( inFlight, meta.isUrlCache() );
+      executor = Executors.newFixedThreadPool( inFlight, new PrefetchThreadFactory() );
+      if ( data.readrow != null ) {
+        // already read by the step to build its output fields
+        submit( data.readrow );
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      while ( !inputDone && pending.size() < inFlight ) {
+        try {
+          Object[] row = step.getRow();
+          if ( row == null ) {
+            inputDone = true;
+          } else {
+            submit( row );
+          }
+        } catch ( KettleException e ) {
+          errorHandler.error( e );
+          inputDone = true;
+        }
+      }
+      if ( pending.isEmpty() ) {
+        data.readrow = null;
+        return false;
+      }
+      return true;
+    }
+
+    @Override
+    public InputStream next() {
+      if ( !hasNext() ) {
+        throw new NoSuchElementException();
+      }
+      PendingUrl next = pending.poll();
+      data.readrow = next.row;
+      try {
+        return new ByteArrayInputStream( next.content.get() );
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        errorHandler.urlError( next.url, e );
+      } catch ( ExecutionException e ) {
+        errorHandler.urlError( next.url, e.getCause() instanceof Exception ? (Exception) e.getCause() : e );
+      }
+      return null;
+    }
+
+    private void submit( Object[] row ) {
+      Object value = row.length <= data.indexSourceField ? null : row[ data.indexSourceField ];
+      final String url = value == null ? null : step.environmentSubstitute( value.toString().trim() );
+      Future<byte[]> content = executor.submit( new Callable<byte[]>() {
+        @Override
+        public byte[] call() throws IOException {
+          if ( url == null || url.isEmpty() ) {
+            throw new IOException( BaseMessages.getString( PKG, "JsonInput.Error.NoUrl" ) );
+          }
+          return fetcher.fetch( url );
+        }
+      } );
+      pending.add( new PendingUrl( row, url, content ) );
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException( "remove" );
+    }
+
+    /**
+     * Drops the fetches not read and closes the connections.
+     */
+    @Override
+    public void close() {
+      for ( PendingUrl url : pending ) {
+        url.content.cancel( true );
+      }
+      pending.clear();
+      executor.shutdownNow();
+      if ( step.isDetailed() ) {
+        step.logDetailed( BaseMessages.getString( PKG, "JsonInput.Log.UrlFetches",
+          fetcher.getRequests(), fetcher.getNotModified(), fetcher.getBytes() ) );
+      }
+      IOUtils.closeQuietly( fetcher );
+    }
+  }
+
+  private static class PendingUrl {
+    final Object[] row;
+    final String url;
+    final Future<byte[]> content;
+
+    PendingUrl( Object[] row, String url, Future<byte[]> content ) {
+      this.row = row;
+      this.url = url;
+      this.content = content;
+    }
+  }
+
+  private static class PrefetchedFile {
+    final FileObject file;
+    final Future<InputStream> input;
+
+    PrefetchedFile( FileObject file, Future<InputStream> input ) {
+      this.file = file;
+      this.input = input;
+    }
+
+    InputStream getInput() throws FileSystemException {
+      try {
+        return input.get();
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        throw new FileSystemException( e );
+      } catch ( ExecutionException e ) {
+        if ( e.getCause() instanceof FileSystemException ) {
+          throw (FileSystemException) e.getCause();
+        }
+        throw new FileSystemException( e.getCause() );
+      }
+    }
+
+    void discard() {
+      if ( input.cancel( false ) ) {
+        return;
+      }
+      // already opened, or being opened
+      try {
+        IOUtils.closeQuietly( input.get() );
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+      } catch ( ExecutionException e ) {
+        // never opened, nothing to close
+      }
+    }
+  }
+
+  /**
+   * Does the slow part of opening a file: the lookups {@link JsonInput#onNewFile(FileObject)} relies on, which the
+   * file object caches, and the opening itself.
+   */
+  private class FileOpener implements Callable<InputStream> {
+    private final FileObject file;
+    private final boolean readContent;
+
+    FileOpener( FileObject file, boolean readContent ) {
+      this.file = file;
+      this.readContent = readContent;
+    }
+
+    @Override
+    public InputStream call() throws IOException {
+      if ( file == null || !file.exists() ) {
+        return null;
+      }
+      file.getContent().getSize();
+      InputStream in = openInput( file );
+      if ( !readContent ) {
+        return in;
+      }
+      try {
+        return new ByteArrayInputStream( IOUtils.toByteArray( in ) );
+      } finally {
+        in.close();
+      }
+    }
+  }
+
+  private static class PrefetchThreadFactory implements ThreadFactory {
+    private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+    private final int poolNumber = POOL_NUMBER.incrementAndGet();
+    private final AtomicInteger threadNumber = new AtomicInteger();
+
+    @Override
+    public Thread newThread( Runnable r ) {
+      Thread thread = new Thread( r, "JsonInputPrefetch-" + poolNumber + "-" + threadNumber.incrementAndGet() );
+      thread.setDaemon( true );
+      return thread;
+    }
+  }
+
+  /**
+   * Skips the files read by the previous runs that have not changed since, before they are opened.
+   */
+  protected class ChangedFilesIterator implements Iterator<FileObject> {
+    private final Iterator<FileObject> inner;
+    private FileObject next;
+    private boolean ready;
+
+    ChangedFilesIterator( Iterator<FileObject> inner ) {
+      this.inner = inner;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while ( !ready && inner.hasNext() ) {
+        FileObject file = inner.next();
+        try {
+          if ( file == null || !file.exists() || !data.fileStates.isUnchanged( file ) ) {
+            // missing files are left to the step to report
+            next = file;
+            ready = true;
+            break;
+          }
+          if ( step.isDebug() ) {
+            step.logDebug( BaseMessages.getString( PKG, "JsonInput.Log.UnchangedFile", file.getName().getURI() ) );
+          }
+          if ( !meta.inputFiles.acceptingFilenames ) {
+            data.currentFileIndex++;
+          }
+        } catch ( IOException e ) {
+          errorHandler.error( e );
+        }
+      }
+      return ready;
+    }
+
+    @Override
+    public FileObject next() {
+      if ( !hasNext() ) {
+        throw new NoSuchElementException();
+      }
+      FileObject file = next;
+      next = null;
+      ready = false;
+      return file;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException( "remove" );
+    }
   }
 
   protected class FileNamesIterator extends ChainedIterator<FileObject, String> {
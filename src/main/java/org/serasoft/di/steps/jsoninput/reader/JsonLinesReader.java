@@ -0,0 +1,345 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.serasoft.di.steps.jsoninput.reader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.i18n.BaseMessages;
+import org.serasoft.di.steps.jsoninput.JsonInputField;
+import org.serasoft.di.steps.jsoninput.JsonInputMeta;
+
+/**
+ * Reads inputs holding one Json document per line (JSON Lines / NDJSON).
+ * <p>
+ * The input is cut into chunks on line boundaries and the chunks are parsed by a pool of threads, a few chunks ahead
+ * of the rows being read. Rows come out in the order of the lines, and a line that can not be read is reported as a
+ * {@link BadRecordException} without stopping the lines after it.
+ */
+public class JsonLinesReader implements IJsonReader {
+  private static Class<?> PKG = JsonInputMeta.class; // for i18n purposes, needed by Translator2!!
+
+  private static final int CHUNK_SIZE = 1024 * 1024;
+
+  /**
+   * Chunks parsed ahead per thread
+   */
+  private static final int CHUNKS_PER_THREAD = 2;
+
+  private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+  private JsonInputField[] fields;
+  private boolean defaultPathLeafToNull;
+  private boolean ignoreMissingPath;
+  private int threads;
+  private LogChannelInterface log;
+  private long rowLimit;
+  private BooleanSupplier stopped;
+
+  private ExecutorService executor;
+
+  /**
+   * @param threads number of parsing threads, one per processor if not positive
+   */
+  public JsonLinesReader( JsonInputField[] fields, boolean defaultPathLeafToNull, int threads,
+                          LogChannelInterface log ) throws KettleException {
+    this.defaultPathLeafToNull = defaultPathLeafToNull;
+    this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    this.log = log;
+    setFields( fields );
+  }
+
+  @Override
+  public void setFields( JsonInputField[] fields ) throws KettleException {
+    // fails early on paths that do not compile
+    new FastJsonReader( fields, defaultPathLeafToNull, log );
+    this.fields = fields;
+  }
+
+  @Override
+  public boolean isIgnoreMissingPath() {
+    return ignoreMissingPath;
+  }
+
+  @Override
+  public void setIgnoreMissingPath( boolean value ) {
+    this.ignoreMissingPath = value;
+  }
+
+  @Override
+  public void setRowLimit( long rowLimit ) {
+    this.rowLimit = rowLimit;
+  }
+
+  @Override
+  public void setStopped( BooleanSupplier stopped ) {
+    this.stopped = stopped;
+  }
+
+  @Override
+  public RowSet parse( InputStream in ) throws KettleException {
+    ChunkedRowSet rowSet = new ChunkedRowSet( in );
+    rowSet.init();
+    return rowSet;
+  }
+
+  @Override
+  public void dispose() {
+    if ( executor != null ) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  private ExecutorService getExecutor() {
+    if ( executor == null ) {
+      if ( log.isDetailed() ) {
+        log.logDetailed( BaseMessages.getString( PKG, "JsonReader.Log.ParsingThreads", threads ) );
+      }
+      ThreadPoolExecutor pool = new ThreadPoolExecutor( threads, threads, 60L, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), new ParserThreadFactory() );
+      pool.allowCoreThreadTimeOut( true );
+      executor = pool;
+    }
+    return executor;
+  }
+
+  /**
+   * Hands out the rows of the parsed chunks in order, and keeps the pool busy with the next chunks.
+   */
+  private class ChunkedRowSet extends LazyRowSet {
+    private final InputStream in;
+    private final Deque<Future<List<Object>>> chunks = new ArrayDeque<>();
+    private final long recordLimit = rowLimit;
+    private long records;
+    private Iterator<Object> current;
+    private byte[] carry = new byte[ 0 ];
+    private long nextLine = 1;
+    private boolean eof;
+
+    ChunkedRowSet( InputStream in ) {
+      this.in = in;
+    }
+
+    @Override
+    protected Object[] fetchNext() throws KettleException {
+      if ( ( recordLimit > 0 && records >= recordLimit ) || ( stopped != null && stopped.getAsBoolean() ) ) {
+        // no more chunks are read nor parsed
+        return null;
+      }
+      while ( true ) {
+        if ( current != null && current.hasNext() ) {
+          Object entry = current.next();
+          if ( entry instanceof BadRecordException ) {
+            throw (BadRecordException) entry;
+          }
+          records++;
+          return (Object[]) entry;
+        }
+        submitChunks();
+        if ( chunks.isEmpty() ) {
+          return null;
+        }
+        current = take( chunks.poll() ).iterator();
+      }
+    }
+
+    @Override
+    protected void close() {
+      for ( Future<List<Object>> chunk : chunks ) {
+        chunk.cancel( true );
+      }
+      chunks.clear();
+      current = null;
+      if ( log.isDetailed() ) {
+        log.logDetailed( BaseMessages.getString( PKG, "JsonInput.Log.NrRecords", nextLine - 1 ) );
+      }
+    }
+
+    private void submitChunks() throws KettleException {
+      while ( !eof && chunks.size() < threads * CHUNKS_PER_THREAD ) {
+        Chunk chunk = readChunk();
+        if ( chunk != null ) {
+          chunks.add( getExecutor().submit( chunk ) );
+        }
+      }
+    }
+
+    private List<Object> take( Future<List<Object>> chunk ) throws KettleException {
+      try {
+        return chunk.get();
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        throw new KettleException( e );
+      } catch ( ExecutionException e ) {
+        throw new KettleException( e.getCause() );
+      }
+    }
+
+    /**
+     * Reads the next lines up to about {@link #CHUNK_SIZE} bytes, never cutting a line.
+     */
+    private Chunk readChunk() throws KettleException {
+      byte[] buf = new byte[ carry.length + CHUNK_SIZE ];
+      System.arraycopy( carry, 0, buf, 0, carry.length );
+      int len = carry.length;
+      int end = -1;
+      try {
+        while ( end < 0 && !eof ) {
+          if ( len == buf.length ) {
+            // a line longer than the chunk, keep reading until it ends
+            byte[] larger = new byte[ buf.length + CHUNK_SIZE ];
+            System.arraycopy( buf, 0, larger, 0, len );
+            buf = larger;
+          }
+          int n = in.read( buf, len, buf.length - len );
+          if ( n < 0 ) {
+            eof = true;
+          } else {
+            len += n;
+            if ( len == buf.length ) {
+              end = lastLineEnd( buf, len );
+            }
+          }
+        }
+      } catch ( IOException e ) {
+        throw new KettleException( e );
+      }
+      if ( eof ) {
+        end = len;
+      }
+      carry = new byte[ len - end ];
+      System.arraycopy( buf, end, carry, 0, carry.length );
+      if ( end == 0 ) {
+        return null;
+      }
+      Chunk chunk = new Chunk( buf, end, nextLine );
+      nextLine += chunk.lineCount();
+      return chunk;
+    }
+
+    private int lastLineEnd( byte[] buf, int len ) {
+      for ( int i = len - 1; i >= 0; i-- ) {
+        if ( buf[ i ] == '\n' ) {
+          return i + 1;
+        }
+      }
+      return -1;
+    }
+  }
+
+  /**
+   * Whole lines parsed by a pool thread into rows, or into a {@link BadRecordException} for a line that can not be
+   * read.
+   */
+  private class Chunk implements Callable<List<Object>> {
+    private final byte[] data;
+    private final int length;
+    private final long firstLine;
+
+    Chunk( byte[] data, int length, long firstLine ) {
+      this.data = data;
+      this.length = length;
+      this.firstLine = firstLine;
+    }
+
+    int lineCount() {
+      int count = 0;
+      for ( int i = 0; i < length; i++ ) {
+        if ( data[ i ] == '\n' ) {
+          count++;
+        }
+      }
+      return length > 0 && data[ length - 1 ] != '\n' ? count + 1 : count;
+    }
+
+    @Override
+    public List<Object> call() throws KettleException {
+      // the reader keeps the document it parses, so each chunk gets its own
+      FastJsonReader reader = new FastJsonReader( fields, defaultPathLeafToNull, log );
+      reader.setIgnoreMissingPath( ignoreMissingPath );
+      List<Object> rows = new ArrayList<>();
+      long line = firstLine;
+      int start = 0;
+      while ( start < length ) {
+        int end = start;
+        while ( end < length && data[ end ] != '\n' ) {
+          end++;
+        }
+        if ( !isBlank( start, end ) ) {
+          try {
+            rows.addAll( reader.readRows( new ByteArrayInputStream( data, start, end - start ) ) );
+          } catch ( KettleException | RuntimeException e ) {
+            String cause = Const.NVL( e.getMessage(), e.toString() ).trim();
+            rows.add( new BadRecordException(
+              BaseMessages.getString( PKG, "JsonReader.Error.BadLine", line, cause ), e ) );
+          }
+        }
+        line++;
+        start = end + 1;
+      }
+      return rows;
+    }
+
+    private boolean isBlank( int start, int end ) {
+      for ( int i = start; i < end; i++ ) {
+        if ( !Character.isWhitespace( data[ i ] ) ) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  private static class ParserThreadFactory implements ThreadFactory {
+    private final int poolNumber = POOL_NUMBER.incrementAndGet();
+    private final AtomicInteger threadNumber = new AtomicInteger();
+
+    @Override
+    public Thread newThread( Runnable r ) {
+      Thread thread = new Thread( r, "JsonLinesReader-" + poolNumber + "-" + threadNumber.incrementAndGet() );
+      thread.setDaemon( true );
+      return thread;
+    }
+  }
+}
@@ -0,0 +1,826 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.serasoft.di.steps.jsoninput.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+import org.serasoft.di.steps.jsoninput.JsonInputField;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.jayway.jsonpath.spi.json.JsonProvider;
+
+/**
+ * Builds only the parts of a document the field paths can reach, the other values are skipped by the tokenizer
+ * without being built.
+ * <p>
+ * The kept parts are built with the same structures and value types the JsonPath parser gives, and array elements
+ * keep their positions, so the paths read the same values on the projected document as on the whole one.
+ */
+public class JsonProjection {
+
+  /**
+   * Longest float text read as a double, longer ones are read as big decimals as the JsonPath parser does.
+   */
+  private static final int MAX_DOUBLE_LENGTH = 18;
+
+  private static final byte[] TRUE = "true".getBytes( StandardCharsets.US_ASCII );
+  private static final byte[] FALSE = "false".getBytes( StandardCharsets.US_ASCII );
+  private static final byte[] NULL = "null".getBytes( StandardCharsets.US_ASCII );
+
+  private final Node root;
+
+  private JsonProjection( Node root ) {
+    this.root = root;
+  }
+
+  /**
+   * @return the projection of the fields, or null if a path uses something else than property names, positive
+   *         indexes and wildcards, as it may then reach any part of the document
+   */
+  public static JsonProjection compile( JsonInputField[] fields ) {
+    return compile( fields, null );
+  }
+
+  /**
+   * @param recordPath the steps leading to the records the rows are read from, so that reading can stop after a
+   *          number of records, or null
+   * @return the projection of the fields, or null if a path uses something else than property names, positive
+   *         indexes and wildcards, as it may then reach any part of the document
+   */
+  public static JsonProjection compile( JsonInputField[] fields, List<PathStep> recordPath ) {
+    Node root = new Node();
+    for ( JsonInputField field : fields ) {
+      PathStep.Parsed parsed = PathStep.parse( field.getPath() );
+      if ( !parsed.isComplete() ) {
+        return null;
+      }
+      Node node = root;
+      for ( PathStep step : parsed.getSteps() ) {
+        node = node.child( step );
+      }
+      // the value a path ends on is read whole
+      node.whole = true;
+    }
+    if ( recordPath != null && !recordPath.isEmpty() ) {
+      Node node = root;
+      for ( PathStep step : recordPath ) {
+        node = node.child( step );
+      }
+      node.record = true;
+    }
+    return new JsonProjection( root.normalize() );
+  }
+
+  /**
+   * Parser factory accepting as much of the relaxed syntax of the permissive JsonPath parser as the tokenizer can:
+   * comments, single quotes, unquoted names, NaN and infinities, leading zeros, control characters in strings and
+   * trailing commas.
+   * <p>
+   * Unquoted string values, which the JsonPath parser reads as strings, are still rejected: such documents fail once a
+   * projection or the streaming reader applies.
+   */
+  public static JsonFactory createJsonFactory() {
+    JsonFactory factory = new JsonFactory();
+    factory.enable( JsonParser.Feature.ALLOW_COMMENTS );
+    factory.enable( JsonParser.Feature.ALLOW_SINGLE_QUOTES );
+    factory.enable( JsonParser.Feature.ALLOW_UNQUOTED_FIELD_NAMES );
+    factory.enable( JsonParser.Feature.ALLOW_NON_NUMERIC_NUMBERS );
+    factory.enable( JsonParser.Feature.ALLOW_NUMERIC_LEADING_ZEROS );
+    factory.enable( JsonParser.Feature.ALLOW_UNQUOTED_CONTROL_CHARS );
+    factory.enable( JsonParser.Feature.ALLOW_TRAILING_COMMA );
+    return factory;
+  }
+
+  /**
+   * Creates a parser over the input, reading the characters of a {@link StringInputStream} directly.
+   */
+  public static JsonParser createParser( JsonFactory factory, InputStream in ) throws IOException {
+    if ( in instanceof StringInputStream ) {
+      return factory.createParser( ( (StringInputStream) in ).getString() );
+    }
+    return factory.createParser( in );
+  }
+
+  /**
+   * Reads the projected document.
+   */
+  public Object read( JsonFactory factory, InputStream in, JsonProvider provider ) throws IOException {
+    return read( factory, in, provider, 0, null );
+  }
+
+  /**
+   * Reads the projected document, up to a number of records.
+   * <p>
+   * The containers are attached to their parent before being filled, so when reading stops the document holds the
+   * records read so far, and nothing after them is parsed.
+   *
+   * @param recordLimit number of records to read, 0 to read them all; only counts with a record path given at
+   *          compile time
+   * @param stopped tells when to stop reading at the next record, may be null
+   */
+  public Object read( JsonFactory factory, InputStream in, JsonProvider provider, long recordLimit,
+                      BooleanSupplier stopped ) throws IOException {
+    try ( JsonParser parser = createParser( factory, in ) ) {
+      if ( parser.nextToken() == null ) {
+        return null;
+      }
+      Reading reading = new Reading( parser, provider, recordLimit, stopped );
+      boolean open = reading.isOpen( root );
+      Object document = reading.value( root );
+      if ( open ) {
+        try {
+          reading.fill( root, document );
+        } catch ( EnoughRecords e ) {
+          // the document is complete up to the last record read
+        }
+      }
+      return document;
+    }
+  }
+
+  /**
+   * Reads the projected document from its UTF-8 bytes, moving through their {@link StructuralIndex}: the values no
+   * path reaches are skipped without looking at their bytes, so a malformed number or literal among them goes
+   * unnoticed where the tokenizer would fail.
+   *
+   * @throws StructuralIndex.UnsupportedInputException if the document is not plain valid Json, for it to be read by
+   *           the tokenizer instead
+   * @see #read(JsonFactory, InputStream, JsonProvider, long, BooleanSupplier)
+   */
+  public Object read( byte[] buf, int length, JsonProvider provider, long recordLimit, BooleanSupplier stopped )
+    throws IOException {
+    int start = length >= 3 && buf[ 0 ] == (byte) 0xEF && buf[ 1 ] == (byte) 0xBB && buf[ 2 ] == (byte) 0xBF ? 3 : 0;
+    IndexedReading reading =
+      new IndexedReading( buf, length, new StructuralIndex( buf, start, length ), provider, recordLimit, stopped );
+    if ( reading.pos < 0 ) {
+      return null;
+    }
+    boolean open = reading.isOpen( root );
+    Object document = reading.value( root );
+    if ( open ) {
+      try {
+        reading.fill( root, document );
+      } catch ( EnoughRecords e ) {
+        return document;
+      }
+    }
+    if ( reading.pos >= 0 ) {
+      // content after the document
+      throw reading.unsupported();
+    }
+    return document;
+  }
+
+  /**
+   * State of one document being read.
+   */
+  private static class Reading {
+    private final JsonParser parser;
+    private final JsonProvider provider;
+    private final long recordLimit;
+    private final BooleanSupplier stopped;
+    private long records;
+
+    Reading( JsonParser parser, JsonProvider provider, long recordLimit, BooleanSupplier stopped ) {
+      this.parser = parser;
+      this.provider = provider;
+      this.recordLimit = recordLimit;
+      this.stopped = stopped;
+    }
+
+    /**
+     * @return true if the value at the current token is a container that {@link #value(Node)} leaves to be filled
+     */
+    boolean isOpen( Node node ) {
+      return !node.whole && parser.getCurrentToken().isStructStart();
+    }
+
+    /**
+     * @return the value at the current token, or an empty container to fill if it is open
+     */
+    Object value( Node node ) throws IOException {
+      if ( node.record ) {
+        if ( ( recordLimit > 0 && records >= recordLimit ) || ( stopped != null && stopped.getAsBoolean() ) ) {
+          throw new EnoughRecords();
+        }
+        records++;
+      }
+      if ( !isOpen( node ) ) {
+        return readValue( parser, provider );
+      }
+      return parser.getCurrentToken() == JsonToken.START_OBJECT ? provider.createMap() : provider.createArray();
+    }
+
+    void fill( Node node, Object container ) throws IOException {
+      if ( parser.getCurrentToken() == JsonToken.START_OBJECT ) {
+        while ( parser.nextToken() == JsonToken.FIELD_NAME ) {
+          String name = parser.getCurrentName();
+          parser.nextToken();
+          Node child = node.keyChild( name );
+          if ( child == null ) {
+            parser.skipChildren();
+          } else {
+            boolean open = isOpen( child );
+            Object value = value( child );
+            provider.setProperty( container, name, value );
+            if ( open ) {
+              fill( child, value );
+            }
+          }
+        }
+      } else {
+        int idx = 0;
+        while ( parser.nextToken() != JsonToken.END_ARRAY ) {
+          Node child = node.indexChild( idx );
+          if ( child != null ) {
+            boolean open = isOpen( child );
+            Object value = value( child );
+            provider.setArrayIndex( container, idx++, value );
+            if ( open ) {
+              fill( child, value );
+            }
+          } else {
+            parser.skipChildren();
+            if ( idx <= node.maxIndex ) {
+              // keeps the positions of the elements that follow
+              provider.setArrayIndex( container, idx++, null );
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * State of one document being read through its structural index. The current position is the structural character
+   * the next value starts at, each value read or skipped moves it to the character after the value.
+   */
+  private static class IndexedReading {
+    private final byte[] buf;
+    private final int length;
+    private final StructuralIndex index;
+    private final JsonProvider provider;
+    private final long recordLimit;
+    private final BooleanSupplier stopped;
+    private long records;
+    private int pos;
+
+    IndexedReading( byte[] buf, int length, StructuralIndex index, JsonProvider provider, long recordLimit,
+                    BooleanSupplier stopped ) throws IOException {
+      this.buf = buf;
+      this.length = length;
+      this.index = index;
+      this.provider = provider;
+      this.recordLimit = recordLimit;
+      this.stopped = stopped;
+      pos = index.next();
+    }
+
+    private byte current() {
+      return pos < 0 ? 0 : buf[ pos ];
+    }
+
+    private void advance() throws IOException {
+      pos = index.next();
+    }
+
+    /**
+     * Moves past the expected character.
+     */
+    private void expect( char c ) throws IOException {
+      if ( current() != c ) {
+        throw unsupported();
+      }
+      advance();
+    }
+
+    StructuralIndex.UnsupportedInputException unsupported() {
+      return new StructuralIndex.UnsupportedInputException( pos < 0 ? length : pos );
+    }
+
+    boolean isOpen( Node node ) {
+      byte c = current();
+      return !node.whole && ( c == '{' || c == '[' );
+    }
+
+    Object value( Node node ) throws IOException {
+      if ( node.record ) {
+        if ( ( recordLimit > 0 && records >= recordLimit ) || ( stopped != null && stopped.getAsBoolean() ) ) {
+          throw new EnoughRecords();
+        }
+        records++;
+      }
+      if ( !isOpen( node ) ) {
+        return readValue();
+      }
+      return current() == '{' ? provider.createMap() : provider.createArray();
+    }
+
+    void fill( Node node, Object container ) throws IOException {
+      if ( current() == '{' ) {
+        advance();
+        if ( current() == '}' ) {
+          advance();
+          return;
+        }
+        while ( true ) {
+          String name = readName();
+          Node child = node.keyChild( name );
+          if ( child == null ) {
+            skip();
+          } else {
+            boolean open = isOpen( child );
+            Object value = value( child );
+            provider.setProperty( container, name, value );
+            if ( open ) {
+              fill( child, value );
+            }
+          }
+          if ( current() == '}' ) {
+            advance();
+            return;
+          }
+          expect( ',' );
+        }
+      } else {
+        advance();
+        if ( current() == ']' ) {
+          advance();
+          return;
+        }
+        int idx = 0;
+        while ( true ) {
+          Node child = node.indexChild( idx );
+          if ( child != null ) {
+            boolean open = isOpen( child );
+            Object value = value( child );
+            provider.setArrayIndex( container, idx++, value );
+            if ( open ) {
+              fill( child, value );
+            }
+          } else {
+            skip();
+            if ( idx <= node.maxIndex ) {
+              // keeps the positions of the elements that follow
+              provider.setArrayIndex( container, idx++, null );
+            }
+          }
+          if ( current() == ']' ) {
+            advance();
+            return;
+          }
+          expect( ',' );
+        }
+      }
+    }
+
+    /**
+     * Moves past a value without building it: a string or a scalar is one position, a container goes up to its
+     * closing bracket.
+     */
+    void skip() throws IOException {
+      byte c = current();
+      if ( c != '{' && c != '[' ) {
+        if ( pos < 0 || c == '}' || c == ']' || c == ',' || c == ':' ) {
+          throw unsupported();
+        }
+        advance();
+        return;
+      }
+      int depth = 0;
+      do {
+        c = current();
+        if ( c == '{' || c == '[' ) {
+          depth++;
+        } else if ( c == '}' || c == ']' ) {
+          depth--;
+        } else if ( pos < 0 ) {
+          throw unsupported();
+        }
+        advance();
+      } while ( depth > 0 );
+    }
+
+    /**
+     * Builds the value with the same structures and types as {@link JsonProjection#readValue(JsonParser,
+     * JsonProvider)}.
+     */
+    Object readValue() throws IOException {
+      switch ( current() ) {
+        case '{':
+          Object map = provider.createMap();
+          advance();
+          if ( current() == '}' ) {
+            advance();
+            return map;
+          }
+          while ( true ) {
+            String name = readName();
+            provider.setProperty( map, name, readValue() );
+            if ( current() == '}' ) {
+              advance();
+              return map;
+            }
+            expect( ',' );
+          }
+        case '[':
+          Object array = provider.createArray();
+          advance();
+          if ( current() == ']' ) {
+            advance();
+            return array;
+          }
+          int idx = 0;
+          while ( true ) {
+            provider.setArrayIndex( array, idx++, readValue() );
+            if ( current() == ']' ) {
+              advance();
+              return array;
+            }
+            expect( ',' );
+          }
+        case '"':
+          return readString();
+        case '}':
+        case ']':
+        case ',':
+        case ':':
+        case 0:
+          throw unsupported();
+        default:
+          return readScalar();
+      }
+    }
+
+    /**
+     * Reads a member name and moves past its colon.
+     */
+    String readName() throws IOException {
+      if ( current() != '"' ) {
+        throw unsupported();
+      }
+      String name = readString();
+      expect( ':' );
+      return name;
+    }
+
+    String readString() throws IOException {
+      int start = pos + 1;
+      int i = start;
+      boolean escapes = false;
+      while ( i < length && buf[ i ] != '"' ) {
+        if ( buf[ i ] == '\\' ) {
+          escapes = true;
+          i++;
+        }
+        i++;
+      }
+      if ( i >= length ) {
+        throw unsupported();
+      }
+      String value = escapes ? unescape( start, i ) : new String( buf, start, i - start, StandardCharsets.UTF_8 );
+      advance();
+      return value;
+    }
+
+    private String unescape( int start, int end ) throws IOException {
+      StringBuilder sb = new StringBuilder( end - start );
+      int run = start;
+      int i = start;
+      while ( i < end ) {
+        if ( buf[ i ] != '\\' ) {
+          i++;
+          continue;
+        }
+        sb.append( new String( buf, run, i - run, StandardCharsets.UTF_8 ) );
+        byte c = buf[ i + 1 ];
+        switch ( c ) {
+          case '"':
+          case '\\':
+          case '/':
+            sb.append( (char) c );
+            break;
+          case 'b':
+            sb.append( '\b' );
+            break;
+          case 'f':
+            sb.append( '\f' );
+            break;
+          case 'n':
+            sb.append( '\n' );
+            break;
+          case 'r':
+            sb.append( '\r' );
+            break;
+          case 't':
+            sb.append( '\t' );
+            break;
+          case 'u':
+            if ( i + 6 > end ) {
+              throw unsupported();
+            }
+            int code = 0;
+            for ( int k = i + 2; k < i + 6; k++ ) {
+              int digit = Character.digit( buf[ k ], 16 );
+              if ( digit < 0 ) {
+                throw unsupported();
+              }
+              code = code * 16 + digit;
+            }
+            sb.append( (char) code );
+            i += 4;
+            break;
+          default:
+            throw unsupported();
+        }
+        i += 2;
+        run = i;
+      }
+      sb.append( new String( buf, run, end - run, StandardCharsets.UTF_8 ) );
+      return sb.toString();
+    }
+
+    /**
+     * Reads a number or a literal, which ends where the next structural character or white space starts.
+     */
+    Object readScalar() throws IOException {
+      int start = pos;
+      advance();
+      int end = pos < 0 ? length : pos;
+      while ( end > start && isSpace( buf[ end - 1 ] ) ) {
+        end--;
+      }
+      int len = end - start;
+      byte c = buf[ start ];
+      if ( c == 't' && matches( start, len, TRUE ) ) {
+        return Boolean.TRUE;
+      } else if ( c == 'f' && matches( start, len, FALSE ) ) {
+        return Boolean.FALSE;
+      } else if ( c == 'n' && matches( start, len, NULL ) ) {
+        return null;
+      }
+      return readNumber( start, end );
+    }
+
+    private boolean matches( int start, int len, byte[] literal ) {
+      if ( len != literal.length ) {
+        return false;
+      }
+      for ( int i = 0; i < len; i++ ) {
+        if ( buf[ start + i ] != literal[ i ] ) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Reads a number of the Json grammar as the tokenizer would: integers as the smallest of int, long and big
+     * integer, floats as doubles unless their text is long.
+     */
+    private Object readNumber( int start, int end ) throws IOException {
+      int i = start;
+      if ( i < end && buf[ i ] == '-' ) {
+        i++;
+      }
+      int intStart = i;
+      while ( i < end && isDigit( buf[ i ] ) ) {
+        i++;
+      }
+      int intDigits = i - intStart;
+      if ( intDigits == 0 || ( intDigits > 1 && buf[ intStart ] == '0' ) ) {
+        throw unsupported();
+      }
+      boolean integer = true;
+      if ( i < end && buf[ i ] == '.' ) {
+        integer = false;
+        int fracStart = ++i;
+        while ( i < end && isDigit( buf[ i ] ) ) {
+          i++;
+        }
+        if ( i == fracStart ) {
+          throw unsupported();
+        }
+      }
+      if ( i < end && ( buf[ i ] == 'e' || buf[ i ] == 'E' ) ) {
+        integer = false;
+        i++;
+        if ( i < end && ( buf[ i ] == '+' || buf[ i ] == '-' ) ) {
+          i++;
+        }
+        int expStart = i;
+        while ( i < end && isDigit( buf[ i ] ) ) {
+          i++;
+        }
+        if ( i == expStart ) {
+          throw unsupported();
+        }
+      }
+      if ( i != end ) {
+        throw unsupported();
+      }
+      int len = end - start;
+      if ( !integer ) {
+        String text = new String( buf, start, len, StandardCharsets.US_ASCII );
+        return len > MAX_DOUBLE_LENGTH ? new BigDecimal( text ) : (Object) Double.parseDouble( text );
+      }
+      if ( intDigits <= 18 ) {
+        long value = 0;
+        for ( int k = intStart; k < end; k++ ) {
+          value = value * 10 + ( buf[ k ] - '0' );
+        }
+        if ( buf[ start ] == '-' ) {
+          value = -value;
+        }
+        return value == (int) value ? (Object) (int) value : (Object) value;
+      }
+      BigInteger value = new BigInteger( new String( buf, start, len, StandardCharsets.US_ASCII ) );
+      return value.bitLength() < 64 ? (Object) value.longValue() : value;
+    }
+
+    private static boolean isDigit( byte c ) {
+      return c >= '0' && c <= '9';
+    }
+
+    private static boolean isSpace( byte c ) {
+      return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+  }
+
+  /**
+   * Thrown when the record limit is reached, to unwind the reading.
+   */
+  private static class EnoughRecords extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    EnoughRecords() {
+      super( null, null, false, false );
+    }
+  }
+
+  /**
+   * Builds the value at the current token with the same structures the JsonPath parser would have produced.
+   */
+  public static Object readValue( JsonParser parser, JsonProvider provider ) throws IOException {
+    switch ( parser.getCurrentToken() ) {
+      case START_OBJECT:
+        Object map = provider.createMap();
+        while ( parser.nextToken() == JsonToken.FIELD_NAME ) {
+          String name = parser.getCurrentName();
+          parser.nextToken();
+          provider.setProperty( map, name, readValue( parser, provider ) );
+        }
+        return map;
+      case START_ARRAY:
+        Object array = provider.createArray();
+        int idx = 0;
+        while ( parser.nextToken() != JsonToken.END_ARRAY ) {
+          provider.setArrayIndex( array, idx++, readValue( parser, provider ) );
+        }
+        return array;
+      case VALUE_STRING:
+        return parser.getText();
+      case VALUE_NUMBER_INT:
+        return parser.getNumberValue();
+      case VALUE_NUMBER_FLOAT:
+        if ( parser.getTextLength() > MAX_DOUBLE_LENGTH ) {
+          return parser.getDecimalValue();
+        }
+        return parser.getDoubleValue();
+      case VALUE_TRUE:
+        return Boolean.TRUE;
+      case VALUE_FALSE:
+        return Boolean.FALSE;
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Parts of a value the paths can reach.
+   */
+  private static class Node {
+    boolean whole;
+    boolean record;
+    Map<String, Node> keys = new HashMap<>();
+    Map<Integer, Node> indexes = new HashMap<>();
+    Node any;
+    int maxIndex = -1;
+
+    Node child( PathStep step ) {
+      switch ( step.getType() ) {
+        case KEY:
+          if ( !keys.containsKey( step.getKey() ) ) {
+            keys.put( step.getKey(), new Node() );
+          }
+          return keys.get( step.getKey() );
+        case INDEX:
+          if ( !indexes.containsKey( step.getIndex() ) ) {
+            indexes.put( step.getIndex(), new Node() );
+          }
+          return indexes.get( step.getIndex() );
+        default:
+          if ( any == null ) {
+            any = new Node();
+          }
+          return any;
+      }
+    }
+
+    Node keyChild( String name ) {
+      Node child = keys.get( name );
+      return child != null ? child : any;
+    }
+
+    Node indexChild( int idx ) {
+      Node child = indexes.get( idx );
+      return child != null ? child : any;
+    }
+
+    /**
+     * @return a copy where the wildcard part is merged into the named parts, so that a member only has one node
+     */
+    Node normalize() {
+      Node norm = merge( this, null );
+      norm.normalizeChildren();
+      return norm;
+    }
+
+    private void normalizeChildren() {
+      for ( Map.Entry<String, Node> entry : keys.entrySet() ) {
+        entry.setValue( merge( entry.getValue(), any ) );
+        entry.getValue().normalizeChildren();
+      }
+      for ( Map.Entry<Integer, Node> entry : indexes.entrySet() ) {
+        entry.setValue( merge( entry.getValue(), any ) );
+        entry.getValue().normalizeChildren();
+        maxIndex = Math.max( maxIndex, entry.getKey() );
+      }
+      if ( any != null ) {
+        any.normalizeChildren();
+      }
+    }
+
+    /**
+     * @return a new node reaching what either node reaches
+     */
+    private static Node merge( Node a, Node b ) {
+      Node merged = new Node();
+      Set<String> keyNames = new HashSet<>();
+      Set<Integer> indexNames = new HashSet<>();
+      for ( Node node : new Node[] { a, b } ) {
+        if ( node != null ) {
+          merged.whole |= node.whole;
+          merged.record |= node.record;
+          keyNames.addAll( node.keys.keySet() );
+          indexNames.addAll( node.indexes.keySet() );
+        }
+      }
+      for ( String key : keyNames ) {
+        merged.keys.put( key, merge( a == null ? null : a.keys.get( key ), b == null ? null : b.keys.get( key ) ) );
+      }
+      for ( Integer index : indexNames ) {
+        merged.indexes.put( index,
+          merge( a == null ? null : a.indexes.get( index ), b == null ? null : b.indexes.get( index ) ) );
+      }
+      Node anyA = a == null ? null : a.any;
+      Node anyB = b == null ? null : b.any;
+      if ( anyA != null || anyB != null ) {
+        merged.any = merge( anyA, anyB );
+      }
+      return merged;
+    }
+  }
+}
@@ -0,0 +1,147 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.serasoft.di.steps.jsoninput.reader;
+
+import org.pentaho.di.core.SingleRowRowSet;
+import org.pentaho.di.core.exception.KettleException;
+
+/**
+ * Row set whose rows are produced on demand by the reader instead of being built at parse time.
+ * <p>
+ * One row is always fetched ahead so that {@link #size()} and {@link #isDone()} can tell an empty input apart from a
+ * non-empty one right after parsing, as the step expects.
+ * <p>
+ * A {@link BadRecordException} thrown while fetching only discards that record: it is reported by {@link #getRow()}
+ * and the following call carries on with the next records.
+ */
+public abstract class LazyRowSet extends SingleRowRowSet {
+
+  private Object[] nextRow;
+  private boolean exhausted;
+  private KettleException pendingError;
+
+  /**
+   * Must be called by subclasses once they are ready to produce rows.
+   */
+  protected void init() throws KettleException {
+    try {
+      advance();
+    } catch ( BadRecordException e ) {
+      pendingError = e;
+    }
+  }
+
+  /**
+   * @return the next row, or null when there are no more rows
+   */
+  protected abstract Object[] fetchNext() throws KettleException;
+
+  /**
+   * Releases the underlying resources, called once when the last row has been fetched or on {@link #clear()}.
+   */
+  protected void close() {
+  }
+
+  private void advance() throws KettleException {
+    if ( exhausted ) {
+      nextRow = null;
+      return;
+    }
+    try {
+      nextRow = fetchNext();
+    } catch ( BadRecordException e ) {
+      nextRow = null;
+      throw e;
+    } catch ( KettleException | RuntimeException e ) {
+      exhausted = true;
+      nextRow = null;
+      close();
+      throw e;
+    }
+    if ( nextRow == null ) {
+      exhausted = true;
+      close();
+    }
+  }
+
+  @Override
+  public Object[] getRow() {
+    if ( pendingError != null ) {
+      // report the failure only once the rows read before it have been handed out
+      KettleException error = pendingError;
+      pendingError = null;
+      if ( error instanceof BadRecordException ) {
+        // carry on with the records that follow the bad one
+        fetch();
+      }
+      throw new RowReadException( error );
+    }
+    Object[] row = nextRow;
+    if ( row != null ) {
+      fetch();
+    }
+    return row;
+  }
+
+  private void fetch() {
+    try {
+      advance();
+    } catch ( KettleException e ) {
+      pendingError = e;
+    }
+  }
+
+  @Override
+  public int size() {
+    return nextRow == null && pendingError == null ? 0 : 1;
+  }
+
+  @Override
+  public boolean isDone() {
+    return exhausted;
+  }
+
+  @Override
+  public void clear() {
+    nextRow = null;
+    if ( !exhausted ) {
+      exhausted = true;
+      close();
+    }
+  }
+
+  /**
+   * Carries a reader failure through {@link #getRow()}, which can not throw checked exceptions.
+   */
+  public static class RowReadException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public RowReadException( KettleException cause ) {
+      super( cause.getMessage(), cause );
+    }
+
+    public KettleException getKettleException() {
+      return (KettleException) getCause();
+    }
+  }
+}
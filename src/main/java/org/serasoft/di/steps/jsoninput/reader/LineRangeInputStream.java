@@ -0,0 +1,116 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.serasoft.di.steps.jsoninput.reader;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * The whole lines of a file that start in a byte range.
+ * <p>
+ * A line belongs to the range it starts in, so the line going over the start of the range is left to the range
+ * before, and the line going over its end is read up to its end. Reading the ranges that cover a file reads each of
+ * its lines once.
+ */
+public class LineRangeInputStream extends InputStream {
+  private final InputStream in;
+  private final long end;
+  private long pos;
+  private boolean lineStart = true;
+  private boolean done;
+
+  /**
+   * @param in the file, from its start
+   * @param start first byte of the range
+   * @param end byte after the range
+   */
+  public LineRangeInputStream( InputStream in, long start, long end ) throws IOException {
+    this.in = new BufferedInputStream( in );
+    this.end = end;
+    try {
+      if ( start > 0 ) {
+        // seek on the file itself, before the buffer reads from it
+        MappedFileInputStream.skipFully( in, start - 1 );
+        pos = start - 1;
+        // skip the rest of the line going over the start, unless one ends right before it
+        int b;
+        do {
+          b = this.in.read();
+          pos++;
+        } while ( b >= 0 && b != '\n' );
+        done = b < 0;
+      }
+    } catch ( IOException e ) {
+      IOUtils.closeQuietly( in );
+      throw e;
+    }
+  }
+
+  @Override
+  public int read() throws IOException {
+    if ( done || ( pos >= end && lineStart ) ) {
+      done = true;
+      return -1;
+    }
+    int b = in.read();
+    if ( b < 0 ) {
+      done = true;
+      return -1;
+    }
+    pos++;
+    lineStart = b == '\n';
+    return b;
+  }
+
+  @Override
+  public int read( byte[] buf, int off, int len ) throws IOException {
+    if ( len == 0 ) {
+      return 0;
+    }
+    if ( done || pos >= end ) {
+      // only the end of the last line is left
+      int b = read();
+      if ( b < 0 ) {
+        return -1;
+      }
+      buf[ off ] = (byte) b;
+      return 1;
+    }
+    int n = in.read( buf, off, (int) Math.min( len, end - pos ) );
+    if ( n < 0 ) {
+      done = true;
+      return -1;
+    }
+    pos += n;
+    lineStart = buf[ off + n - 1 ] == '\n';
+    return n;
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+}
@@ -0,0 +1,179 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.serasoft.di.steps.jsoninput.reader;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.Selectors;
+import org.pentaho.di.core.vfs.KettleVFS;
+
+/**
+ * A local file read through memory mapped windows, without the buffered streams VFS puts in front of it.
+ * <p>
+ * The file is mapped one window at a time, so that files over 2GB can be read, and the bytes go from the page cache to
+ * the buffer of the reader in one copy. Skipping moves the position without reading, so that the slices of an
+ * {@link ArrayIndex} and the line ranges open through {@link #skipFully} at the cost of a seek. Files read through
+ * VFS skip as their stream does, which may read.
+ */
+public class MappedFileInputStream extends InputStream {
+
+  /**
+   * Most bytes mapped at once
+   */
+  public static final long WINDOW_SIZE = 1L << 30;
+
+  /**
+   * Local files smaller than this are read with plain reads, mapping them costs more than it saves
+   */
+  public static final long MIN_MAPPED_SIZE = 1024 * 1024;
+
+  private final FileChannel channel;
+  private final long size;
+  private MappedByteBuffer window;
+  private long windowStart;
+  private long pos;
+  private long mark;
+
+  public MappedFileInputStream( Path path ) throws IOException {
+    channel = FileChannel.open( path, StandardOpenOption.READ );
+    size = channel.size();
+  }
+
+  /**
+   * Opens a file, straight from the disk when it is a local file, through VFS otherwise.
+   */
+  public static InputStream open( FileObject file ) throws IOException {
+    if ( "file".equals( file.getName().getScheme() ) ) {
+      // a local file replicates to itself
+      File local = file.getFileSystem().replicateFile( file, Selectors.SELECT_SELF );
+      if ( local != null ) {
+        return local.length() >= MIN_MAPPED_SIZE
+          ? new MappedFileInputStream( local.toPath() ) : new FileInputStream( local );
+      }
+    }
+    return KettleVFS.getInputStream( file );
+  }
+
+  /**
+   * Moves a stream forward through its own skip, so that a file seeks rather than reads the bytes skipped.
+   *
+   * @throws EOFException when the stream ends first
+   */
+  public static void skipFully( InputStream in, long n ) throws IOException {
+    while ( n > 0 ) {
+      long skipped = in.skip( n );
+      if ( skipped <= 0 ) {
+        // a stream may skip nothing without being at its end, a read tells
+        if ( in.read() < 0 ) {
+          throw new EOFException();
+        }
+        skipped = 1;
+      }
+      n -= skipped;
+    }
+  }
+
+  /**
+   * Maps the window holding the position.
+   *
+   * @return false at the end of the file
+   */
+  private boolean seek() throws IOException {
+    if ( pos >= size ) {
+      return false;
+    }
+    if ( window == null || pos < windowStart || pos >= windowStart + window.capacity() ) {
+      // the window left behind is unmapped when collected
+      window = null;
+      windowStart = pos;
+      window = channel.map( FileChannel.MapMode.READ_ONLY, windowStart, Math.min( WINDOW_SIZE, size - windowStart ) );
+    }
+    window.position( (int) ( pos - windowStart ) );
+    return true;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if ( !seek() ) {
+      return -1;
+    }
+    pos++;
+    return window.get() & 0xff;
+  }
+
+  @Override
+  public int read( byte[] buf, int off, int len ) throws IOException {
+    if ( len == 0 ) {
+      return 0;
+    }
+    if ( !seek() ) {
+      return -1;
+    }
+    int n = (int) Math.min( len, windowStart + window.capacity() - pos );
+    window.get( buf, off, n );
+    pos += n;
+    return n;
+  }
+
+  @Override
+  public long skip( long n ) {
+    long skipped = Math.max( 0, Math.min( n, size - pos ) );
+    pos += skipped;
+    return skipped;
+  }
+
+  @Override
+  public int available() {
+    return (int) Math.min( Integer.MAX_VALUE, size - pos );
+  }
+
+  @Override
+  public boolean markSupported() {
+    return true;
+  }
+
+  @Override
+  public synchronized void mark( int readLimit ) {
+    mark = pos;
+  }
+
+  @Override
+  public synchronized void reset() {
+    pos = mark;
+  }
+
+  @Override
+  public void close() throws IOException {
+    window = null;
+    channel.close();
+  }
+}
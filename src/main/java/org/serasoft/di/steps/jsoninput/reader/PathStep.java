@@ -0,0 +1,244 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.serasoft.di.steps.jsoninput.reader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One navigation step of a JsonPath expression, as understood by the readers that walk the document tokens
+ * themselves: a property name, a positive array index or a wildcard.
+ */
+public class PathStep {
+
+  public enum Type {
+    KEY, INDEX, WILDCARD
+  }
+
+  private final Type type;
+  private final String key;
+  private final int index;
+
+  private PathStep( Type type, String key, int index ) {
+    this.type = type;
+    this.key = key;
+    this.index = index;
+  }
+
+  public static PathStep key( String key ) {
+    return new PathStep( Type.KEY, key, -1 );
+  }
+
+  public static PathStep index( int index ) {
+    return new PathStep( Type.INDEX, null, index );
+  }
+
+  public static PathStep wildcard() {
+    return new PathStep( Type.WILDCARD, null, -1 );
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public String getKey() {
+    return key;
+  }
+
+  public int getIndex() {
+    return index;
+  }
+
+  /**
+   * @return true if this step selects the object member called <code>name</code>
+   */
+  public boolean matchesKey( String name ) {
+    return type == Type.WILDCARD || ( type == Type.KEY && key.equals( name ) );
+  }
+
+  /**
+   * @return true if this step selects the array element at <code>position</code>
+   */
+  public boolean matchesIndex( int position ) {
+    return type == Type.WILDCARD || ( type == Type.INDEX && index == position );
+  }
+
+  @Override
+  public boolean equals( Object o ) {
+    if ( !( o instanceof PathStep ) ) {
+      return false;
+    }
+    PathStep other = (PathStep) o;
+    return type == other.type && index == other.index && ( key == null ? other.key == null : key.equals( other.key ) );
+  }
+
+  @Override
+  public int hashCode() {
+    return type.hashCode() * 31 + ( key == null ? index : key.hashCode() );
+  }
+
+  @Override
+  public String toString() {
+    switch ( type ) {
+      case KEY:
+        return "['" + key + "']";
+      case INDEX:
+        return "[" + index + "]";
+      default:
+        return "[*]";
+    }
+  }
+
+  /**
+   * Leading navigation steps of a JsonPath expression.
+   */
+  public static class Parsed {
+    private final String path;
+    private final List<PathStep> steps;
+    private final List<Integer> ends;
+    private final boolean complete;
+
+    Parsed( String path, List<PathStep> steps, List<Integer> ends, boolean complete ) {
+      this.path = path;
+      this.steps = Collections.unmodifiableList( steps );
+      this.ends = ends;
+      this.complete = complete;
+    }
+
+    /**
+     * @return the normalized path, always starting with <code>$</code>
+     */
+    public String getPath() {
+      return path;
+    }
+
+    public List<PathStep> getSteps() {
+      return steps;
+    }
+
+    /**
+     * @return true if the whole expression is made of simple steps
+     */
+    public boolean isComplete() {
+      return complete;
+    }
+
+    /**
+     * @return position of the last wildcard step, -1 if there is none
+     */
+    public int lastWildcard() {
+      for ( int i = steps.size() - 1; i >= 0; i-- ) {
+        if ( steps.get( i ).getType() == Type.WILDCARD ) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * @return the expression made of the first <code>count</code> steps
+     */
+    public String prefix( int count ) {
+      return count == 0 ? "$" : path.substring( 0, ends.get( count - 1 ) );
+    }
+
+    /**
+     * @return the part of the expression following the first <code>count</code> steps, as a root relative path
+     */
+    public String suffix( int count ) {
+      int start = count == 0 ? 1 : ends.get( count - 1 );
+      return "$" + path.substring( start );
+    }
+  }
+
+  /**
+   * Splits the leading simple steps off a JsonPath expression. Parsing stops at the first construct that needs the
+   * full JsonPath engine (deep scan, filter, slice, union, function...).
+   */
+  public static Parsed parse( String path ) {
+    String p = path == null ? "$" : path.trim();
+    if ( !p.startsWith( "$" ) ) {
+      // same normalization as JsonPath.compile
+      p = "$." + p;
+    }
+    List<PathStep> steps = new ArrayList<>();
+    List<Integer> ends = new ArrayList<>();
+    int i = 1;
+    int len = p.length();
+    while ( i < len ) {
+      char c = p.charAt( i );
+      int next = -1;
+      if ( c == '.' ) {
+        if ( i + 1 < len && p.charAt( i + 1 ) == '*' ) {
+          steps.add( wildcard() );
+          next = i + 2;
+        } else if ( i + 1 < len && p.charAt( i + 1 ) != '.' ) {
+          int j = i + 1;
+          while ( j < len && p.charAt( j ) != '.' && p.charAt( j ) != '[' ) {
+            j++;
+          }
+          String name = p.substring( i + 1, j );
+          if ( !name.isEmpty() && name.indexOf( '(' ) < 0 ) {
+            steps.add( key( name ) );
+            next = j;
+          }
+        }
+      } else if ( c == '[' ) {
+        int close = p.indexOf( ']', i );
+        if ( close > i ) {
+          String inner = p.substring( i + 1, close ).trim();
+          if ( "*".equals( inner ) ) {
+            steps.add( wildcard() );
+            next = close + 1;
+          } else if ( inner.length() >= 2 && ( inner.charAt( 0 ) == '\'' || inner.charAt( 0 ) == '"' )
+            && inner.charAt( inner.length() - 1 ) == inner.charAt( 0 ) ) {
+            String name = inner.substring( 1, inner.length() - 1 );
+            if ( name.indexOf( inner.charAt( 0 ) ) < 0 ) {
+              steps.add( key( name ) );
+              next = close + 1;
+            }
+          } else if ( !inner.isEmpty() && isDigits( inner ) ) {
+            steps.add( index( Integer.parseInt( inner ) ) );
+            next = close + 1;
+          }
+        }
+      }
+      if ( next < 0 ) {
+        return new Parsed( p, steps, ends, false );
+      }
+      ends.add( next );
+      i = next;
+    }
+    return new Parsed( p, steps, ends, true );
+  }
+
+  private static boolean isDigits( String s ) {
+    for ( int i = 0; i < s.length(); i++ ) {
+      if ( !Character.isDigit( s.charAt( i ) ) ) {
+        return false;
+      }
+    }
+    return s.length() < 10;
+  }
+}
@@ -0,0 +1,156 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.serasoft.di.steps.jsoninput.reader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.ReadContext;
+import com.jayway.jsonpath.spi.json.JsonProvider;
+
+/**
+ * Field paths merged into a prefix tree, so that the steps they share are walked once per document.
+ * <p>
+ * Only the paths made of property names, positive indexes and wildcards go in the tree, they give the same results
+ * as JsonPath with the reader options. The other ones are read with JsonPath from the document root.
+ */
+class PathTrie {
+
+  private final Node root = new Node( null, null );
+  private final Node[] fieldNodes;
+  private final JsonPath[] paths;
+
+  /**
+   * @param paths the compiled field paths
+   * @param pathTexts the field paths, in the same order
+   */
+  PathTrie( JsonPath[] paths, String[] pathTexts ) {
+    this.paths = paths;
+    this.fieldNodes = new Node[ paths.length ];
+    for ( int i = 0; i < paths.length; i++ ) {
+      PathStep.Parsed parsed = PathStep.parse( pathTexts[ i ] );
+      if ( parsed.isComplete() ) {
+        Node node = root;
+        for ( PathStep step : parsed.getSteps() ) {
+          node = node.child( step );
+        }
+        fieldNodes[ i ] = node;
+      }
+    }
+  }
+
+  /**
+   * Evaluates all the paths on the document read by <code>context</code>.
+   *
+   * @return one result list per path, in the order of the paths
+   */
+  List<List<?>> evaluate( ReadContext context, JsonProvider provider, boolean defaultPathLeafToNull ) {
+    Map<Node, List<Object>> values = new IdentityHashMap<>();
+    values.put( root, Collections.singletonList( context.json() ) );
+    List<List<?>> results = new ArrayList<>( paths.length );
+    for ( int i = 0; i < paths.length; i++ ) {
+      Node node = fieldNodes[ i ];
+      if ( node == null ) {
+        List<Object> res = context.read( paths[ i ] );
+        results.add( res );
+      } else if ( defaultPathLeafToNull && node.step != null && node.step.getType() == PathStep.Type.KEY ) {
+        // a missing property only reads as null at the end of the path
+        results.add( select( node.step, values( node.parent, values, provider ), provider, true ) );
+      } else {
+        results.add( values( node, values, provider ) );
+      }
+    }
+    return results;
+  }
+
+  private List<Object> values( Node node, Map<Node, List<Object>> values, JsonProvider provider ) {
+    List<Object> nodeValues = values.get( node );
+    if ( nodeValues == null ) {
+      nodeValues = select( node.step, values( node.parent, values, provider ), provider, false );
+      values.put( node, nodeValues );
+    }
+    return nodeValues;
+  }
+
+  private static List<Object> select( PathStep step, List<Object> parentValues, JsonProvider provider,
+                                      boolean missingAsNull ) {
+    List<Object> res = new ArrayList<>( parentValues.size() );
+    for ( Object value : parentValues ) {
+      switch ( step.getType() ) {
+        case KEY:
+          if ( provider.isMap( value ) ) {
+            Object member = provider.getMapValue( value, step.getKey() );
+            if ( member != JsonProvider.UNDEFINED ) {
+              res.add( member );
+            } else if ( missingAsNull ) {
+              res.add( null );
+            }
+          }
+          break;
+        case INDEX:
+          if ( provider.isArray( value ) && step.getIndex() < provider.length( value ) ) {
+            res.add( provider.getArrayIndex( value, step.getIndex() ) );
+          }
+          break;
+        default:
+          if ( provider.isMap( value ) ) {
+            for ( String key : provider.getPropertyKeys( value ) ) {
+              res.add( provider.getMapValue( value, key ) );
+            }
+          } else if ( provider.isArray( value ) ) {
+            int length = provider.length( value );
+            for ( int idx = 0; idx < length; idx++ ) {
+              res.add( provider.getArrayIndex( value, idx ) );
+            }
+          }
+          break;
+      }
+    }
+    return res;
+  }
+
+  private static class Node {
+    final Node parent;
+    final PathStep step;
+    final Map<PathStep, Node> children = new LinkedHashMap<>();
+
+    Node( Node parent, PathStep step ) {
+      this.parent = parent;
+      this.step = step;
+    }
+
+    Node child( PathStep childStep ) {
+      Node child = children.get( childStep );
+      if ( child == null ) {
+        child = new Node( this, childStep );
+        children.put( childStep, child );
+      }
+      return child;
+    }
+  }
+}
@@ -0,0 +1,163 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.serasoft.di.steps.jsoninput.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads its source on a background thread, a few blocks ahead of the reader, so that the work of the source (such
+ * as decompression) runs alongside the parsing.
+ */
+public class ReadAheadInputStream extends InputStream {
+
+  private static final int BLOCK_SIZE = 64 * 1024;
+  private static final int BLOCKS_AHEAD = 16;
+
+  /**
+   * Marks the end of the source
+   */
+  private static final byte[] END = new byte[ 0 ];
+
+  private final BlockingQueue<byte[]> blocks = new ArrayBlockingQueue<>( BLOCKS_AHEAD );
+  private final Thread pump;
+  private volatile IOException error;
+  private volatile boolean closed;
+
+  private byte[] current;
+  private int pos;
+
+  public ReadAheadInputStream( InputStream source, String name ) {
+    pump = new Thread( new Pump( source ), "ReadAhead-" + name );
+    pump.setDaemon( true );
+    pump.start();
+  }
+
+  private boolean nextBlock() throws IOException {
+    if ( current == END ) {
+      return false;
+    }
+    if ( current == null || pos == current.length ) {
+      try {
+        current = blocks.take();
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        throw new IOException( e );
+      }
+      pos = 0;
+      if ( current == END ) {
+        if ( error != null ) {
+          throw error;
+        }
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if ( !nextBlock() ) {
+      return -1;
+    }
+    return current[ pos++ ] & 0xff;
+  }
+
+  @Override
+  public int read( byte[] b, int off, int len ) throws IOException {
+    if ( len == 0 ) {
+      return 0;
+    }
+    if ( !nextBlock() ) {
+      return -1;
+    }
+    int n = Math.min( len, current.length - pos );
+    System.arraycopy( current, pos, b, off, n );
+    pos += n;
+    return n;
+  }
+
+  @Override
+  public int available() {
+    return current == null || current == END ? 0 : current.length - pos;
+  }
+
+  @Override
+  public void close() {
+    if ( !closed ) {
+      closed = true;
+      pump.interrupt();
+      blocks.clear();
+    }
+  }
+
+  private class Pump implements Runnable {
+    private final InputStream source;
+
+    Pump( InputStream source ) {
+      this.source = source;
+    }
+
+    @Override
+    public void run() {
+      try {
+        while ( !closed ) {
+          byte[] block = new byte[ BLOCK_SIZE ];
+          int len = 0;
+          int n;
+          while ( len < BLOCK_SIZE && ( n = source.read( block, len, BLOCK_SIZE - len ) ) > 0 ) {
+            len += n;
+          }
+          if ( len == 0 ) {
+            break;
+          }
+          blocks.put( len == BLOCK_SIZE ? block : Arrays.copyOf( block, len ) );
+        }
+      } catch ( InterruptedException e ) {
+        // closed by the reader
+      } catch ( Throwable e ) {
+        // any failure of the source, such as one of a VFS provider, is thrown to the reader
+        error = e instanceof IOException ? (IOException) e : new IOException( e );
+      } finally {
+        try {
+          source.close();
+        } catch ( Throwable e ) {
+          if ( error == null ) {
+            error = e instanceof IOException ? (IOException) e : new IOException( e );
+          }
+        }
+        if ( !closed ) {
+          // the reader always wakes up, at the end or on the failure
+          try {
+            blocks.put( END );
+          } catch ( InterruptedException e ) {
+            // closed by the reader
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,142 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.serasoft.di.steps.jsoninput.reader;
+
+import java.util.List;
+
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.i18n.BaseMessages;
+import org.serasoft.di.steps.jsoninput.JsonInputField;
+import org.serasoft.di.steps.jsoninput.JsonInputMeta;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.ReadContext;
+
+/**
+ * Field paths split into the record they all point into and the value each one reads in that record.
+ * <p>
+ * The record path is the part of the field paths that goes up to their last wildcard (<code>$.data.items[*]</code>
+ * for <code>$.data.items[*].a</code>), so all the fields must share that part and it may only use property names,
+ * positive indexes and wildcards. What follows is evaluated by JsonPath on each record and must select a single
+ * value.
+ */
+public class RecordPaths {
+  private static Class<?> PKG = JsonInputMeta.class; // for i18n purposes, needed by Translator2!!
+
+  private final JsonInputField[] fields;
+  private final List<PathStep> recordPath;
+  private final String recordExpression;
+  private final JsonPath[] relativePaths;
+
+  private RecordPaths( JsonInputField[] fields, List<PathStep> recordPath, String recordExpression,
+                       JsonPath[] relativePaths ) {
+    this.fields = fields;
+    this.recordPath = recordPath;
+    this.recordExpression = recordExpression;
+    this.relativePaths = relativePaths;
+  }
+
+  /**
+   * @throws KettleException if the fields can not be read one record at a time
+   */
+  public static RecordPaths compile( JsonInputField[] fields ) throws KettleException {
+    List<PathStep> recordPath = null;
+    String recordExpression = null;
+    String recordFieldPath = null;
+    JsonPath[] relativePaths = new JsonPath[ fields.length ];
+    for ( int i = 0; i < fields.length; i++ ) {
+      PathStep.Parsed parsed = PathStep.parse( fields[ i ].getPath() );
+      int recordDepth = parsed.lastWildcard() + 1;
+      List<PathStep> fieldRecordPath = parsed.getSteps().subList( 0, recordDepth );
+      try {
+        relativePaths[ i ] = JsonPath.compile( parsed.suffix( recordDepth ) );
+      } catch ( RuntimeException e ) {
+        throw new KettleException( BaseMessages.getString(
+          PKG, "JsonReader.Error.UnsupportedRecordPath", fields[ i ].getPath() ), e );
+      }
+      if ( !relativePaths[ i ].isDefinite() ) {
+        throw new KettleException( BaseMessages.getString(
+          PKG, "JsonReader.Error.UnsupportedRecordPath", fields[ i ].getPath() ) );
+      }
+      if ( recordPath == null ) {
+        recordPath = fieldRecordPath;
+        recordExpression = parsed.prefix( recordDepth );
+        recordFieldPath = fields[ i ].getPath();
+      } else if ( !recordPath.equals( fieldRecordPath ) ) {
+        throw new KettleException( BaseMessages.getString(
+          PKG, "JsonReader.Error.RecordPathMismatch", fields[ i ].getPath(), recordFieldPath ) );
+      }
+    }
+    return new RecordPaths( fields, recordPath, recordExpression, relativePaths );
+  }
+
+  /**
+   * @return the steps leading to the records, empty when the document is the record, null when there is no field
+   */
+  public List<PathStep> getRecordPath() {
+    return recordPath;
+  }
+
+  /**
+   * @return the record path as a JsonPath expression
+   */
+  public String getRecordExpression() {
+    return recordExpression;
+  }
+
+  public JsonInputField[] getFields() {
+    return fields;
+  }
+
+  /**
+   * Reads the field values of one record.
+   */
+  public Object[] evaluate( Object record, Configuration configuration, boolean ignoreMissingPath )
+    throws KettleException {
+    Object[] row = new Object[ relativePaths.length ];
+    ReadContext context = record == null ? null : JsonPath.using( configuration ).parse( record );
+    for ( int i = 0; i < relativePaths.length; i++ ) {
+      if ( context == null ) {
+        if ( !relativePaths[ i ].getPath().equals( "$" ) ) {
+          checkMissing( i, ignoreMissingPath );
+        }
+        continue;
+      }
+      List<Object> res = context.read( relativePaths[ i ] );
+      if ( res.isEmpty() ) {
+        checkMissing( i, ignoreMissingPath );
+      } else {
+        row[ i ] = res.get( 0 );
+      }
+    }
+    return row;
+  }
+
+  private void checkMissing( int field, boolean ignoreMissingPath ) throws KettleException {
+    if ( !ignoreMissingPath ) {
+      throw new KettleException(
+        BaseMessages.getString( PKG, "JsonReader.Error.CanNotFindPath", fields[ field ].getPath() ) );
+    }
+  }
+}
@@ -23,10 +23,14 @@
 package org.serasoft.di.steps.jsoninput.reader;
 
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.List;
 import java.util.Map;
 
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleValueException;
 import org.pentaho.di.core.logging.LogChannelInterface;
@@ -36,41 +40,60 @@ import org.serasoft.di.steps.jsoninput.JsonInputData;
 
 
 /**
- * Converts raw reader to output row values
+ * Converts raw reader to output row values.
+ * <p>
+ * The conversion of each output column is chosen once from its type, values the reader already gives in the right
+ * type skip the string conversion.
  */
 public class RowOutputConverter {
 
     private final LogChannelInterface log;
 
-    public RowOutputConverter(LogChannelInterface log) {
+    /**
+     * Serializes the objects and arrays read into string columns
+     */
+    private final ObjectWriter jsonWriter = new ObjectMapper().writer();
+
+    private final ColumnConverter[] converters;
+
+    /**
+     * Builds the conversion plan of the reader columns of <code>data.outputRowMeta</code>.
+     */
+    public RowOutputConverter(JsonInputData data, LogChannelInterface log) {
         this.log = log;
+        this.converters = new ColumnConverter[data.nrInputFields];
+        for (int i = 0; i < converters.length; i++) {
+            int outIdx = data.totalpreviousfields + i;
+            converters[i] = createConverter(data.outputRowMeta.getValueMeta(outIdx),
+                    data.convertRowMeta.getValueMeta(outIdx));
+        }
     }
 
-    private Object getValue(ValueMetaInterface targetMeta, ValueMetaInterface strConvertMeta, Object value)
-            throws KettleValueException {
-        if (targetMeta.isNumeric()) {
-            try {
-                // attempt direct conversion
-                return targetMeta.getNativeDataType(value);
-            } catch (KettleValueException e) {
-                if (log.isDebug()) {
-                    log.logDebug(e.getLocalizedMessage(), e);
-                }
-            }
+    private ColumnConverter createConverter(ValueMetaInterface targetMeta, ValueMetaInterface strConvertMeta) {
+        switch (targetMeta.getType()) {
+            case ValueMetaInterface.TYPE_INTEGER:
+                return new IntegerConverter(targetMeta, strConvertMeta);
+            case ValueMetaInterface.TYPE_NUMBER:
+                return new NumberConverter(targetMeta, strConvertMeta);
+            case ValueMetaInterface.TYPE_BIGNUMBER:
+                return new BigNumberConverter(targetMeta, strConvertMeta);
+            case ValueMetaInterface.TYPE_BOOLEAN:
+                return new BooleanConverter(targetMeta, strConvertMeta);
+            case ValueMetaInterface.TYPE_STRING:
+                return new StringConverter(targetMeta, strConvertMeta);
+            case ValueMetaInterface.TYPE_DATE:
+                return new DateConverter(targetMeta, strConvertMeta);
+            default:
+                return new ColumnConverter(targetMeta, strConvertMeta);
         }
-        // convert from string
-        String strValue = getStringValue(value);
-        return targetMeta.convertDataFromString(strValue, strConvertMeta, null, null, targetMeta.getTrimType());
     }
 
     private String getStringValue(Object jo) throws KettleValueException {
         String nodevalue = null;
         if (jo != null) {
-            if (jo instanceof Map) {
-                @SuppressWarnings("unchecked")
-                Map<String, ?> asStrMap = (Map<String, ?>) jo;
+            if (jo instanceof Map || jo instanceof List) {
                 try {
-                    nodevalue = new ObjectMapper().writeValueAsString(asStrMap);
+                    nodevalue = jsonWriter.writeValueAsString(jo);
                 } catch (IOException e) {
                     // TODO : Manage Exception Properly
                     throw new KettleValueException(e);
@@ -88,9 +111,10 @@ public class RowOutputConverter {
         }
         for (int i = 0; i < rawPartRow.length; i++) {
             int outIdx = data.totalpreviousfields + i;
-            Object val =
-                    getValue(data.outputRowMeta.getValueMeta(outIdx), data.convertRowMeta.getValueMeta(outIdx),
-                            rawPartRow[i]);
+            Object val = rawPartRow[i] == null ? null : converters[i].convert(rawPartRow[i]);
+            if (val instanceof String && data.dictionary != null && data.dedupedFields.get(i)) {
+                val = data.dictionary.canonical((String) val);
+            }
             rawPartRow[i] = val;
             if (val == null && data.repeatedFields.get(i) && data.previousRow != null) {
                 rawPartRow[i] = data.previousRow[outIdx];
@@ -100,4 +124,134 @@ public class RowOutputConverter {
         return data.previousRow;
     }
 
+    /**
+     * Converts the values of one column. Values without a direct conversion go through their string form.
+     */
+    private class ColumnConverter {
+        final ValueMetaInterface targetMeta;
+        final ValueMetaInterface strConvertMeta;
+
+        ColumnConverter(ValueMetaInterface targetMeta, ValueMetaInterface strConvertMeta) {
+            this.targetMeta = targetMeta;
+            this.strConvertMeta = strConvertMeta;
+        }
+
+        Object convert(Object value) throws KettleValueException {
+            if (targetMeta.isNumeric()) {
+                try {
+                    // attempt direct conversion
+                    return targetMeta.getNativeDataType(value);
+                } catch (KettleValueException e) {
+                    if (log.isDebug()) {
+                        log.logDebug(e.getLocalizedMessage(), e);
+                    }
+                }
+            }
+            return convertString(value);
+        }
+
+        Object convertString(Object value) throws KettleValueException {
+            String strValue = getStringValue(value);
+            return targetMeta.convertDataFromString(strValue, strConvertMeta, null, null, targetMeta.getTrimType());
+        }
+    }
+
+    private class IntegerConverter extends ColumnConverter {
+        IntegerConverter(ValueMetaInterface targetMeta, ValueMetaInterface strConvertMeta) {
+            super(targetMeta, strConvertMeta);
+        }
+
+        @Override
+        Object convert(Object value) throws KettleValueException {
+            if (value instanceof Long) {
+                return value;
+            }
+            if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                return ((Number) value).longValue();
+            }
+            return convertString(value);
+        }
+    }
+
+    private class NumberConverter extends ColumnConverter {
+        NumberConverter(ValueMetaInterface targetMeta, ValueMetaInterface strConvertMeta) {
+            super(targetMeta, strConvertMeta);
+        }
+
+        @Override
+        Object convert(Object value) throws KettleValueException {
+            if (value instanceof Double) {
+                return value;
+            }
+            if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                return ((Number) value).doubleValue();
+            }
+            return convertString(value);
+        }
+    }
+
+    private class BigNumberConverter extends ColumnConverter {
+        BigNumberConverter(ValueMetaInterface targetMeta, ValueMetaInterface strConvertMeta) {
+            super(targetMeta, strConvertMeta);
+        }
+
+        @Override
+        Object convert(Object value) throws KettleValueException {
+            if (value instanceof BigDecimal) {
+                return value;
+            }
+            if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                return BigDecimal.valueOf(((Number) value).longValue());
+            }
+            if (value instanceof Double) {
+                // same digits as its string form
+                return BigDecimal.valueOf((Double) value);
+            }
+            if (value instanceof BigInteger) {
+                return new BigDecimal((BigInteger) value);
+            }
+            return convertString(value);
+        }
+    }
+
+    private class BooleanConverter extends ColumnConverter {
+        BooleanConverter(ValueMetaInterface targetMeta, ValueMetaInterface strConvertMeta) {
+            super(targetMeta, strConvertMeta);
+        }
+
+        @Override
+        Object convert(Object value) throws KettleValueException {
+            if (value instanceof Boolean) {
+                return value;
+            }
+            return convertString(value);
+        }
+    }
+
+    private class StringConverter extends ColumnConverter {
+        private final boolean trimmed;
+
+        StringConverter(ValueMetaInterface targetMeta, ValueMetaInterface strConvertMeta) {
+            super(targetMeta, strConvertMeta);
+            this.trimmed = targetMeta.getTrimType() != ValueMetaInterface.TRIM_TYPE_NONE;
+        }
+
+        @Override
+        Object convert(Object value) throws KettleValueException {
+            if (!trimmed && value instanceof String && !((String) value).isEmpty()) {
+                // empty strings are left to the null handling of the conversion
+                return value;
+            }
+            return convertString(value);
+        }
+    }
+
+    private class DateConverter extends ColumnConverter {
+        DateConverter(ValueMetaInterface targetMeta, ValueMetaInterface strConvertMeta) {
+            super(targetMeta, strConvertMeta);
+            // compile the conversion mask now rather than on the first row
+            strConvertMeta.getDateFormat();
+        }
+    }
+
 }
@@ -0,0 +1,150 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.serasoft.di.steps.jsoninput.reader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.pentaho.di.core.exception.KettleException;
+
+/**
+ * Rows read back from the column lists of a document, written to temporary files once the paths are evaluated so that
+ * neither the document nor the lists stay in memory while the rows are handed out.
+ * <p>
+ * Each column goes to its own file and its list is released as soon as it is written. The rows are then read from all
+ * the files side by side, and the files are deleted once the last row is read or the row set is cleared.
+ */
+public class SpilledRowSet extends LazyRowSet {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * Values written between two resets of the stream, which would otherwise keep a reference to each of them
+   */
+  private static final int RESET_INTERVAL = 1024;
+
+  private final File[] files;
+  private final ObjectInputStream[] columns;
+  private final int rowCount;
+  private final long bytes;
+  private int rowNbr;
+
+  private SpilledRowSet( File[] files, int rowCount ) throws IOException {
+    this.files = files;
+    this.rowCount = rowCount;
+    this.columns = new ObjectInputStream[ files.length ];
+    long size = 0;
+    for ( int i = 0; i < files.length; i++ ) {
+      size += files[ i ].length();
+      columns[ i ] = new ObjectInputStream( new BufferedInputStream( new FileInputStream( files[ i ] ), BUFFER_SIZE ) );
+    }
+    this.bytes = size;
+  }
+
+  /**
+   * Writes the columns to temporary files, setting each list to null in <code>columns</code> once it is written.
+   *
+   * @param columns the values of each field, all of the same size
+   */
+  public static SpilledRowSet spill( List<List<?>> columns ) throws KettleException {
+    int rowCount = columns.isEmpty() ? 0 : columns.get( 0 ).size();
+    File[] files = new File[ columns.size() ];
+    try {
+      for ( int col = 0; col < files.length; col++ ) {
+        files[ col ] = File.createTempFile( "jsoninput-column-", ".spill" );
+        try ( ObjectOutputStream out = new ObjectOutputStream(
+          new BufferedOutputStream( new FileOutputStream( files[ col ] ), BUFFER_SIZE ) ) ) {
+          int written = 0;
+          for ( Object value : columns.get( col ) ) {
+            out.writeObject( value );
+            if ( ++written % RESET_INTERVAL == 0 ) {
+              out.reset();
+            }
+          }
+        }
+        columns.set( col, null );
+      }
+      SpilledRowSet rowSet = new SpilledRowSet( files, rowCount );
+      rowSet.init();
+      return rowSet;
+    } catch ( IOException e ) {
+      delete( files );
+      throw new KettleException( e );
+    }
+  }
+
+  /**
+   * @return bytes written to the temporary files
+   */
+  public long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * @return the directory holding the temporary files, null without any column
+   */
+  public String getDirectory() {
+    return files.length == 0 ? null : files[ 0 ].getParent();
+  }
+
+  @Override
+  protected Object[] fetchNext() throws KettleException {
+    if ( rowNbr >= rowCount ) {
+      return null;
+    }
+    Object[] row = new Object[ columns.length ];
+    try {
+      for ( int col = 0; col < columns.length; col++ ) {
+        row[ col ] = columns[ col ].readObject();
+      }
+    } catch ( IOException | ClassNotFoundException e ) {
+      throw new KettleException( e );
+    }
+    rowNbr++;
+    return row;
+  }
+
+  @Override
+  protected void close() {
+    for ( ObjectInputStream column : columns ) {
+      IOUtils.closeQuietly( column );
+    }
+    delete( files );
+  }
+
+  private static void delete( File[] files ) {
+    for ( File file : files ) {
+      if ( file != null ) {
+        file.delete();
+      }
+    }
+  }
+}
@@ -0,0 +1,227 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.serasoft.di.steps.jsoninput.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.i18n.BaseMessages;
+import org.serasoft.di.steps.jsoninput.JsonInputField;
+import org.serasoft.di.steps.jsoninput.JsonInputMeta;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.Option;
+import com.jayway.jsonpath.spi.json.JsonProvider;
+
+/**
+ * Reads the document token by token and only materializes one record at a time, see {@link RecordPaths} for the
+ * paths it supports.
+ */
+public class StreamingJsonReader implements IJsonReader {
+  private static Class<?> PKG = JsonInputMeta.class; // for i18n purposes, needed by Translator2!!
+
+  private static final Option[] DEFAULT_OPTIONS = { Option.SUPPRESS_EXCEPTIONS, Option.ALWAYS_RETURN_LIST };
+
+  private static final Object NO_RECORD = new Object();
+
+  private final JsonFactory jsonFactory = JsonProjection.createJsonFactory();
+  private Configuration jsonConfiguration;
+
+  private boolean ignoreMissingPath;
+
+  private RecordPaths paths;
+  private List<PathStep> recordPath;
+  private LogChannelInterface log;
+  private long rowLimit;
+
+  public StreamingJsonReader( JsonInputField[] fields, boolean defaultPathLeafToNull, LogChannelInterface log )
+    throws KettleException {
+    this.log = log;
+    this.jsonConfiguration = Configuration.defaultConfiguration().addOptions( DEFAULT_OPTIONS );
+    if ( defaultPathLeafToNull ) {
+      this.jsonConfiguration = jsonConfiguration.addOptions( Option.DEFAULT_PATH_LEAF_TO_NULL );
+    }
+    setFields( fields );
+  }
+
+  @Override
+  public void setFields( JsonInputField[] fields ) throws KettleException {
+    this.paths = RecordPaths.compile( fields );
+    this.recordPath = paths.getRecordPath();
+  }
+
+  @Override
+  public boolean isIgnoreMissingPath() {
+    return ignoreMissingPath;
+  }
+
+  @Override
+  public void setIgnoreMissingPath( boolean value ) {
+    this.ignoreMissingPath = value;
+  }
+
+  @Override
+  public void setRowLimit( long rowLimit ) {
+    this.rowLimit = rowLimit;
+  }
+
+  @Override
+  public RowSet parse( InputStream in ) throws KettleException {
+    try {
+      RecordRowSet rowSet = new RecordRowSet( JsonProjection.createParser( jsonFactory, in ) );
+      rowSet.init();
+      return rowSet;
+    } catch ( IOException e ) {
+      throw new KettleException( e );
+    }
+  }
+
+  /**
+   * Turns each record into a row as the parser reaches it.
+   */
+  private class RecordRowSet extends LazyRowSet {
+    private final JsonParser parser;
+    private final JsonProvider provider;
+    private final Deque<Frame> containers = new ArrayDeque<>();
+    private final long recordLimit = rowLimit;
+    private boolean started;
+    private long records;
+
+    RecordRowSet( JsonParser parser ) {
+      this.parser = parser;
+      this.provider = jsonConfiguration.jsonProvider();
+    }
+
+    @Override
+    protected Object[] fetchNext() throws KettleException {
+      if ( recordPath == null ) {
+        // no field, nothing to read
+        return null;
+      }
+      if ( recordLimit > 0 && records >= recordLimit ) {
+        // not even parsing the record after the last one asked for
+        return null;
+      }
+      Object record;
+      try {
+        record = nextRecord();
+      } catch ( IOException e ) {
+        throw new KettleException( e );
+      }
+      if ( record == NO_RECORD ) {
+        return null;
+      }
+      records++;
+      return paths.evaluate( record, jsonConfiguration, isIgnoreMissingPath() );
+    }
+
+    @Override
+    protected void close() {
+      if ( log.isDetailed() ) {
+        log.logDetailed( BaseMessages.getString( PKG, "JsonInput.Log.NrRecords", records ) );
+      }
+      try {
+        parser.close();
+      } catch ( IOException e ) {
+        if ( log.isDebug() ) {
+          log.logDebug( e.getLocalizedMessage(), e );
+        }
+      }
+    }
+
+    /**
+     * Moves the parser to the next value matched by the record path and reads it.
+     */
+    private Object nextRecord() throws IOException {
+      if ( !started ) {
+        started = true;
+        JsonToken token = parser.nextToken();
+        if ( token == null ) {
+          return NO_RECORD;
+        }
+        if ( recordPath.isEmpty() ) {
+          // the whole document is the record
+          return JsonProjection.readValue( parser, provider );
+        }
+        if ( !token.isStructStart() ) {
+          return NO_RECORD;
+        }
+        containers.push( new Frame( 0 ) );
+      }
+      while ( !containers.isEmpty() ) {
+        Frame frame = containers.peek();
+        JsonToken token = parser.nextToken();
+        if ( token == null ) {
+          break;
+        }
+        if ( token.isStructEnd() ) {
+          containers.pop();
+          continue;
+        }
+        PathStep step = recordPath.get( frame.depth );
+        boolean matches;
+        if ( token == JsonToken.FIELD_NAME ) {
+          String name = parser.getCurrentName();
+          token = parser.nextToken();
+          matches = step.matchesKey( name );
+        } else {
+          matches = step.matchesIndex( frame.position++ );
+        }
+        if ( !matches ) {
+          parser.skipChildren();
+          continue;
+        }
+        int depth = frame.depth + 1;
+        if ( depth == recordPath.size() ) {
+          return JsonProjection.readValue( parser, provider );
+        }
+        if ( token.isStructStart() ) {
+          containers.push( new Frame( depth ) );
+        }
+      }
+      return NO_RECORD;
+    }
+  }
+
+  /**
+   * Object or array being walked, with the record path step its members are matched against.
+   */
+  private static class Frame {
+    final int depth;
+    int position;
+
+    Frame( int depth ) {
+      this.depth = depth;
+    }
+  }
+
+}
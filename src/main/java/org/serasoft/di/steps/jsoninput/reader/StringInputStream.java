@@ -0,0 +1,75 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.serasoft.di.steps.jsoninput.reader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Input read from a String value. Readers able to parse characters take the String itself, the bytes are only
+ * encoded if the stream is actually read.
+ */
+public class StringInputStream extends InputStream {
+
+  private final String value;
+  private final Charset charset;
+  private InputStream encoded;
+
+  public StringInputStream( String value, String charset ) {
+    this.value = value;
+    this.charset = Charset.forName( charset );
+  }
+
+  public String getString() {
+    return value;
+  }
+
+  private InputStream getEncoded() {
+    if ( encoded == null ) {
+      encoded = new ByteArrayInputStream( value.getBytes( charset ) );
+    }
+    return encoded;
+  }
+
+  @Override
+  public int read() throws IOException {
+    return getEncoded().read();
+  }
+
+  @Override
+  public int read( byte[] b, int off, int len ) throws IOException {
+    return getEncoded().read( b, off, len );
+  }
+
+  @Override
+  public long skip( long n ) throws IOException {
+    return getEncoded().skip( n );
+  }
+
+  @Override
+  public int available() throws IOException {
+    return getEncoded().available();
+  }
+}
@@ -0,0 +1,226 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.serasoft.di.steps.jsoninput.reader;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Positions of the structural characters of a UTF-8 Json document: the brackets, colons and commas outside strings,
+ * the opening quote of each string and the first byte of each other value.
+ * <p>
+ * The document is scanned 64 bytes at a time. Each block is read as 8 longs, and the bytes of interest are found in
+ * all 8 bytes of a long at once, giving one bit per byte of the block. The strings are found from the quote bits alone:
+ * a quote preceded by an odd number of backslashes is escaped, and the prefix xor of the other quotes is set inside
+ * the strings. A value can then skip a string or a whole container by moving through the positions only, without
+ * looking at the bytes in between.
+ * <p>
+ * The positions are found a few blocks ahead of the reading, so that the index takes little memory whatever the size
+ * of the document. Only standard Json is indexed: single quotes, comments and backslashes outside strings throw an
+ * {@link UnsupportedInputException} for the document to be read by the tokenizer instead.
+ */
+public class StructuralIndex {
+
+  /**
+   * Blocks of 64 bytes indexed at once
+   */
+  private static final int CHUNK_BLOCKS = 256;
+
+  private static final long ONES = 0x0101010101010101L;
+  private static final long LOW_7_BITS = 0x7F7F7F7F7F7F7F7FL;
+  private static final long CASE_BIT = 0x2020202020202020L;
+  private static final long ODD_BITS = 0xAAAAAAAAAAAAAAAAL;
+  /**
+   * Gathers the top bit of each byte into the top byte, byte i going to bit 56 + i
+   */
+  private static final long GATHER = 0x0102040810204080L;
+
+  private final byte[] buf;
+  private final int end;
+  private final byte[] padded = new byte[ 64 ];
+  private final int[] positions = new int[ CHUNK_BLOCKS * 64 ];
+  private int count;
+  private int next;
+  private int scanned;
+
+  private long prevEscaped;
+  private long prevInString;
+  private long prevScalar;
+
+  /**
+   * @param buf the document
+   * @param start first byte of the document, after its byte order mark if any
+   * @param end byte after the document
+   */
+  public StructuralIndex( byte[] buf, int start, int end ) {
+    this.buf = buf;
+    this.end = end;
+    this.scanned = start;
+  }
+
+  /**
+   * @return the position of the next structural character, or -1 at the end of the document
+   */
+  public int next() throws UnsupportedInputException {
+    if ( next == count && !fill() ) {
+      return -1;
+    }
+    return positions[ next++ ];
+  }
+
+  /**
+   * @return true if the document ends inside a string, which is only known once it is all indexed
+   */
+  public boolean isInString() {
+    return prevInString != 0;
+  }
+
+  /**
+   * Indexes the next chunk holding structural characters.
+   *
+   * @return false once the document is all indexed without finding any more
+   */
+  private boolean fill() throws UnsupportedInputException {
+    count = 0;
+    next = 0;
+    // a chunk may have none, inside a long string
+    while ( count == 0 && scanned < end ) {
+      for ( int blocks = 0; blocks < CHUNK_BLOCKS && scanned < end; blocks++ ) {
+        if ( end - scanned >= 64 ) {
+          index( buf, scanned, scanned );
+        } else {
+          // the last bytes, padded with spaces
+          Arrays.fill( padded, (byte) ' ' );
+          System.arraycopy( buf, scanned, padded, 0, end - scanned );
+          index( padded, 0, scanned );
+        }
+        scanned += 64;
+      }
+    }
+    return count > 0;
+  }
+
+  /**
+   * Adds the structural positions of a block.
+   *
+   * @param bytes holds the block
+   * @param offset start of the block in <code>bytes</code>
+   * @param base position of the block in the document
+   */
+  private void index( byte[] bytes, int offset, int base ) throws UnsupportedInputException {
+    long quote = 0;
+    long backslash = 0;
+    long op = 0;
+    long space = 0;
+    long relaxed = 0;
+    for ( int k = 0; k < 8; k++ ) {
+      long w = word( bytes, offset + 8 * k );
+      int shift = 8 * k;
+      quote |= mask( w, '"' ) << shift;
+      backslash |= mask( w, '\\' ) << shift;
+      // '[' and ']' only differ from '{' and '}' by the case bit
+      long folded = w | CASE_BIT;
+      op |= ( mask( folded, '{' ) | mask( folded, '}' ) | mask( w, ':' ) | mask( w, ',' ) ) << shift;
+      space |= ( mask( w, ' ' ) | mask( w, '\n' ) | mask( w, '\r' ) | mask( w, '\t' ) ) << shift;
+      relaxed |= ( mask( w, '\'' ) | mask( w, '/' ) ) << shift;
+    }
+
+    // characters preceded by an odd number of backslashes
+    long escaped;
+    if ( backslash == 0 ) {
+      escaped = prevEscaped;
+      prevEscaped = 0;
+    } else {
+      long potentialEscape = backslash & ~prevEscaped;
+      long maybeEscaped = potentialEscape << 1;
+      long escapeAndTerminal = ( ( maybeEscaped | ODD_BITS ) - potentialEscape ) ^ ODD_BITS;
+      escaped = escapeAndTerminal ^ ( backslash | prevEscaped );
+      prevEscaped = ( escapeAndTerminal & backslash ) >>> 63;
+    }
+    quote &= ~escaped;
+
+    // set from each opening quote up to the closing one, excluded
+    long inString = quote;
+    inString ^= inString << 1;
+    inString ^= inString << 2;
+    inString ^= inString << 4;
+    inString ^= inString << 8;
+    inString ^= inString << 16;
+    inString ^= inString << 32;
+    inString ^= prevInString;
+    prevInString = inString >> 63;
+
+    // backslashes only belong in strings
+    relaxed |= backslash;
+    if ( ( relaxed & ~inString ) != 0 ) {
+      throw new UnsupportedInputException( base + Long.numberOfTrailingZeros( relaxed & ~inString ) );
+    }
+    long scalar = ~( op | space | quote | inString );
+    long scalarStart = scalar & ~( ( scalar << 1 ) | prevScalar );
+    prevScalar = scalar >>> 63;
+
+    long structurals = ( op & ~inString ) | ( quote & inString ) | scalarStart;
+    while ( structurals != 0 ) {
+      int pos = base + Long.numberOfTrailingZeros( structurals );
+      if ( pos < end ) {
+        positions[ count++ ] = pos;
+      }
+      structurals &= structurals - 1;
+    }
+  }
+
+  /**
+   * @return 8 bytes, the first one in the low byte
+   */
+  private static long word( byte[] bytes, int i ) {
+    return ( bytes[ i ] & 0xFFL )
+      | ( bytes[ i + 1 ] & 0xFFL ) << 8
+      | ( bytes[ i + 2 ] & 0xFFL ) << 16
+      | ( bytes[ i + 3 ] & 0xFFL ) << 24
+      | ( bytes[ i + 4 ] & 0xFFL ) << 32
+      | ( bytes[ i + 5 ] & 0xFFL ) << 40
+      | ( bytes[ i + 6 ] & 0xFFL ) << 48
+      | ( bytes[ i + 7 ] & 0xFFL ) << 56;
+  }
+
+  /**
+   * @return one bit per byte of the word equal to the character, byte i giving bit i
+   */
+  private static long mask( long w, char c ) {
+    long v = w ^ ( c * ONES );
+    // top bit set in the zero bytes only, without carries between the bytes
+    long zeros = ~( ( ( v & LOW_7_BITS ) + LOW_7_BITS ) | v | LOW_7_BITS );
+    return ( ( zeros >>> 7 ) * GATHER ) >>> 56;
+  }
+
+  /**
+   * Thrown when the document is not plain Json, or not valid, for it to be read by the tokenizer instead.
+   */
+  public static class UnsupportedInputException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public UnsupportedInputException( int position ) {
+      super( "at byte " + position );
+    }
+  }
+}
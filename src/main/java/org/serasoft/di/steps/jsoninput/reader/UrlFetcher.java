@@ -0,0 +1,225 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.serasoft.di.steps.jsoninput.reader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.pentaho.di.core.exception.KettleFileException;
+import org.pentaho.di.core.vfs.KettleVFS;
+import org.pentaho.di.i18n.BaseMessages;
+import org.serasoft.di.steps.jsoninput.JsonInputMeta;
+
+/**
+ * Fetches the content of urls, http ones through a pool of persistent connections.
+ * <p>
+ * The pool keeps at most as many connections as there are requests in flight, so that each fetching thread reuses an
+ * open connection to the same host. With the cache enabled, the responses coming with an ETag are kept, and the next
+ * fetch of the same url asks the server whether it changed: a <code>304 Not Modified</code> answer gives back the body
+ * kept without transferring it again. The cache is shared by the steps of the JVM and holds a bounded number of bytes,
+ * forgetting the least recently used responses first.
+ * <p>
+ * Urls of other schemes are read through VFS.
+ */
+public class UrlFetcher implements Closeable {
+  private static Class<?> PKG = JsonInputMeta.class; // for i18n purposes, needed by Translator2!!
+
+  /**
+   * Most bytes of response bodies kept for conditional requests
+   */
+  public static final long MAX_CACHE_BYTES = 64L * 1024 * 1024;
+
+  /**
+   * Milliseconds to wait for a connection to open, for a connection of the pool to be free, and between two packets of
+   * a response, so that a stalled server fails its url instead of holding a fetching thread and the step
+   */
+  public static final int DEFAULT_TIMEOUT = 30 * 1000;
+
+  private static final ResponseCache CACHE = new ResponseCache( MAX_CACHE_BYTES );
+
+  private final PoolingHttpClientConnectionManager connections;
+  private final CloseableHttpClient client;
+  private final boolean cached;
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong notModified = new AtomicLong();
+  private final AtomicLong bytes = new AtomicLong();
+
+  /**
+   * @param maxConnections connections kept open, the number of urls fetched at once
+   * @param cached keep the responses with an ETag and fetch them again with a conditional request
+   */
+  public UrlFetcher( int maxConnections, boolean cached ) {
+    this( maxConnections, cached, DEFAULT_TIMEOUT );
+  }
+
+  /**
+   * @param maxConnections connections kept open, the number of urls fetched at once
+   * @param cached keep the responses with an ETag and fetch them again with a conditional request
+   * @param timeout milliseconds to wait for a connection, and for the next packet of a response
+   */
+  public UrlFetcher( int maxConnections, boolean cached, int timeout ) {
+    this.cached = cached;
+    connections = new PoolingHttpClientConnectionManager();
+    connections.setMaxTotal( maxConnections );
+    connections.setDefaultMaxPerRoute( maxConnections );
+    RequestConfig config = RequestConfig.custom()
+      .setConnectTimeout( timeout )
+      .setConnectionRequestTimeout( timeout )
+      .setSocketTimeout( timeout )
+      .build();
+    client = HttpClients.custom().setConnectionManager( connections ).setDefaultRequestConfig( config )
+      .useSystemProperties().build();
+  }
+
+  /**
+   * Fetches the whole content of a url, safe to call from several threads.
+   */
+  public byte[] fetch( String url ) throws IOException {
+    requests.incrementAndGet();
+    String scheme = url.substring( 0, Math.max( 0, url.indexOf( ':' ) ) );
+    byte[] body = "http".equalsIgnoreCase( scheme ) || "https".equalsIgnoreCase( scheme ) ? get( url ) : read( url );
+    bytes.addAndGet( body.length );
+    return body;
+  }
+
+  private byte[] get( String url ) throws IOException {
+    HttpGet request = new HttpGet( url );
+    CachedResponse previous = cached ? CACHE.get( url ) : null;
+    if ( previous != null ) {
+      request.setHeader( HttpHeaders.IF_NONE_MATCH, previous.etag );
+    }
+    try ( CloseableHttpResponse response = client.execute( request ) ) {
+      HttpEntity entity = response.getEntity();
+      int status = response.getStatusLine().getStatusCode();
+      if ( status == HttpStatus.SC_NOT_MODIFIED && previous != null ) {
+        // the connection goes back to the pool once the response is consumed
+        EntityUtils.consume( entity );
+        notModified.incrementAndGet();
+        return previous.body;
+      }
+      if ( status < 200 || status >= 300 ) {
+        EntityUtils.consume( entity );
+        throw new IOException(
+          BaseMessages.getString( PKG, "JsonInput.Error.HttpStatus", url, response.getStatusLine().toString() ) );
+      }
+      byte[] body = entity == null ? new byte[ 0 ] : EntityUtils.toByteArray( entity );
+      Header etag = response.getFirstHeader( HttpHeaders.ETAG );
+      if ( cached && etag != null ) {
+        CACHE.put( url, new CachedResponse( etag.getValue(), body ) );
+      }
+      return body;
+    }
+  }
+
+  private static byte[] read( String url ) throws IOException {
+    try ( InputStream in = MappedFileInputStream.open( KettleVFS.getFileObject( url ) ) ) {
+      return IOUtils.toByteArray( in );
+    } catch ( KettleFileException e ) {
+      throw new IOException( e );
+    }
+  }
+
+  /**
+   * @return number of urls fetched
+   */
+  public long getRequests() {
+    return requests.get();
+  }
+
+  /**
+   * @return number of responses given back from the cache after a conditional request
+   */
+  public long getNotModified() {
+    return notModified.get();
+  }
+
+  /**
+   * @return bytes of content given
+   */
+  public long getBytes() {
+    return bytes.get();
+  }
+
+  @Override
+  public void close() throws IOException {
+    client.close();
+  }
+
+  private static class CachedResponse {
+    final String etag;
+    final byte[] body;
+
+    CachedResponse( String etag, byte[] body ) {
+      this.etag = etag;
+      this.body = body;
+    }
+  }
+
+  private static class ResponseCache {
+    private final long maxBytes;
+    private final Map<String, CachedResponse> responses = new LinkedHashMap<>( 16, 0.75f, true );
+    private long size;
+
+    ResponseCache( long maxBytes ) {
+      this.maxBytes = maxBytes;
+    }
+
+    synchronized CachedResponse get( String url ) {
+      return responses.get( url );
+    }
+
+    synchronized void put( String url, CachedResponse response ) {
+      if ( response.body.length > maxBytes / 8 ) {
+        // would push out too many others
+        return;
+      }
+      CachedResponse replaced = responses.put( url, response );
+      if ( replaced != null ) {
+        size -= replaced.body.length;
+      }
+      size += response.body.length;
+      Iterator<CachedResponse> eldest = responses.values().iterator();
+      while ( size > maxBytes && eldest.hasNext() ) {
+        size -= eldest.next().body.length;
+        eldest.remove();
+      }
+    }
+  }
+}
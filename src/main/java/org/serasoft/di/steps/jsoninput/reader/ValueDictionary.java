@@ -0,0 +1,114 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.serasoft.di.steps.jsoninput.reader;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Canonical instances of the string values of the deduplicated fields, so that a value read many times is kept once
+ * in the rows.
+ * <p>
+ * The dictionary holds a bounded number of values and forgets the least recently used one first, so that a field with
+ * more distinct values than it holds costs a lookup per value and no more memory. It belongs to one copy of the step
+ * and is not thread safe.
+ */
+public class ValueDictionary {
+
+  /**
+   * Most values held
+   */
+  public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+  /**
+   * Longer values are not held, they seldom repeat
+   */
+  public static final int MAX_VALUE_LENGTH = 256;
+
+  private final Map<String, String> values;
+  private long lookups;
+  private long hits;
+  private long bytesSaved;
+
+  public ValueDictionary( final int maxEntries ) {
+    values = new LinkedHashMap<String, String>( 16, 0.75f, true ) {
+      @Override
+      protected boolean removeEldestEntry( Map.Entry<String, String> eldest ) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  /**
+   * @return the instance held for an equal value, or the value itself, held from now on
+   */
+  public String canonical( String value ) {
+    if ( value.length() > MAX_VALUE_LENGTH ) {
+      return value;
+    }
+    lookups++;
+    String held = values.get( value );
+    if ( held == null ) {
+      values.put( value, value );
+      return value;
+    }
+    hits++;
+    if ( held != value ) {
+      bytesSaved += getSize( value );
+    }
+    return held;
+  }
+
+  /**
+   * @return estimated heap size of a string: the string, its array header and 2 bytes per character
+   */
+  private static long getSize( String value ) {
+    return 40L + 2L * value.length();
+  }
+
+  public long getLookups() {
+    return lookups;
+  }
+
+  public long getHits() {
+    return hits;
+  }
+
+  /**
+   * @return percentage of the lookups that found an equal value
+   */
+  public double getHitRate() {
+    return lookups == 0 ? 0 : 100.0 * hits / lookups;
+  }
+
+  /**
+   * @return estimated heap bytes of the values given up for the instance held
+   */
+  public long getBytesSaved() {
+    return bytesSaved;
+  }
+
+  public int size() {
+    return values.size();
+  }
+}
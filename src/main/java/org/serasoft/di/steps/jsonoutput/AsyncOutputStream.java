@@ -0,0 +1,275 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.serasoft.di.steps.jsonoutput;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An output stream written on a thread of its own, so that a slow target does not hold the thread writing to it.
+ * <p>
+ * The bytes are gathered in buffers handed to the writing thread once full, on a flush or on close. At most the given
+ * number of buffers is allocated: once they are all waiting to be written, the next one to fill waits for one to be
+ * written. A flush or a close waits for the bytes written before it to reach the target, the writes only wait for a
+ * free buffer. A failure of the target is thrown by the next write, flush or close, the bytes following it being
+ * dropped. The target is closed with the stream.
+ */
+public class AsyncOutputStream extends OutputStream {
+
+    private static class Block {
+        final byte[] data;
+        int length;
+        /**
+         * Flush the target once the block is written
+         */
+        boolean flush;
+
+        Block(byte[] data) {
+            this.data = data;
+        }
+    }
+
+    /**
+     * Ends the writing thread
+     */
+    private static final Block END = new Block(new byte[0]);
+
+    private final OutputStream out;
+    private final int bufferSize;
+    private final int bufferCount;
+    private final BlockingQueue<Block> filled;
+    private final BlockingQueue<Block> free;
+    private final Thread thread;
+
+    private Block current;
+    private int allocated;
+    private boolean closed;
+    private volatile IOException error;
+    /**
+     * Blocks handed to the writing thread
+     */
+    private long handedOff;
+    /**
+     * Blocks the writing thread is done with, guarded by the stream
+     */
+    private long written;
+
+    /**
+     * @param bufferSize  size in bytes of each buffer
+     * @param bufferCount most buffers allocated, filled or waiting to be written
+     * @param name        name of the writing thread
+     */
+    public AsyncOutputStream(OutputStream out, int bufferSize, int bufferCount, String name) {
+        this.out = out;
+        this.bufferSize = Math.max(1, bufferSize);
+        this.bufferCount = Math.max(1, bufferCount);
+        // all the buffers and the end
+        this.filled = new ArrayBlockingQueue<>(this.bufferCount + 1);
+        this.free = new ArrayBlockingQueue<>(this.bufferCount);
+        this.thread = new Thread(() -> drain(), name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (current == null || current.length == current.data.length) {
+            next();
+        }
+        current.data[current.length++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (current == null || current.length == current.data.length) {
+                next();
+            }
+            int n = Math.min(len, current.data.length - current.length);
+            System.arraycopy(b, off, current.data, current.length, n);
+            current.length += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Waits for the bytes written so far to be written and the target to be flushed.
+     */
+    @Override
+    public void flush() throws IOException {
+        checkOpen();
+        if (current == null) {
+            current = take();
+        }
+        current.flush = true;
+        handOff();
+        awaitWritten(handedOff);
+        checkError();
+    }
+
+    /**
+     * Waits for the bytes written so far to be written and the target to be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (current != null && current.length > 0) {
+                filled.put(current);
+            }
+            current = null;
+            filled.put(END);
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        }
+        checkError();
+    }
+
+    private void next() throws IOException {
+        checkOpen();
+        if (current != null) {
+            handOff();
+        }
+        current = take();
+    }
+
+    private void handOff() throws IOException {
+        try {
+            filled.put(current);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        }
+        handedOff++;
+        current = null;
+    }
+
+    /**
+     * Waits for the writing thread to be done with a number of blocks.
+     */
+    private synchronized void awaitWritten(long blocks) throws IOException {
+        try {
+            while (written < blocks) {
+                if (!thread.isAlive()) {
+                    checkError();
+                    throw new IOException("Writing thread stopped");
+                }
+                wait(100);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        }
+    }
+
+    private synchronized void blockWritten() {
+        written++;
+        notifyAll();
+    }
+
+    /**
+     * @return an empty buffer, waiting for one to be written once all of them are allocated
+     */
+    private Block take() throws IOException {
+        Block block = free.poll();
+        if (block == null) {
+            if (allocated < bufferCount) {
+                allocated++;
+                return new Block(new byte[bufferSize]);
+            }
+            try {
+                while ((block = free.poll(100, TimeUnit.MILLISECONDS)) == null) {
+                    if (!thread.isAlive()) {
+                        checkError();
+                        throw new IOException("Writing thread stopped");
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(e.getMessage());
+            }
+            checkError();
+        }
+        block.length = 0;
+        block.flush = false;
+        return block;
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        checkError();
+    }
+
+    private void checkError() throws IOException {
+        if (error != null) {
+            throw new IOException(error.getMessage(), error);
+        }
+    }
+
+    /**
+     * Writes the buffers as they are handed off, until the end.
+     */
+    private void drain() {
+        try {
+            Block block;
+            while ((block = filled.take()) != END) {
+                if (error == null) {
+                    try {
+                        out.write(block.data, 0, block.length);
+                        if (block.flush) {
+                            out.flush();
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        error = e instanceof IOException ? (IOException) e : new IOException(e);
+                    }
+                }
+                blockWritten();
+                free.put(block);
+            }
+        } catch (InterruptedException e) {
+            if (error == null) {
+                error = new InterruptedIOException(e.getMessage());
+            }
+        } finally {
+            try {
+                out.close();
+            } catch (IOException | RuntimeException e) {
+                if (error == null) {
+                    error = e instanceof IOException ? (IOException) e : new IOException(e);
+                }
+            }
+        }
+    }
+}
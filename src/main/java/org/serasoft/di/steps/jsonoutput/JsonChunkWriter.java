@@ -0,0 +1,132 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.serasoft.di.steps.jsonoutput;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import org.pentaho.di.core.exception.KettleException;
+
+/**
+ * Writes the chunks of the output, a group of rows or the rows up to a split, one row at a time to a generator.
+ * <p>
+ * A chunk is written as the array of its items, wrapped in an object under the bloc name when there is one. A chunk
+ * holding a single item is written as the item alone unless arrays are used for single instances: its first item is
+ * then kept in a token buffer until the second one tells that the chunk is an array. Nothing else is held, whatever
+ * the size of the chunk.
+ */
+public class JsonChunkWriter {
+
+    /**
+     * Writes the object of one row.
+     */
+    public interface ItemWriter {
+        void write(JsonGenerator generator, Object[] row) throws IOException, KettleException;
+    }
+
+    private final String blocName;
+    private final boolean arrayWithSingleInstance;
+    private final ItemWriter itemWriter;
+
+    private JsonGenerator generator;
+    private TokenBuffer firstItem;
+    private int items;
+
+    /**
+     * @param blocName name of the object member wrapping the items, empty for none
+     * @param arrayWithSingleInstance write a chunk of a single item as an array
+     */
+    public JsonChunkWriter(String blocName, boolean arrayWithSingleInstance, ItemWriter itemWriter) {
+        this.blocName = blocName;
+        this.arrayWithSingleInstance = arrayWithSingleInstance;
+        this.itemWriter = itemWriter;
+    }
+
+    /**
+     * @return true between the first item of a chunk and its end
+     */
+    public boolean isStarted() {
+        return generator != null;
+    }
+
+    /**
+     * @return number of items in the current chunk
+     */
+    public int getItems() {
+        return items;
+    }
+
+    /**
+     * Starts a chunk written to the generator.
+     */
+    public void start(JsonGenerator generator) throws IOException {
+        this.generator = generator;
+        items = 0;
+        if (!blocName.isEmpty()) {
+            generator.writeStartObject();
+            generator.writeFieldName(blocName);
+        }
+        if (arrayWithSingleInstance) {
+            // always an array, nothing to wait for
+            generator.writeStartArray();
+        }
+    }
+
+    public void add(Object[] row) throws IOException, KettleException {
+        if (items == 0 && !arrayWithSingleInstance) {
+            firstItem = new TokenBuffer(generator.getCodec(), false);
+            itemWriter.write(firstItem, row);
+        } else {
+            if (items == 1 && !arrayWithSingleInstance) {
+                generator.writeStartArray();
+                writeFirstItem();
+            }
+            itemWriter.write(generator, row);
+        }
+        items++;
+    }
+
+    /**
+     * Ends the chunk and flushes the generator, which the caller closes.
+     */
+    public void end() throws IOException {
+        if (arrayWithSingleInstance || items > 1) {
+            generator.writeEndArray();
+        } else if (items == 1) {
+            writeFirstItem();
+        }
+        if (!blocName.isEmpty()) {
+            generator.writeEndObject();
+        }
+        generator.flush();
+        generator = null;
+        items = 0;
+    }
+
+    private void writeFirstItem() throws IOException {
+        firstItem.serialize(generator);
+        firstItem.close();
+        firstItem = null;
+    }
+}
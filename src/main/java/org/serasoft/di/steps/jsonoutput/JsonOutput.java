@@ -26,14 +26,14 @@ import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.math.BigDecimal;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.JsonNodeFactory;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.apache.commons.vfs2.FileObject;
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.ResultFile;
@@ -68,10 +68,21 @@ public class JsonOutput extends BaseStep implements StepInterface {
     private JsonOutputData data;
     public  Object[] prevRow;
 
-    private ObjectNode itemNode;
-    private JsonNodeFactory nc;
-    private List<ObjectNode> jsonItems;
     private ObjectMapper mapper;
+    private JsonChunkWriter chunkWriter;
+    private JsonGenerator chunkGenerator;
+    /**
+     * Holds the Json of the current chunk when it is output as a value
+     */
+    private StringWriter valueWriter;
+    /**
+     * Writes the JSON Lines output, to the file kept open up to the split or to the value of each row
+     */
+    private JsonGenerator lineGenerator;
+    /**
+     * JSON Lines written to the file since its last flush
+     */
+    private int unflushedLines;
     private int startPagePos;
 
     public JsonOutput(StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr, TransMeta transMeta,
@@ -81,95 +92,201 @@ public class JsonOutput extends BaseStep implements StepInterface {
 
     public void manageRowItems(Object[] row) throws KettleException {
 
-        if (data.isGenLoopOverKey() && !sameGroup( prevRow, row ) && jsonItems.size()>0) {
+        if (data.isGenJsonLines() && data.keysGroupIndexes.length == 0) {
+            writeLine(row);
+            return;
+        }
+
+        if ((data.isGenLoopOverKey() || data.isGenJsonLines())
+                && !sameGroup( prevRow, row ) && chunkWriter.getItems() > 0) {
             // Output the new row
             logDebug("Record Num: " + data.nrRow + " - Generating JSON chunk");
             outPutRow(prevRow);
-            jsonItems = new ArrayList<>();
         }
 
-        // Create a new object with specified fields
-        itemNode = new ObjectNode(nc);
+        addToChunk(row);
+        prevRow = data.inputRowMeta.cloneRow( row ); // copy the row to previous
+        data.nrRow++;
 
-        for (int i = 0; i < data.nrFields; i++) {
-            JsonOutputField outputField = meta.getOutputFields()[i];
+        if (meta.getSplitOutputAfter() > 0 && (data.nrRow) % meta.getSplitOutputAfter() == 0) {
+            // Output the new row
+            logDebug("Record Num: " + data.nrRow + " - Generating JSON chunk");
+            outPutRow(prevRow);
+            if (data.isGenJsonLines()) {
+                closeLines();
+            }
+        }
 
-            ValueMetaInterface v = data.inputRowMeta.getValueMeta(data.fieldIndexes[i]);
+    }
 
-            switch (v.getType()) {
-                case ValueMetaInterface.TYPE_BOOLEAN:
-                    Boolean boolValue = data.inputRowMeta.getBoolean(row, data.fieldIndexes[i]);
+    /**
+     * Writes the row as a line of its own, without going through a chunk.
+     */
+    private void writeLine(Object[] row) throws KettleException {
+        String value = null;
+        try {
+            JsonGenerator generator = getLineGenerator();
+            data.writerPlan.write(generator, row);
+            if (data.isOutputValue()) {
+                generator.flush();
+                value = valueWriter.toString();
+                valueWriter.getBuffer().setLength(0);
+            } else {
+                generator.writeRaw('\n');
+                lineWritten();
+            }
+        } catch (IOException e) {
+            throw new KettleStepException(BaseMessages.getString(PKG, "JsonOutput.Error.Writing"), e);
+        }
+        data.nrRow++;
 
-                    if (boolValue != null)
-                        itemNode.put(outputField.getElementName(), boolValue);
-                    else {
-                        if (!outputField.isRemoveIfBlank())
-                            itemNode.put(outputField.getElementName(), boolValue);
-                    }
-                    break;
-
-                case ValueMetaInterface.TYPE_INTEGER:
-                    Long integerValue = data.inputRowMeta.getInteger(row, data.fieldIndexes[i]);
-
-                    if (integerValue != null)
-                        itemNode.put(outputField.getElementName(), integerValue);
-                    else
-                        if (!outputField.isRemoveIfBlank())
-                            itemNode.put(outputField.getElementName(), integerValue);
-                    break;
-                case ValueMetaInterface.TYPE_NUMBER:
-                    Double numberValue = data.inputRowMeta.getNumber(row, data.fieldIndexes[i]);
-
-                    if (numberValue != null)
-                        itemNode.put(outputField.getElementName(), numberValue);
-                    else
-                        if (!outputField.isRemoveIfBlank())
-                            itemNode.put(outputField.getElementName(), numberValue);
-                    break;
-                case ValueMetaInterface.TYPE_BIGNUMBER:
-                    BigDecimal bignumberValue = data.inputRowMeta.getBigNumber(row, data.fieldIndexes[i]);
-
-                    if(bignumberValue != null)
-                        itemNode.put(outputField.getElementName(), bignumberValue);
-                    else
-                        if (!outputField.isRemoveIfBlank())
-                            itemNode.put(outputField.getElementName(), bignumberValue);
-                    break;
-                default:
-                    String value = data.inputRowMeta.getString(row, data.fieldIndexes[i]);
-                    if (value != null) {
-                        if (outputField.isJSONFragment()) {
-                            try {
-                                JsonNode jsonNode = mapper.readTree(value);
-                                itemNode.put(outputField.getElementName(), jsonNode);
-                            } catch (IOException e) {
-                                // TBD Exception must be properly managed
-                                e.printStackTrace();
-                            }
-                        } else {
-                            itemNode.put(outputField.getElementName(), value);
-
-                        }
-                    } else {
-                        if (!outputField.isRemoveIfBlank())
-                            itemNode.put(outputField.getElementName(), value);
-                    }
+        if (value != null) {
+            outPutValue(row, value);
+        }
+        if (meta.getSplitOutputAfter() > 0 && data.nrRow % meta.getSplitOutputAfter() == 0) {
+            closeLines();
+        }
+    }
 
-                    break;
+    /**
+     * @return the generator of the lines, over the file when they are only written to files, over a string reset with
+     *         each line otherwise
+     */
+    private JsonGenerator getLineGenerator() throws IOException, KettleStepException {
+        if (lineGenerator == null) {
+            if (data.isOutputValue()) {
+                valueWriter = new StringWriter();
+                lineGenerator = mapper.getFactory().createGenerator(valueWriter);
+            } else {
+                if (!openNewFile()) {
+                    throw new KettleStepException(BaseMessages.getString(
+                            PKG, "JsonOutput.Error.OpenNewFile", buildFilename()));
+                }
+                lineGenerator = createFileGenerator();
             }
+            lineGenerator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // a line cut by a failure is left as it is rather than completed
+            lineGenerator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+            // the end of a group only empties the generator buffer into the file writer
+            lineGenerator.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+            // each line ends with its own line feed
+            lineGenerator.setRootValueSeparator(null);
         }
+        return lineGenerator;
+    }
 
-        jsonItems.add(itemNode);
-        prevRow = data.inputRowMeta.cloneRow( row ); // copy the row to previous
-        data.nrRow++;
+    /**
+     * @return a generator over the open file, encoding the Json to bytes itself when the file is in UTF-8
+     */
+    private JsonGenerator createFileGenerator() throws IOException {
+        if (data.outputStream != null) {
+            return mapper.getFactory().createGenerator(data.outputStream, JsonEncoding.UTF8);
+        }
+        return mapper.getFactory().createGenerator(data.writer);
+    }
 
-        if (meta.getSplitOutputAfter() > 0 && (data.nrRow) % meta.getSplitOutputAfter() == 0) {
-            // Output the new row
-            logDebug("Record Num: " + data.nrRow + " - Generating JSON chunk");
-            outPutRow(prevRow);
-            jsonItems = new ArrayList<>();
+    /**
+     * Flushes the file once the lines between two flushes are written, right after the line feed, so that the file
+     * only ever holds complete lines.
+     */
+    private void lineWritten() throws IOException {
+        if (meta.getFlushLines() > 0 && ++unflushedLines >= meta.getFlushLines()) {
+            if (lineGenerator != null && !data.isOutputValue()) {
+                // the generator writes to the file
+                lineGenerator.flush();
+            }
+            data.writer.flush();
+            unflushedLines = 0;
+        }
+    }
+
+    /**
+     * Ends the JSON Lines file, the next line opening the following one.
+     */
+    private void closeLines() throws KettleStepException {
+        if (lineGenerator != null) {
+            try {
+                lineGenerator.close();
+            } catch (IOException e) {
+                throw new KettleStepException(BaseMessages.getString(PKG, "JsonOutput.Error.Writing"), e);
+            }
+            lineGenerator = null;
+        }
+        unflushedLines = 0;
+        closeFile();
+    }
+
+    /**
+     * Writes the row to the current chunk, starting it with the first row.
+     */
+    private void addToChunk(Object[] row) throws KettleException {
+        try {
+            if (!chunkWriter.isStarted()) {
+                chunkWriter.start(createChunkGenerator());
+            }
+            chunkWriter.add(row);
+        } catch (IOException e) {
+            throw new KettleStepException(BaseMessages.getString(PKG, "JsonOutput.Error.Writing"), e);
+        }
+    }
+
+    /**
+     * @return a generator over the file when the chunks are only written to files, over a string otherwise, serialized
+     *         once for the output value and the file
+     */
+    private JsonGenerator createChunkGenerator() throws IOException, KettleStepException {
+        if (data.isGenJsonLines() && !data.isOutputValue()) {
+            // a group is a line of the file
+            chunkGenerator = getLineGenerator();
+            return chunkGenerator;
+        }
+        if (data.isOutputValue()) {
+            valueWriter = new StringWriter();
+            chunkGenerator = mapper.getFactory().createGenerator(valueWriter);
+        } else {
+            if (!openNewFile()) {
+                throw new KettleStepException(BaseMessages.getString(
+                        PKG, "JsonOutput.Error.OpenNewFile", buildFilename()));
+            }
+            chunkGenerator = createFileGenerator();
+        }
+        // the file is closed with the chunk
+        chunkGenerator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        // a chunk cut by a failure is left as it is rather than completed
+        chunkGenerator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+        if (meta.isJsonPrittified() && !data.isGenJsonLines()) {
+            chunkGenerator.setPrettyPrinter(new DefaultPrettyPrinter());
         }
+        return chunkGenerator;
+    }
 
+    /**
+     * Ends the current chunk.
+     *
+     * @return the Json of the chunk when it is output as a value, null when it is already in its file
+     */
+    private String endChunk() throws KettleStepException {
+        try {
+            chunkWriter.end();
+            if (chunkGenerator == lineGenerator) {
+                lineGenerator.writeRaw('\n');
+                lineWritten();
+            } else {
+                chunkGenerator.close();
+            }
+            chunkGenerator = null;
+        } catch (IOException e) {
+            throw new KettleStepException(BaseMessages.getString(PKG, "JsonOutput.Error.Writing"), e);
+        }
+        if (!data.isOutputValue()) {
+            if (!data.isGenJsonLines()) {
+                closeFile();
+            }
+            return null;
+        }
+        String value = valueWriter.toString();
+        valueWriter = null;
+        return value;
     }
 
     // Is the row r of the same group as previous?
@@ -185,6 +302,9 @@ public class JsonOutput extends BaseStep implements StepInterface {
         Object[] r = getRow(); // This also waits for a row to be finished.
         if (r == null) {
             outPutRow(prevRow);
+            if (data.isGenJsonLines()) {
+                closeLines();
+            }
             setOutputDone();
             return false;
         }
@@ -206,9 +326,7 @@ public class JsonOutput extends BaseStep implements StepInterface {
 
     private boolean onFirstRecord(Object[] r) throws KettleException {
 
-        nc = new ObjectMapper().getNodeFactory();
         mapper = new ObjectMapper();
-        jsonItems = new ArrayList<>();
         startPagePos = 1;
 
         first = false;
@@ -248,6 +366,10 @@ public class JsonOutput extends BaseStep implements StepInterface {
 
         initDataFieldsPositionsArray();
 
+        data.writerPlan = new JsonWriterPlan(data.inputRowMeta, meta.getOutputFields(), data.fieldIndexes, mapper,
+                log);
+        chunkWriter = new JsonChunkWriter(data.realBlocName, meta.isUseArrayWithSingleInstance(), data.writerPlan);
+
 
         if (initKeyFieldsPositionArray(r)) return true;
         return false;
@@ -283,41 +405,25 @@ public class JsonOutput extends BaseStep implements StepInterface {
         return false;
     }
 
-    @SuppressWarnings("unchecked")
     private void outPutRow(Object[] rowData) throws KettleStepException {
-        // We can now output an object
-        String value = null;
-
-        if (jsonItems == null || jsonItems.size()==0)
+        if (chunkWriter == null || !chunkWriter.isStarted()) {
+            // no row since the last chunk
             return;
+        }
 
-        try {
-            if (jsonItems != null && jsonItems.size()>0) {
-                if (meta.getJsonBloc() != null && meta.getJsonBloc().length()>0) {
-                    ObjectNode theNode = new ObjectNode(nc);
-                    // TBD Try to understand if this can have a performance impact and do it better...
-
-                    theNode.put(meta.getJsonBloc(), mapper.readTree(mapper.writeValueAsString(jsonItems.size() > 1
-                            ? jsonItems : (!meta.isUseArrayWithSingleInstance() ? jsonItems.get(0) : jsonItems))));
-                    if (meta.isJsonPrittified())
-                        value = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(theNode);
-                    else
-                        value = mapper.writeValueAsString(theNode);
-                } else {
-                    if (meta.isJsonPrittified())
-                        value = mapper.writerWithDefaultPrettyPrinter().writeValueAsString((jsonItems.size() > 1
-                                ? jsonItems : (!meta.isUseArrayWithSingleInstance() ? jsonItems.get(0) : jsonItems)));
-                    else
-                        value = mapper.writeValueAsString((jsonItems.size() > 1
-                            ? jsonItems : (!meta.isUseArrayWithSingleInstance() ? jsonItems.get(0) : jsonItems)));
-                }
-            }
-
-        } catch (IOException e) {
-            // TBD Exception must be properly managed
-            e.printStackTrace();
+        // We can now output an object
+        String value = endChunk();
+        if (value == null) {
+            // streamed to its file
+            return;
         }
+        outPutValue(rowData, value);
+    }
 
+    /**
+     * Puts the Json of a chunk or a line to the output row and writes it to the file.
+     */
+    private void outPutValue(Object[] rowData, String value) throws KettleStepException {
         int jsonLength = value.length();
 
         if (data.isOutputValue() && data.outputRowMeta != null) {
@@ -385,11 +491,17 @@ public class JsonOutput extends BaseStep implements StepInterface {
             // Write data to file
             try {
                 data.writer.write(value);
+                if (data.isGenJsonLines()) {
+                    data.writer.write('\n');
+                    lineWritten();
+                }
             } catch (Exception e) {
                 throw new KettleStepException(BaseMessages.getString(PKG, "JsonOutput.Error.Writing"), e);
             }
-            // Close file
-            closeFile();
+            if (!data.isGenJsonLines()) {
+                // Close file
+                closeFile();
+            }
         }
         // Data are safe
     }
@@ -400,10 +512,13 @@ public class JsonOutput extends BaseStep implements StepInterface {
         if (super.init(smi, sdi)) {
 
 
-            data.setWriteToFile((meta.getOperationType() == JsonOutputMeta.OPERATION_TYPE_WRITE_TO_FILE));
-            data.setOutputValue((meta.getOperationType() == JsonOutputMeta.OPERATION_TYPE_OUTPUT_VALUE));
+            data.setWriteToFile((meta.getOperationType() == JsonOutputMeta.OPERATION_TYPE_WRITE_TO_FILE
+                    || meta.getOperationType() == JsonOutputMeta.OPERATION_TYPE_BOTH));
+            data.setOutputValue((meta.getOperationType() == JsonOutputMeta.OPERATION_TYPE_OUTPUT_VALUE
+                    || meta.getOperationType() == JsonOutputMeta.OPERATION_TYPE_BOTH));
             data.setGenFlat((meta.getGenerationType() == JsonOutputMeta.GENERATON_TYPE_FLAT));
             data.setGenLoopOverKey((meta.getGenerationType() == JsonOutputMeta.GENERATON_TYPE_LOOP_OVER_KEY));
+            data.setGenJsonLines((meta.getGenerationType() == JsonOutputMeta.GENERATON_TYPE_JSON_LINES));
 
             if (data.isOutputValue()) {
                 // We need to have output field name
@@ -443,8 +558,21 @@ public class JsonOutput extends BaseStep implements StepInterface {
         meta = (JsonOutputMeta) smi;
         data = (JsonOutputData) sdi;
 
-        if (jsonItems != null) {
-            jsonItems = null;
+        if (chunkGenerator != null) {
+            try {
+                chunkGenerator.close();
+            } catch (IOException e) {
+                logError(BaseMessages.getString(PKG, "JsonOutput.Error.ClosingFile", e.toString()));
+            }
+            chunkGenerator = null;
+        }
+        if (lineGenerator != null) {
+            try {
+                lineGenerator.close();
+            } catch (IOException e) {
+                logError(BaseMessages.getString(PKG, "JsonOutput.Error.ClosingFile", e.toString()));
+            }
+            lineGenerator = null;
         }
 
         closeFile();
@@ -508,16 +636,20 @@ public class JsonOutput extends BaseStep implements StepInterface {
 
                 OutputStream outputStream;
                 OutputStream fos = KettleVFS.getOutputStream(filename, getTransMeta(), meta.isFileAppended());
-                outputStream = fos;
-
-                if (!Const.isEmpty(meta.getEncoding())) {
-                    data.writer =
-                            new OutputStreamWriter(new BufferedOutputStream(outputStream, 5000), environmentSubstitute(meta
-                                    .getEncoding()));
+                if (meta.isAsyncWriter()) {
+                    // the step only waits for the file once all the buffers are waiting to be written
+                    outputStream = new AsyncOutputStream(fos, meta.getAsyncBufferSize() * 1024,
+                            meta.getAsyncBufferCount(), getStepname() + " - " + filename);
                 } else {
-                    data.writer = new OutputStreamWriter(new BufferedOutputStream(outputStream, 5000));
+                    outputStream = new BufferedOutputStream(fos, 5000);
                 }
 
+                Charset charset = Const.isEmpty(meta.getEncoding())
+                        ? Charset.defaultCharset() : Charset.forName(environmentSubstitute(meta.getEncoding()));
+                data.writer = new OutputStreamWriter(outputStream, charset);
+                // the generators skip the writer, the values output to the file still go through it
+                data.outputStream = StandardCharsets.UTF_8.equals(charset) ? outputStream : null;
+
                 if (log.isDetailed()) {
                     logDetailed(BaseMessages.getString(PKG, "JsonOutput.FileOpened", filename));
                 }
@@ -547,6 +679,7 @@ public class JsonOutput extends BaseStep implements StepInterface {
         try {
             data.writer.close();
             data.writer = null;
+            data.outputStream = null;
             retval = true;
         } catch (Exception e) {
             logError(BaseMessages.getString(PKG, "JsonOutput.Error.ClosingFile", e.toString()));
@@ -22,6 +22,7 @@
 
 package org.serasoft.di.steps.jsonoutput;
 
+import java.io.OutputStream;
 import java.io.Writer;
 import java.text.DateFormatSymbols;
 import java.text.DecimalFormat;
@@ -48,6 +49,10 @@ public class JsonOutputData extends BaseStepData implements StepDataInterface {
 
     public int nrFields;
     public int[] fieldIndexes;
+    /**
+     * Writes the object of each row, built with the first row
+     */
+    public JsonWriterPlan writerPlan;
     public int[] keysGroupIndexes;
     public int nrRow;
 
@@ -55,10 +60,15 @@ public class JsonOutputData extends BaseStepData implements StepDataInterface {
     private boolean writeToFile;
     private boolean genFlat;
     private boolean genLoopOverKey;
+    private boolean genJsonLines;
 
     public String realBlocName;
     public int splitnr;
     public Writer writer;
+    /**
+     * The stream under the writer when the file is in UTF-8, the generators write their bytes to it
+     */
+    public OutputStream outputStream;
 
     /**
      *
@@ -71,7 +81,9 @@ public class JsonOutputData extends BaseStepData implements StepDataInterface {
         this.writeToFile = false;
         this.genFlat = false;
         this.genLoopOverKey = false;
+        this.genJsonLines = false;
         this.writer = null;
+        this.outputStream = null;
     }
 
     public boolean isGenFlat() {
@@ -90,6 +102,14 @@ public class JsonOutputData extends BaseStepData implements StepDataInterface {
         this.genLoopOverKey = genLoopOverKey;
     }
 
+    public boolean isGenJsonLines() {
+        return genJsonLines;
+    }
+
+    public void setGenJsonLines(boolean genJsonLines) {
+        this.genJsonLines = genJsonLines;
+    }
+
     public boolean isOutputValue() {
         return outputValue;
     }
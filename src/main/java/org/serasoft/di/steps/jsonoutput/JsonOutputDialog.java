@@ -157,6 +157,22 @@ public class JsonOutputDialog extends BaseStepDialog implements StepDialogInterf
     private Button wAppend;
     private FormData fdlAppend, fdAppend;
 
+    private Label wlAsyncWriter;
+    private Button wAsyncWriter;
+    private FormData fdlAsyncWriter, fdAsyncWriter;
+
+    private Label wlAsyncBufferSize;
+    private Text wAsyncBufferSize;
+    private FormData fdlAsyncBufferSize, fdAsyncBufferSize;
+
+    private Label wlAsyncBufferCount;
+    private Text wAsyncBufferCount;
+    private FormData fdlAsyncBufferCount, fdAsyncBufferCount;
+
+    private Label wlFlushLines;
+    private Text wFlushLines;
+    private FormData fdlFlushLines, fdFlushLines;
+
     private Label wlOperation;
     private CCombo wOperation;
     private FormData fdlOperation;
@@ -903,20 +919,99 @@ public class JsonOutputDialog extends BaseStepDialog implements StepDialogInterf
             }
         });
 
+        // Write the file by a thread of its own
+        wlAsyncWriter = new Label(wFileName, SWT.RIGHT);
+        wlAsyncWriter.setText(BaseMessages.getString(PKG, "JsonOutputDialog.AsyncWriter.Label"));
+        props.setLook(wlAsyncWriter);
+        fdlAsyncWriter = new FormData();
+        fdlAsyncWriter.left = new FormAttachment(0, 0);
+        fdlAsyncWriter.top = new FormAttachment(wServletOutput, margin);
+        fdlAsyncWriter.right = new FormAttachment(middle, -margin);
+        wlAsyncWriter.setLayoutData(fdlAsyncWriter);
+        wAsyncWriter = new Button(wFileName, SWT.CHECK);
+        wAsyncWriter.setToolTipText(BaseMessages.getString(PKG, "JsonOutputDialog.AsyncWriter.Tooltip"));
+        props.setLook(wAsyncWriter);
+        fdAsyncWriter = new FormData();
+        fdAsyncWriter.left = new FormAttachment(middle, 0);
+        fdAsyncWriter.top = new FormAttachment(wServletOutput, margin);
+        fdAsyncWriter.right = new FormAttachment(100, 0);
+        wAsyncWriter.setLayoutData(fdAsyncWriter);
+        wAsyncWriter.addSelectionListener(new SelectionAdapter() {
+            public void widgetSelected(SelectionEvent e) {
+                input.setChanged();
+                setFlagsAsyncWriter();
+            }
+        });
+
+        wlAsyncBufferSize = new Label(wFileName, SWT.RIGHT);
+        wlAsyncBufferSize.setText(BaseMessages.getString(PKG, "JsonOutputDialog.AsyncBufferSize.Label"));
+        props.setLook(wlAsyncBufferSize);
+        fdlAsyncBufferSize = new FormData();
+        fdlAsyncBufferSize.left = new FormAttachment(0, 0);
+        fdlAsyncBufferSize.top = new FormAttachment(wAsyncWriter, margin);
+        fdlAsyncBufferSize.right = new FormAttachment(middle, -margin);
+        wlAsyncBufferSize.setLayoutData(fdlAsyncBufferSize);
+        wAsyncBufferSize = new Text(wFileName, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        wAsyncBufferSize.setToolTipText(BaseMessages.getString(PKG, "JsonOutputDialog.AsyncBufferSize.Tooltip"));
+        props.setLook(wAsyncBufferSize);
+        wAsyncBufferSize.addModifyListener(lsMod);
+        fdAsyncBufferSize = new FormData();
+        fdAsyncBufferSize.left = new FormAttachment(middle, 0);
+        fdAsyncBufferSize.top = new FormAttachment(wAsyncWriter, margin);
+        fdAsyncBufferSize.right = new FormAttachment(100, 0);
+        wAsyncBufferSize.setLayoutData(fdAsyncBufferSize);
+
+        wlAsyncBufferCount = new Label(wFileName, SWT.RIGHT);
+        wlAsyncBufferCount.setText(BaseMessages.getString(PKG, "JsonOutputDialog.AsyncBufferCount.Label"));
+        props.setLook(wlAsyncBufferCount);
+        fdlAsyncBufferCount = new FormData();
+        fdlAsyncBufferCount.left = new FormAttachment(0, 0);
+        fdlAsyncBufferCount.top = new FormAttachment(wAsyncBufferSize, margin);
+        fdlAsyncBufferCount.right = new FormAttachment(middle, -margin);
+        wlAsyncBufferCount.setLayoutData(fdlAsyncBufferCount);
+        wAsyncBufferCount = new Text(wFileName, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        wAsyncBufferCount.setToolTipText(BaseMessages.getString(PKG, "JsonOutputDialog.AsyncBufferCount.Tooltip"));
+        props.setLook(wAsyncBufferCount);
+        wAsyncBufferCount.addModifyListener(lsMod);
+        fdAsyncBufferCount = new FormData();
+        fdAsyncBufferCount.left = new FormAttachment(middle, 0);
+        fdAsyncBufferCount.top = new FormAttachment(wAsyncBufferSize, margin);
+        fdAsyncBufferCount.right = new FormAttachment(100, 0);
+        wAsyncBufferCount.setLayoutData(fdAsyncBufferCount);
+
+        // Flush every N lines
+        wlFlushLines = new Label(wFileName, SWT.RIGHT);
+        wlFlushLines.setText(BaseMessages.getString(PKG, "JsonOutputDialog.FlushLines.Label"));
+        props.setLook(wlFlushLines);
+        fdlFlushLines = new FormData();
+        fdlFlushLines.left = new FormAttachment(0, 0);
+        fdlFlushLines.top = new FormAttachment(wAsyncBufferCount, margin);
+        fdlFlushLines.right = new FormAttachment(middle, -margin);
+        wlFlushLines.setLayoutData(fdlFlushLines);
+        wFlushLines = new Text(wFileName, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        wFlushLines.setToolTipText(BaseMessages.getString(PKG, "JsonOutputDialog.FlushLines.Tooltip"));
+        props.setLook(wFlushLines);
+        wFlushLines.addModifyListener(lsMod);
+        fdFlushLines = new FormData();
+        fdFlushLines.left = new FormAttachment(middle, 0);
+        fdFlushLines.top = new FormAttachment(wAsyncBufferCount, margin);
+        fdFlushLines.right = new FormAttachment(100, 0);
+        wFlushLines.setLayoutData(fdFlushLines);
+
         // Create multi-part file?
         wlAddDate = new Label(wFileName, SWT.RIGHT);
         wlAddDate.setText(BaseMessages.getString(PKG, "JsonOutputDialog.AddDate.Label"));
         props.setLook(wlAddDate);
         fdlAddDate = new FormData();
         fdlAddDate.left = new FormAttachment(0, 0);
-        fdlAddDate.top = new FormAttachment(wServletOutput, margin);
+        fdlAddDate.top = new FormAttachment(wFlushLines, margin);
         fdlAddDate.right = new FormAttachment(middle, -margin);
         wlAddDate.setLayoutData(fdlAddDate);
         wAddDate = new Button(wFileName, SWT.CHECK);
         props.setLook(wAddDate);
         fdAddDate = new FormData();
         fdAddDate.left = new FormAttachment(middle, 0);
-        fdAddDate.top = new FormAttachment(wServletOutput, margin);
+        fdAddDate.top = new FormAttachment(wFlushLines, margin);
         fdAddDate.right = new FormAttachment(100, 0);
         wAddDate.setLayoutData(fdAddDate);
         wAddDate.addSelectionListener(new SelectionAdapter() {
@@ -1079,6 +1174,21 @@ public class JsonOutputDialog extends BaseStepDialog implements StepDialogInterf
         wbShowFiles.setEnabled(enableFilename);
         wlAddToResult.setEnabled(enableFilename);
         wAddToResult.setEnabled(enableFilename);
+        setFlagsAsyncWriter();
+    }
+
+    protected void setFlagsAsyncWriter() {
+        // the servlet output is written as is
+        boolean enableAsync = !wServletOutput.getSelection()
+                && JsonOutputMeta.getOperationTypeByDesc(wOperation.getText())
+                != JsonOutputMeta.OPERATION_TYPE_OUTPUT_VALUE;
+        wlAsyncWriter.setEnabled(enableAsync);
+        wAsyncWriter.setEnabled(enableAsync);
+        boolean enableBuffers = enableAsync && wAsyncWriter.getSelection();
+        wlAsyncBufferSize.setEnabled(enableBuffers);
+        wAsyncBufferSize.setEnabled(enableBuffers);
+        wlAsyncBufferCount.setEnabled(enableBuffers);
+        wAsyncBufferCount.setEnabled(enableBuffers);
     }
 
     protected void setFieldListComboBoxes() {
@@ -1135,10 +1245,15 @@ public class JsonOutputDialog extends BaseStepDialog implements StepDialogInterf
         wSplitOutputAfter.setText(Integer.toString(input.getSplitOutputAfter()));
         wOperation.setText(JsonOutputMeta.getOperationTypeDesc(input.getOperationType()));
         wGeneration.setText(JsonOutputMeta.getGenerationTypeDesc(input.getGenerationType()));
+        updateGeneration();
         wFilename.setText(Const.NVL(input.getFileName(), ""));
         wCreateParentFolder.setSelection(input.isCreateParentFolder());
         wExtension.setText(Const.NVL(input.getExtension(), "js"));
         wServletOutput.setSelection(input.isServletOutput());
+        wAsyncWriter.setSelection(input.isAsyncWriter());
+        wAsyncBufferSize.setText(Integer.toString(input.getAsyncBufferSize()));
+        wAsyncBufferCount.setText(Integer.toString(input.getAsyncBufferCount()));
+        wFlushLines.setText(Integer.toString(input.getFlushLines()));
         setFlagsServletOption();
 
         wAddDate.setSelection(input.isDateInFilename());
@@ -1221,6 +1336,10 @@ public class JsonOutputDialog extends BaseStepDialog implements StepDialogInterf
         jsometa.setEncoding(wEncoding.getText());
         jsometa.setAddToResult(wAddToResult.getSelection());
         jsometa.setDoNotOpenNewFileInit(wDoNotOpenNewFileInit.getSelection());
+        jsometa.setAsyncWriter(wAsyncWriter.getSelection());
+        jsometa.setAsyncBufferSize(Const.toInt(wAsyncBufferSize.getText(), JsonOutputMeta.DEFAULT_ASYNC_BUFFER_SIZE));
+        jsometa.setAsyncBufferCount(Const.toInt(wAsyncBufferCount.getText(), JsonOutputMeta.DEFAULT_ASYNC_BUFFER_COUNT));
+        jsometa.setFlushLines(Const.toInt(wFlushLines.getText(), 0));
 
         jsometa.setJsonSizeFieldname(wJSONSizeFieldname.getText());
         jsometa.setJsonPageStartsAtFieldname(wJSONPageStartAtFieldname.getText());
@@ -1391,6 +1510,21 @@ public class JsonOutputDialog extends BaseStepDialog implements StepDialogInterf
         int generationType = JsonOutputMeta.getGenerationTypeByDesc(wGeneration.getText());
         //boolean activeFile = opType != JsonOutputMeta.OPERATION_TYPE_OUTPUT_VALUE;
 
+        // a line can not be prettified
+        boolean activePrittified = generationType != JsonOutputMeta.GENERATON_TYPE_JSON_LINES;
+        wlJSONPrittified.setEnabled(activePrittified);
+        wJSONPrittified.setEnabled(activePrittified);
+        setFlagsFlushLines();
+    }
+
+    private void setFlagsFlushLines() {
+        // only the lines written to the file are flushed
+        boolean activeFlush = JsonOutputMeta.getGenerationTypeByDesc(wGeneration.getText())
+                == JsonOutputMeta.GENERATON_TYPE_JSON_LINES
+                && JsonOutputMeta.getOperationTypeByDesc(wOperation.getText())
+                != JsonOutputMeta.OPERATION_TYPE_OUTPUT_VALUE;
+        wlFlushLines.setEnabled(activeFlush);
+        wFlushLines.setEnabled(activeFlush);
     }
 
     private void updateOperation() {
@@ -1431,5 +1565,6 @@ public class JsonOutputDialog extends BaseStepDialog implements StepDialogInterf
         wOutputValue.setEnabled(activeOutputValue);
 
         setFlagsServletOption();
+        setFlagsFlushLines();
     }
 }
@@ -95,13 +95,18 @@ public class JsonOutputMeta extends BaseStepMeta implements StepMetaInterface {
 
     public static final int GENERATON_TYPE_FLAT = 0;
     public static final int GENERATON_TYPE_LOOP_OVER_KEY = 1;
+    /**
+     * One Json value per line, a row or, with key fields, a group of rows
+     */
+    public static final int GENERATON_TYPE_JSON_LINES = 2;
 
     /**
      * The generation type description
      */
     public static final String[] generationTypeDesc = {
             BaseMessages.getString(PKG, "JsonOutputMeta.generationType.Flat"),
-            BaseMessages.getString(PKG, "JsonOutputMeta.generationType.LoopOverKey")};
+            BaseMessages.getString(PKG, "JsonOutputMeta.generationType.LoopOverKey"),
+            BaseMessages.getString(PKG, "JsonOutputMeta.generationType.JsonLines")};
 
     /**
      * Generations type
@@ -112,7 +117,11 @@ public class JsonOutputMeta extends BaseStepMeta implements StepMetaInterface {
     /**
      * The generations type codes
      */
-    public static final String[] generationTypeCode = {"flat", "loopOverKey"};
+    public static final String[] generationTypeCode = {"flat", "loopOverKey", "jsonLines"};
+
+    public static final int DEFAULT_ASYNC_BUFFER_SIZE = 1024;
+
+    public static final int DEFAULT_ASYNC_BUFFER_COUNT = 4;
 
     /**
      * The encoding to use for reading: null or empty string means system default encoding
@@ -186,6 +195,30 @@ public class JsonOutputMeta extends BaseStepMeta implements StepMetaInterface {
     @Injection(name = "APPEND", group = "GENERAL")
     private boolean fileAppended;
 
+    /**
+     * Flag to indicate that the file is written by a thread of its own
+     */
+    @Injection(name = "ASYNC_WRITER", group = "GENERAL")
+    private boolean asyncWriter;
+
+    /**
+     * Size in KB of each buffer of the asynchronous writer
+     */
+    @Injection(name = "ASYNC_BUFFER_SIZE", group = "GENERAL")
+    private int asyncBufferSize;
+
+    /**
+     * Most buffers the asynchronous writer holds before the step waits for one to be written
+     */
+    @Injection(name = "ASYNC_BUFFER_COUNT", group = "GENERAL")
+    private int asyncBufferCount;
+
+    /**
+     * JSON Lines written to the file between two flushes, 0 to leave the flushing to the file buffer
+     */
+    @Injection(name = "FLUSH_LINES", group = "GENERAL")
+    private int flushLines;
+
     /**
      * Flag to indicate to force unmarshall to JSON Arrays even with a single occurrence in a list
      */
@@ -304,6 +337,62 @@ public class JsonOutputMeta extends BaseStepMeta implements StepMetaInterface {
         this.fileAppended = fileAppended;
     }
 
+    /**
+     * @return true if the file is written by a thread of its own
+     */
+    public boolean isAsyncWriter() {
+        return asyncWriter;
+    }
+
+    /**
+     * @param asyncWriter true to write the file by a thread of its own
+     */
+    public void setAsyncWriter(boolean asyncWriter) {
+        this.asyncWriter = asyncWriter;
+    }
+
+    /**
+     * @return the size in KB of each buffer of the asynchronous writer
+     */
+    public int getAsyncBufferSize() {
+        return asyncBufferSize;
+    }
+
+    /**
+     * @param asyncBufferSize the size in KB of each buffer of the asynchronous writer
+     */
+    public void setAsyncBufferSize(int asyncBufferSize) {
+        this.asyncBufferSize = asyncBufferSize;
+    }
+
+    /**
+     * @return the most buffers the asynchronous writer holds
+     */
+    public int getAsyncBufferCount() {
+        return asyncBufferCount;
+    }
+
+    /**
+     * @param asyncBufferCount the most buffers the asynchronous writer holds
+     */
+    public void setAsyncBufferCount(int asyncBufferCount) {
+        this.asyncBufferCount = asyncBufferCount;
+    }
+
+    /**
+     * @return the JSON Lines written to the file between two flushes, 0 for none
+     */
+    public int getFlushLines() {
+        return flushLines;
+    }
+
+    /**
+     * @param flushLines the JSON Lines written to the file between two flushes, 0 for none
+     */
+    public void setFlushLines(int flushLines) {
+        this.flushLines = flushLines;
+    }
+
     /**
      * @return Returns the fileName.
      */
@@ -550,6 +639,12 @@ public class JsonOutputMeta extends BaseStepMeta implements StepMetaInterface {
             createparentfolder = "Y".equalsIgnoreCase(XMLHandler.getTagValue(stepnode, "file", "create_parent_folder"));
             extension = XMLHandler.getTagValue(stepnode, "file", "extention");
             fileAppended = "Y".equalsIgnoreCase(XMLHandler.getTagValue(stepnode, "file", "append"));
+            asyncWriter = "Y".equalsIgnoreCase(XMLHandler.getTagValue(stepnode, "file", "async_writer"));
+            asyncBufferSize = Const.toInt(XMLHandler.getTagValue(stepnode, "file", "async_buffer_size"),
+                    DEFAULT_ASYNC_BUFFER_SIZE);
+            asyncBufferCount = Const.toInt(XMLHandler.getTagValue(stepnode, "file", "async_buffer_count"),
+                    DEFAULT_ASYNC_BUFFER_COUNT);
+            flushLines = Const.toInt(XMLHandler.getTagValue(stepnode, "file", "flush_lines"), 0);
             stepNrInFilename = "Y".equalsIgnoreCase(XMLHandler.getTagValue(stepnode, "file", "split"));
             partNrInFilename = "Y".equalsIgnoreCase(XMLHandler.getTagValue(stepnode, "file", "haspartno"));
             dateInFilename = "Y".equalsIgnoreCase(XMLHandler.getTagValue(stepnode, "file", "add_date"));
@@ -599,6 +694,10 @@ public class JsonOutputMeta extends BaseStepMeta implements StepMetaInterface {
         outputValue = "outputValue";
         jsonBloc = "result";
         splitOutputAfter = 0;
+        asyncWriter = false;
+        asyncBufferSize = DEFAULT_ASYNC_BUFFER_SIZE;
+        asyncBufferCount = DEFAULT_ASYNC_BUFFER_COUNT;
+        flushLines = 0;
         operationType = OPERATION_TYPE_WRITE_TO_FILE;
         generationType = GENERATON_TYPE_FLAT;
         extension = "js";
@@ -672,6 +771,10 @@ public class JsonOutputMeta extends BaseStepMeta implements StepMetaInterface {
         retval.append("      ").append(XMLHandler.addTagValue("name", fileName));
         retval.append("      ").append(XMLHandler.addTagValue("extention", extension));
         retval.append("      ").append(XMLHandler.addTagValue("append", fileAppended));
+        retval.append("      ").append(XMLHandler.addTagValue("async_writer", asyncWriter));
+        retval.append("      ").append(XMLHandler.addTagValue("async_buffer_size", asyncBufferSize));
+        retval.append("      ").append(XMLHandler.addTagValue("async_buffer_count", asyncBufferCount));
+        retval.append("      ").append(XMLHandler.addTagValue("flush_lines", flushLines));
         retval.append("      ").append(XMLHandler.addTagValue("split", stepNrInFilename));
         retval.append("      ").append(XMLHandler.addTagValue("haspartno", partNrInFilename));
         retval.append("      ").append(XMLHandler.addTagValue("add_date", dateInFilename));
@@ -732,6 +835,16 @@ public class JsonOutputMeta extends BaseStepMeta implements StepMetaInterface {
             fileName = rep.getStepAttributeString(id_step, "file_name");
             extension = rep.getStepAttributeString(id_step, "file_extention");
             fileAppended = rep.getStepAttributeBoolean(id_step, "file_append");
+            asyncWriter = rep.getStepAttributeBoolean(id_step, "file_async_writer");
+            asyncBufferSize = (int) rep.getStepAttributeInteger(id_step, "file_async_buffer_size");
+            if (asyncBufferSize <= 0) {
+                asyncBufferSize = DEFAULT_ASYNC_BUFFER_SIZE;
+            }
+            asyncBufferCount = (int) rep.getStepAttributeInteger(id_step, "file_async_buffer_count");
+            if (asyncBufferCount <= 0) {
+                asyncBufferCount = DEFAULT_ASYNC_BUFFER_COUNT;
+            }
+            flushLines = (int) rep.getStepAttributeInteger(id_step, "file_flush_lines");
             stepNrInFilename = rep.getStepAttributeBoolean(id_step, "file_add_stepnr");
             partNrInFilename = rep.getStepAttributeBoolean(id_step, "file_add_partnr");
             dateInFilename = rep.getStepAttributeBoolean(id_step, "file_add_date");
@@ -801,6 +914,10 @@ public class JsonOutputMeta extends BaseStepMeta implements StepMetaInterface {
             rep.saveStepAttribute(id_transformation, id_step, "file_name", fileName);
             rep.saveStepAttribute(id_transformation, id_step, "file_extention", extension);
             rep.saveStepAttribute(id_transformation, id_step, "file_append", fileAppended);
+            rep.saveStepAttribute(id_transformation, id_step, "file_async_writer", asyncWriter);
+            rep.saveStepAttribute(id_transformation, id_step, "file_async_buffer_size", asyncBufferSize);
+            rep.saveStepAttribute(id_transformation, id_step, "file_async_buffer_count", asyncBufferCount);
+            rep.saveStepAttribute(id_transformation, id_step, "file_flush_lines", flushLines);
             rep.saveStepAttribute(id_transformation, id_step, "file_add_stepnr", stepNrInFilename);
             rep.saveStepAttribute(id_transformation, id_step, "file_add_partnr", partNrInFilename);
             rep.saveStepAttribute(id_transformation, id_step, "file_add_date", dateInFilename);
@@ -916,6 +1033,13 @@ public class JsonOutputMeta extends BaseStepMeta implements StepMetaInterface {
                             "JsonOutput.Error.MissingTargetFilename"), stepMeta);
             remarks.add(cr);
         }
+        if (isAsyncWriter() && (getAsyncBufferSize() <= 0 || getAsyncBufferCount() <= 0)) {
+            cr =
+                    new CheckResult(CheckResult.TYPE_RESULT_ERROR, BaseMessages.getString(PKG,
+                            "JsonOutputMeta.CheckResult.AsyncBuffersInvalid", "" + getAsyncBufferSize(),
+                            "" + getAsyncBufferCount()), stepMeta);
+            remarks.add(cr);
+        }
         // Check output fields
         if (prev != null && prev.size() > 0) {
             cr =
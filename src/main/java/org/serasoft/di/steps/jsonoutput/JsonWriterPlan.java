@@ -0,0 +1,285 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.serasoft.di.steps.jsonoutput;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.i18n.BaseMessages;
+
+/**
+ * Writes the object of a row, following a plan built once from the output fields.
+ * <p>
+ * Each field gets a writer chosen from its type, and each element name is encoded once, in the quoted form both
+ * generator kinds write. Fields of the same element name write a single member at the position of the first one, with
+ * the value of the last one writing a value, as an object node would.
+ */
+public class JsonWriterPlan implements JsonChunkWriter.ItemWriter {
+
+    private static Class<?> PKG = JsonOutput.class; // for i18n purposes, needed by Translator2!!
+
+    private final ElementWriter[] elements;
+
+    /**
+     * @param fieldIndexes index in the input row of each field
+     * @param log          reports the Json fragments that can not be read
+     */
+    public JsonWriterPlan(RowMetaInterface inputRowMeta, JsonOutputField[] fields, int[] fieldIndexes,
+                          ObjectMapper mapper, LogChannelInterface log) {
+        Map<String, List<FieldWriter>> byName = new LinkedHashMap<>();
+        for (int i = 0; i < fields.length; i++) {
+            String name = fields[i].getElementName();
+            if (!byName.containsKey(name)) {
+                byName.put(name, new ArrayList<>());
+            }
+            byName.get(name).add(createWriter(inputRowMeta.getValueMeta(fieldIndexes[i]), fieldIndexes[i], fields[i],
+                    mapper, log));
+        }
+        elements = new ElementWriter[byName.size()];
+        int e = 0;
+        for (Map.Entry<String, List<FieldWriter>> entry : byName.entrySet()) {
+            SerializedString name = new SerializedString(entry.getKey());
+            // encoded now rather than with the first row
+            name.asQuotedChars();
+            name.asQuotedUTF8();
+            List<FieldWriter> writers = entry.getValue();
+            elements[e++] = new ElementWriter(name, writers.toArray(new FieldWriter[writers.size()]));
+        }
+    }
+
+    private static FieldWriter createWriter(ValueMetaInterface valueMeta, int index, JsonOutputField field,
+                                            ObjectMapper mapper, LogChannelInterface log) {
+        switch (valueMeta.getType()) {
+            case ValueMetaInterface.TYPE_BOOLEAN:
+                return new BooleanWriter(valueMeta, index, field);
+            case ValueMetaInterface.TYPE_INTEGER:
+                return new IntegerWriter(valueMeta, index, field);
+            case ValueMetaInterface.TYPE_NUMBER:
+                return new NumberWriter(valueMeta, index, field);
+            case ValueMetaInterface.TYPE_BIGNUMBER:
+                return new BigNumberWriter(valueMeta, index, field);
+            default:
+                return field.isJSONFragment()
+                        ? new FragmentWriter(valueMeta, index, field, mapper, log)
+                        : new TextWriter(valueMeta, index, field);
+        }
+    }
+
+    @Override
+    public void write(JsonGenerator generator, Object[] row) throws IOException, KettleException {
+        generator.writeStartObject();
+        for (ElementWriter element : elements) {
+            element.write(generator, row);
+        }
+        generator.writeEndObject();
+    }
+
+    private static class ElementWriter {
+        final SerializedString name;
+        final FieldWriter[] writers;
+
+        ElementWriter(SerializedString name, FieldWriter[] writers) {
+            this.name = name;
+            this.writers = writers;
+        }
+
+        void write(JsonGenerator generator, Object[] row) throws IOException, KettleException {
+            // the last field writing a value wins
+            for (int i = writers.length - 1; i >= 0; i--) {
+                if (writers[i].write(generator, name, row)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the member of one field.
+     */
+    private abstract static class FieldWriter {
+        final ValueMetaInterface valueMeta;
+        final int index;
+        final boolean removeIfBlank;
+
+        FieldWriter(ValueMetaInterface valueMeta, int index, JsonOutputField field) {
+            this.valueMeta = valueMeta;
+            this.index = index;
+            this.removeIfBlank = field.isRemoveIfBlank();
+        }
+
+        /**
+         * @return false if the field is left out of the object
+         */
+        abstract boolean write(JsonGenerator generator, SerializedString name, Object[] row)
+                throws IOException, KettleException;
+
+        boolean writeNull(JsonGenerator generator, SerializedString name) throws IOException {
+            if (removeIfBlank) {
+                return false;
+            }
+            generator.writeFieldName(name);
+            generator.writeNull();
+            return true;
+        }
+    }
+
+    private static class BooleanWriter extends FieldWriter {
+        BooleanWriter(ValueMetaInterface valueMeta, int index, JsonOutputField field) {
+            super(valueMeta, index, field);
+        }
+
+        @Override
+        boolean write(JsonGenerator generator, SerializedString name, Object[] row)
+                throws IOException, KettleException {
+            Boolean value = valueMeta.getBoolean(row[index]);
+            if (value == null) {
+                return writeNull(generator, name);
+            }
+            generator.writeFieldName(name);
+            generator.writeBoolean(value);
+            return true;
+        }
+    }
+
+    private static class IntegerWriter extends FieldWriter {
+        IntegerWriter(ValueMetaInterface valueMeta, int index, JsonOutputField field) {
+            super(valueMeta, index, field);
+        }
+
+        @Override
+        boolean write(JsonGenerator generator, SerializedString name, Object[] row)
+                throws IOException, KettleException {
+            Long value = valueMeta.getInteger(row[index]);
+            if (value == null) {
+                return writeNull(generator, name);
+            }
+            generator.writeFieldName(name);
+            generator.writeNumber(value.longValue());
+            return true;
+        }
+    }
+
+    private static class NumberWriter extends FieldWriter {
+        NumberWriter(ValueMetaInterface valueMeta, int index, JsonOutputField field) {
+            super(valueMeta, index, field);
+        }
+
+        @Override
+        boolean write(JsonGenerator generator, SerializedString name, Object[] row)
+                throws IOException, KettleException {
+            Double value = valueMeta.getNumber(row[index]);
+            if (value == null) {
+                return writeNull(generator, name);
+            }
+            generator.writeFieldName(name);
+            generator.writeNumber(value.doubleValue());
+            return true;
+        }
+    }
+
+    private static class BigNumberWriter extends FieldWriter {
+        BigNumberWriter(ValueMetaInterface valueMeta, int index, JsonOutputField field) {
+            super(valueMeta, index, field);
+        }
+
+        @Override
+        boolean write(JsonGenerator generator, SerializedString name, Object[] row)
+                throws IOException, KettleException {
+            BigDecimal value = valueMeta.getBigNumber(row[index]);
+            if (value == null) {
+                return writeNull(generator, name);
+            }
+            generator.writeFieldName(name);
+            // as the node factory stores it
+            generator.writeNumber(value.signum() == 0 ? BigDecimal.ZERO : value.stripTrailingZeros());
+            return true;
+        }
+    }
+
+    private static class TextWriter extends FieldWriter {
+        TextWriter(ValueMetaInterface valueMeta, int index, JsonOutputField field) {
+            super(valueMeta, index, field);
+        }
+
+        @Override
+        boolean write(JsonGenerator generator, SerializedString name, Object[] row)
+                throws IOException, KettleException {
+            String value = valueMeta.getString(row[index]);
+            if (value == null) {
+                return writeNull(generator, name);
+            }
+            generator.writeFieldName(name);
+            generator.writeString(value);
+            return true;
+        }
+    }
+
+    /**
+     * Writes a field holding Json as is. A value that is not Json is reported and its member left out of the object.
+     */
+    private static class FragmentWriter extends FieldWriter {
+        private final ObjectMapper mapper;
+        private final LogChannelInterface log;
+        private final String fieldName;
+
+        FragmentWriter(ValueMetaInterface valueMeta, int index, JsonOutputField field, ObjectMapper mapper,
+                       LogChannelInterface log) {
+            super(valueMeta, index, field);
+            this.mapper = mapper;
+            this.log = log;
+            this.fieldName = field.getFieldName();
+        }
+
+        @Override
+        boolean write(JsonGenerator generator, SerializedString name, Object[] row)
+                throws IOException, KettleException {
+            String value = valueMeta.getString(row[index]);
+            if (value == null) {
+                return writeNull(generator, name);
+            }
+            JsonNode jsonNode;
+            try {
+                jsonNode = mapper.readTree(value);
+            } catch (IOException e) {
+                log.logError(BaseMessages.getString(PKG, "JsonOutput.Error.BadJsonFragment", fieldName,
+                        e.getMessage()));
+                return false;
+            }
+            generator.writeFieldName(name);
+            generator.writeTree(jsonNode);
+            return true;
+        }
+    }
+}
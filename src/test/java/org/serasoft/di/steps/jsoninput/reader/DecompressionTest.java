@@ -0,0 +1,95 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.serasoft.di.steps.jsoninput.reader;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+public class DecompressionTest {
+
+  /**
+   * A source giving a few bytes at a time and never telling what is available, as some VFS streams do
+   */
+  private static class TrickleInputStream extends FilterInputStream {
+    TrickleInputStream( byte[] bytes ) {
+      super( new ByteArrayInputStream( bytes ) );
+    }
+
+    @Override
+    public int read( byte[] b, int off, int len ) throws IOException {
+      return super.read( b, off, Math.min( len, 7 ) );
+    }
+
+    @Override
+    public int available() {
+      return 0;
+    }
+  }
+
+  private static byte[] gzip( String text ) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try ( GZIPOutputStream out = new GZIPOutputStream( bytes ) ) {
+      out.write( text.getBytes( StandardCharsets.UTF_8 ) );
+    }
+    return bytes.toByteArray();
+  }
+
+  private static byte[] concat( byte[]... parts ) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    for ( byte[] part : parts ) {
+      bytes.write( part, 0, part.length );
+    }
+    return bytes.toByteArray();
+  }
+
+  private static String read( String fileName, byte[] bytes ) throws IOException {
+    InputStream in = Decompression.markable( new TrickleInputStream( bytes ) );
+    Decompression.Format format = Decompression.detect( fileName, in );
+    assertEquals( Decompression.Format.GZIP, format );
+    try ( InputStream decompressed = Decompression.open( format, in ) ) {
+      return IOUtils.toString( decompressed, StandardCharsets.UTF_8 );
+    }
+  }
+
+  @Test
+  public void readsAllTheMembersOfAConcatenatedGzipFile() throws IOException {
+    byte[] bytes = concat( gzip( "{\"a\":1}\n" ), gzip( "{\"a\":2}\n" ), gzip( "{\"a\":3}\n" ) );
+    assertEquals( "{\"a\":1}\n{\"a\":2}\n{\"a\":3}\n", read( "lines.json.gz", bytes ) );
+  }
+
+  @Test
+  public void readsAllTheMembersOfAGzipInputFoundByItsFirstBytes() throws IOException {
+    byte[] bytes = concat( gzip( "[1," ), gzip( "2]" ) );
+    assertEquals( "[1,2]", read( null, bytes ) );
+  }
+}
@@ -0,0 +1,125 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.serasoft.di.steps.jsoninput.reader;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import org.apache.commons.vfs2.FileObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileStateStoreTest {
+
+  private Path dir;
+  private String stateFile;
+
+  @Before
+  public void createDir() throws IOException {
+    dir = Files.createTempDirectory( "file-state" );
+    stateFile = dir.resolve( "state.tsv" ).toString();
+  }
+
+  @After
+  public void deleteDir() throws IOException {
+    try ( Stream<Path> paths = Files.walk( dir ) ) {
+      paths.sorted( Comparator.reverseOrder() ).forEach( path -> path.toFile().delete() );
+    }
+  }
+
+  private static FileObject file( String uri, long size, long modified ) throws IOException {
+    FileObject file = mock( FileObject.class, RETURNS_DEEP_STUBS );
+    when( file.getName().getURI() ).thenReturn( uri );
+    when( file.getContent().getSize() ).thenReturn( size );
+    when( file.getContent().getLastModifiedTime() ).thenReturn( modified );
+    return file;
+  }
+
+  @Test
+  public void knowsTheFilesOfTheCommittedRuns() throws Exception {
+    FileStateStore store = FileStateStore.load( stateFile, false );
+    assertFalse( store.isUnchanged( file( "file:///in/a.json", 10, 1000 ) ) );
+    store.processed( file( "file:///in/a.json", 10, 1000 ) );
+    store.commit();
+
+    FileStateStore next = FileStateStore.load( stateFile, false );
+    assertTrue( next.isUnchanged( file( "file:///in/a.json", 10, 1000 ) ) );
+    assertFalse( next.isUnchanged( file( "file:///in/a.json", 12, 2000 ) ) );
+    assertFalse( next.isUnchanged( file( "file:///in/b.json", 10, 1000 ) ) );
+  }
+
+  @Test
+  public void mergesTheCommitsOfStoresOfTheSameJvm() throws Exception {
+    int stores = 8;
+    List<FileStateStore> loaded = new ArrayList<>();
+    for ( int i = 0; i < stores; i++ ) {
+      FileStateStore store = FileStateStore.load( stateFile, false );
+      store.processed( file( "file:///in/" + i + ".json", i, 1000 + i ) );
+      loaded.add( store );
+    }
+
+    // all the stores commit at once, as two transformations of a Carte server would
+    CyclicBarrier start = new CyclicBarrier( stores );
+    ExecutorService executor = Executors.newFixedThreadPool( stores );
+    try {
+      List<Future<Void>> commits = new ArrayList<>();
+      for ( final FileStateStore store : loaded ) {
+        commits.add( executor.submit( new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            start.await();
+            store.commit();
+            return null;
+          }
+        } ) );
+      }
+      for ( Future<Void> commit : commits ) {
+        commit.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    FileStateStore next = FileStateStore.load( stateFile, false );
+    for ( int i = 0; i < stores; i++ ) {
+      assertTrue( next.isUnchanged( file( "file:///in/" + i + ".json", i, 1000 + i ) ) );
+    }
+  }
+}
@@ -0,0 +1,108 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.serasoft.di.steps.jsoninput.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+public class LineRangeInputStreamTest {
+
+  /**
+   * A file counting the bytes read from it, the bytes skipped are not
+   */
+  private static class CountingInputStream extends FilterInputStream {
+    long read;
+
+    CountingInputStream( byte[] bytes ) {
+      super( new ByteArrayInputStream( bytes ) );
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if ( b >= 0 ) {
+        read++;
+      }
+      return b;
+    }
+
+    @Override
+    public int read( byte[] b, int off, int len ) throws IOException {
+      int n = super.read( b, off, len );
+      if ( n > 0 ) {
+        read += n;
+      }
+      return n;
+    }
+  }
+
+  private static String lines( int count ) {
+    StringBuilder text = new StringBuilder();
+    for ( int i = 0; i < count; i++ ) {
+      text.append( "{\"id\":" ).append( i ).append( "}\n" );
+    }
+    return text.toString();
+  }
+
+  private static String read( byte[] bytes, long start, long end ) throws IOException {
+    try ( InputStream in = new LineRangeInputStream( new ByteArrayInputStream( bytes ), start, end ) ) {
+      return IOUtils.toString( in, StandardCharsets.UTF_8 );
+    }
+  }
+
+  @Test
+  public void readsEachLineOnceOverTheRangesOfAFile() throws IOException {
+    String text = lines( 1000 );
+    byte[] bytes = text.getBytes( StandardCharsets.UTF_8 );
+    for ( int rangeSize : new int[] { 1, 7, 100, 4096 } ) {
+      StringBuilder all = new StringBuilder();
+      for ( long start = 0; start < bytes.length; start += rangeSize ) {
+        all.append( read( bytes, start, Math.min( bytes.length, start + rangeSize ) ) );
+      }
+      assertEquals( text, all.toString() );
+    }
+  }
+
+  @Test
+  public void readsOnlyTheBytesAfterTheStartOfALateRange() throws IOException {
+    byte[] bytes = lines( 100000 ).getBytes( StandardCharsets.UTF_8 );
+    long start = bytes.length - 1000;
+    CountingInputStream file = new CountingInputStream( bytes );
+    try ( InputStream in = new LineRangeInputStream( file, start, bytes.length ) ) {
+      String range = IOUtils.toString( in, StandardCharsets.UTF_8 );
+      assertTrue( range.startsWith( "{\"id\":" ) );
+      assertTrue( range.endsWith( "{\"id\":99999}\n" ) );
+    }
+    // the byte before the start tells whether a line starts there
+    assertEquals( bytes.length - start + 1, file.read );
+  }
+}
@@ -0,0 +1,171 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.serasoft.di.steps.jsoninput.reader;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.pentaho.di.core.KettleClientEnvironment;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.logging.LogChannel;
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.core.row.RowDataUtil;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaBigNumber;
+import org.pentaho.di.core.row.value.ValueMetaBoolean;
+import org.pentaho.di.core.row.value.ValueMetaDate;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.serasoft.di.steps.jsoninput.JsonInputData;
+
+/**
+ * Compares the conversion plan of {@link RowOutputConverter} with the conversion chosen for each cell it replaced, on
+ * rows holding the values the JsonPath readers give: numbers, booleans, strings, dates as strings and objects.
+ * <p>
+ * Run with <code>main</code> from the test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class RowOutputConverterBenchmark {
+
+    private static final int ROWS = 1000;
+
+    private JsonInputData data;
+    private LogChannelInterface log;
+    private RowOutputConverter converter;
+    private Object[][] rows;
+
+    @Setup
+    public void setUp() throws KettleException {
+        KettleClientEnvironment.init();
+        log = new LogChannel("benchmark");
+
+        RowMeta outputRowMeta = new RowMeta();
+        outputRowMeta.addValueMeta(new ValueMetaInteger("id"));
+        outputRowMeta.addValueMeta(new ValueMetaNumber("price"));
+        outputRowMeta.addValueMeta(new ValueMetaBigNumber("amount"));
+        outputRowMeta.addValueMeta(new ValueMetaBoolean("active"));
+        outputRowMeta.addValueMeta(new ValueMetaString("name"));
+        outputRowMeta.addValueMeta(new ValueMetaDate("created"));
+        outputRowMeta.addValueMeta(new ValueMetaString("attributes"));
+        outputRowMeta.getValueMeta(5).setConversionMask("yyyy-MM-dd");
+
+        data = new JsonInputData();
+        data.nrInputFields = outputRowMeta.size();
+        data.totalpreviousfields = 0;
+        data.outputRowMeta = outputRowMeta;
+        data.convertRowMeta = outputRowMeta.cloneToType(ValueMetaInterface.TYPE_STRING);
+        data.repeatedFields = new BitSet(data.nrInputFields);
+        data.dedupedFields = new BitSet(data.nrInputFields);
+        converter = new RowOutputConverter(data, log);
+
+        rows = new Object[ROWS][];
+        for (int i = 0; i < ROWS; i++) {
+            Map<String, Object> attributes = new LinkedHashMap<>();
+            attributes.put("color", i % 2 == 0 ? "red" : "blue");
+            attributes.put("size", i % 5);
+            rows[i] = new Object[]{(long) i, i * 1.5, i * 0.25, i % 3 == 0, "name " + i,
+                    "2020-01-" + (10 + i % 20), attributes};
+        }
+    }
+
+    @Benchmark
+    public void precompiled(Blackhole blackhole) throws KettleException {
+        for (Object[] row : rows) {
+            // the converter writes the values in the row it is given
+            blackhole.consume(converter.getRow(new Object[0], row.clone(), data));
+        }
+    }
+
+    @Benchmark
+    public void perCell(Blackhole blackhole) throws KettleException {
+        for (Object[] row : rows) {
+            blackhole.consume(getRowPerCell(new Object[0], row.clone()));
+        }
+    }
+
+    /**
+     * The conversion before the plan: chosen again for each cell, through the string form of all but numbers.
+     */
+    private Object[] getRowPerCell(Object[] baseOutputRow, Object[] rawPartRow) throws KettleException {
+        for (int i = 0; i < rawPartRow.length; i++) {
+            int outIdx = data.totalpreviousfields + i;
+            rawPartRow[i] = getValue(data.outputRowMeta.getValueMeta(outIdx), data.convertRowMeta.getValueMeta(outIdx),
+                    rawPartRow[i]);
+        }
+        return RowDataUtil.addRowData(baseOutputRow, data.totalpreviousfields, rawPartRow);
+    }
+
+    private Object getValue(ValueMetaInterface targetMeta, ValueMetaInterface strConvertMeta, Object value)
+            throws KettleValueException {
+        if (targetMeta.isNumeric()) {
+            try {
+                return targetMeta.getNativeDataType(value);
+            } catch (KettleValueException e) {
+                if (log.isDebug()) {
+                    log.logDebug(e.getLocalizedMessage(), e);
+                }
+            }
+        }
+        String strValue = null;
+        if (value instanceof Map) {
+            try {
+                strValue = new ObjectMapper().writeValueAsString(value);
+            } catch (IOException e) {
+                throw new KettleValueException(e);
+            }
+        } else if (value != null) {
+            strValue = value.toString();
+        }
+        return targetMeta.convertDataFromString(strValue, strConvertMeta, null, null, targetMeta.getTrimType());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RowOutputConverterBenchmark.class.getSimpleName()).build()).run();
+    }
+}
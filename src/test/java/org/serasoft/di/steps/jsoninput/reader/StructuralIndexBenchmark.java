@@ -0,0 +1,125 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.serasoft.di.steps.jsoninput.reader;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.pentaho.di.core.KettleClientEnvironment;
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LogChannel;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.serasoft.di.steps.jsoninput.JsonInputField;
+
+/**
+ * Compares the indexed reader with the tokenizer projection of {@link FastJsonReader}, on documents where the field
+ * paths reach two properties of each item and leave out the larger part of it.
+ * <p>
+ * Run with <code>main</code> from the test classpath.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Fork( 1 )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+public class StructuralIndexBenchmark {
+
+  @Param( { "100", "10000" } )
+  public int items;
+
+  private byte[] document;
+  private FastJsonReader tokenizerReader;
+  private FastJsonReader indexedReader;
+
+  @Setup
+  public void setUp() throws KettleException {
+    KettleClientEnvironment.init();
+    LogChannel log = new LogChannel( "benchmark" );
+
+    StringBuilder json = new StringBuilder( "{\"count\":" ).append( items ).append( ",\"items\":[" );
+    for ( int i = 0; i < items; i++ ) {
+      json.append( i > 0 ? "," : "" )
+        .append( "{\"id\":" ).append( i )
+        .append( ",\"name\":\"item \\\"" ).append( i ).append( "\\\"\"" )
+        .append( ",\"tags\":[\"a\",\"b\",\"c\\\\d\"]" )
+        .append( ",\"payload\":{\"text\":\"" );
+      for ( int k = 0; k < 10; k++ ) {
+        json.append( "some text, with {brackets} and \\\"quotes\\\" " );
+      }
+      json.append( "\",\"values\":[1.5,2.25,-3e8,true,null],\"nested\":{\"a\":{\"b\":[{},[]]}}}}" );
+    }
+    document = json.append( "]}" ).toString().getBytes( StandardCharsets.UTF_8 );
+
+    JsonInputField id = new JsonInputField( "id" );
+    id.setPath( "$.items[*].id" );
+    id.setType( ValueMetaInterface.TYPE_INTEGER );
+    JsonInputField name = new JsonInputField( "name" );
+    name.setPath( "$.items[*].name" );
+    name.setType( ValueMetaInterface.TYPE_STRING );
+    JsonInputField[] fields = { id, name };
+
+    tokenizerReader = new FastJsonReader( fields, false, log );
+    indexedReader = new FastJsonReader( fields, false, log );
+    indexedReader.setStructuralIndex( true );
+  }
+
+  private void read( FastJsonReader reader, Blackhole blackhole ) throws KettleException {
+    RowSet rows = reader.parse( new ByteArrayInputStream( document ) );
+    Object[] row;
+    while ( ( row = rows.getRow() ) != null ) {
+      blackhole.consume( row );
+    }
+  }
+
+  @Benchmark
+  public void tokenizer( Blackhole blackhole ) throws KettleException {
+    read( tokenizerReader, blackhole );
+  }
+
+  @Benchmark
+  public void indexed( Blackhole blackhole ) throws KettleException {
+    read( indexedReader, blackhole );
+  }
+
+  public static void main( String[] args ) throws RunnerException {
+    new Runner( new OptionsBuilder().include( StructuralIndexBenchmark.class.getSimpleName() ).build() ).run();
+  }
+}
@@ -0,0 +1,242 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.serasoft.di.steps.jsoninput.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class StructuralIndexTest {
+
+  /**
+   * Pieces of string content, escapes and runs of backslashes included
+   */
+  private static final String[] STRING_PIECES = {
+    "a", "name", " ", ",", ":", "{", "]", "\\\"", "\\\\", "\\\\\\\\", "\\\\\\\"", "\\n", "\\u00e9", "\u00e9", "\u20ac",
+    "'", "/", "\\/" };
+
+  private static final String[] SPACES = { "", "", " ", "\n", "\r\n", "\t", "    " };
+
+  /**
+   * The positions found one byte at a time
+   */
+  private static List<Integer> scan( byte[] buf, int start, int end ) {
+    List<Integer> positions = new ArrayList<>();
+    boolean inString = false;
+    boolean escaped = false;
+    boolean scalar = false;
+    for ( int i = start; i < end; i++ ) {
+      byte c = buf[ i ];
+      if ( inString ) {
+        if ( escaped ) {
+          escaped = false;
+        } else if ( c == '\\' ) {
+          escaped = true;
+        } else if ( c == '"' ) {
+          inString = false;
+        }
+        continue;
+      }
+      switch ( c ) {
+        case '{':
+        case '}':
+        case '[':
+        case ']':
+        case ':':
+        case ',':
+          positions.add( i );
+          scalar = false;
+          break;
+        case '"':
+          positions.add( i );
+          inString = true;
+          scalar = false;
+          break;
+        case ' ':
+        case '\n':
+        case '\r':
+        case '\t':
+          scalar = false;
+          break;
+        default:
+          if ( !scalar ) {
+            positions.add( i );
+          }
+          scalar = true;
+      }
+    }
+    return positions;
+  }
+
+  private static List<Integer> index( byte[] buf, int start, int end ) throws IOException {
+    List<Integer> positions = new ArrayList<>();
+    StructuralIndex index = new StructuralIndex( buf, start, end );
+    int pos;
+    while ( ( pos = index.next() ) >= 0 ) {
+      positions.add( pos );
+    }
+    return positions;
+  }
+
+  private static void assertIndexed( String json ) throws IOException {
+    byte[] buf = json.getBytes( StandardCharsets.UTF_8 );
+    assertEquals( scan( buf, 0, buf.length ), index( buf, 0, buf.length ) );
+  }
+
+  private static void value( Random random, StringBuilder json, int depth ) {
+    json.append( SPACES[ random.nextInt( SPACES.length ) ] );
+    switch ( depth > 4 ? 3 + random.nextInt( 3 ) : random.nextInt( 6 ) ) {
+      case 0:
+        json.append( '{' );
+        for ( int i = random.nextInt( 6 ); i > 0; i-- ) {
+          string( random, json );
+          json.append( SPACES[ random.nextInt( SPACES.length ) ] ).append( ':' );
+          value( random, json, depth + 1 );
+          json.append( i > 1 ? "," : "" );
+        }
+        json.append( '}' );
+        break;
+      case 1:
+      case 2:
+        json.append( '[' );
+        for ( int i = random.nextInt( 6 ); i > 0; i-- ) {
+          value( random, json, depth + 1 );
+          json.append( i > 1 ? "," : "" );
+        }
+        json.append( ']' );
+        break;
+      case 3:
+        string( random, json );
+        break;
+      case 4:
+        json.append( random.nextInt( 3 ) == 0 ? random.nextGaussian() * 1e6 : random.nextInt() );
+        break;
+      default:
+        json.append( random.nextBoolean() ? "true" : random.nextBoolean() ? "false" : "null" );
+    }
+    json.append( SPACES[ random.nextInt( SPACES.length ) ] );
+  }
+
+  private static void string( Random random, StringBuilder json ) {
+    json.append( '"' );
+    for ( int i = random.nextInt( 12 ); i > 0; i-- ) {
+      json.append( STRING_PIECES[ random.nextInt( STRING_PIECES.length ) ] );
+    }
+    json.append( '"' );
+  }
+
+  @Test
+  public void findsTheStructuralsOfRandomDocuments() throws IOException {
+    Random random = new Random( 42 );
+    for ( int doc = 0; doc < 200; doc++ ) {
+      StringBuilder json = new StringBuilder( "[" );
+      // from a few blocks to a few chunks of blocks
+      int size = 64 << random.nextInt( 12 );
+      while ( json.length() < size ) {
+        value( random, json, 0 );
+        json.append( ',' );
+      }
+      json.append( "0]" );
+      assertIndexed( json.toString() );
+    }
+  }
+
+  @Test
+  public void findsTheStructuralsAroundTheBlockBoundaries() throws IOException {
+    // each piece crosses the end of the first block at every offset
+    String[] pieces = { "\"\\\\\"", "\"\\\"\"", "\"\\\\\\\"\"", "\"\\\\\\\\\"", "{\"a\":1}", "[true,null]", "12345" };
+    for ( String piece : pieces ) {
+      for ( int at = 64 - piece.length(); at <= 64; at++ ) {
+        StringBuilder json = new StringBuilder( "[" );
+        while ( json.length() < at ) {
+          json.append( ' ' );
+        }
+        json.append( piece ).append( ",\"\\\\\",1]" );
+        assertIndexed( json.toString() );
+      }
+    }
+  }
+
+  @Test
+  public void findsTheStructuralsAfterAStringLongerThanAChunk() throws IOException {
+    StringBuilder json = new StringBuilder( "{\"long\":\"" );
+    for ( int i = 0; i < 40000; i++ ) {
+      json.append( i % 7 == 0 ? "\\\"" : i % 11 == 0 ? "\\\\" : "x" );
+    }
+    json.append( "\",\"after\":[1,2,{\"b\":false}]}" );
+    assertIndexed( json.toString() );
+  }
+
+  @Test
+  public void findsTheStructuralsOfAPartOfTheBuffer() throws IOException {
+    byte[] buf = "\ufeff{\"a\":[1,\"x\\\"\"]} trailing".getBytes( StandardCharsets.UTF_8 );
+    int start = 3;
+    int end = buf.length - " trailing".length();
+    List<Integer> positions = index( buf, start, end );
+    assertEquals( scan( buf, start, end ), positions );
+    assertEquals( Integer.valueOf( start ), positions.get( 0 ) );
+  }
+
+  @Test
+  public void tellsADocumentEndingInAString() throws IOException {
+    byte[] buf = "[\"open".getBytes( StandardCharsets.UTF_8 );
+    StructuralIndex index = new StructuralIndex( buf, 0, buf.length );
+    while ( index.next() >= 0 ) {
+      // all indexed
+    }
+    assertTrue( index.isInString() );
+
+    buf = "[\"closed\"]".getBytes( StandardCharsets.UTF_8 );
+    index = new StructuralIndex( buf, 0, buf.length );
+    while ( index.next() >= 0 ) {
+      // all indexed
+    }
+    assertFalse( index.isInString() );
+  }
+
+  @Test
+  public void rejectsTheRelaxedSyntaxOutsideStrings() throws IOException {
+    String[] relaxed = { "{'a':1}", "[1,/* two */2]", "[1]// end", "[\"a\",\\\"]" };
+    for ( String json : relaxed ) {
+      byte[] buf = json.getBytes( StandardCharsets.UTF_8 );
+      StructuralIndex index = new StructuralIndex( buf, 0, buf.length );
+      try {
+        while ( index.next() >= 0 ) {
+          // all indexed
+        }
+        fail( json );
+      } catch ( StructuralIndex.UnsupportedInputException e ) {
+        // read by the tokenizer instead
+      }
+    }
+  }
+}
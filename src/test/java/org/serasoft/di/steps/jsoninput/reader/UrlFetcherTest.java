@@ -0,0 +1,232 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.serasoft.di.steps.jsoninput.reader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.serasoft.di.steps.jsoninput.JsonInput;
+import org.serasoft.di.steps.jsoninput.JsonInputData;
+import org.serasoft.di.steps.jsoninput.JsonInputMeta;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class UrlFetcherTest {
+
+  private static final String ETAG = "\"v1\"";
+
+  private HttpServer server;
+  private String base;
+  private final AtomicInteger bodiesSent = new AtomicInteger();
+
+  @Before
+  public void startServer() throws IOException {
+    server = HttpServer.create( new InetSocketAddress( "127.0.0.1", 0 ), 0 );
+    server.createContext( "/ok", exchange -> send( exchange, 200, "{\"ok\":true}" ) );
+    server.createContext( "/etag", exchange -> {
+      if ( ETAG.equals( exchange.getRequestHeaders().getFirst( "If-None-Match" ) ) ) {
+        exchange.sendResponseHeaders( 304, -1 );
+        exchange.close();
+      } else {
+        exchange.getResponseHeaders().set( "ETag", ETAG );
+        send( exchange, 200, "{\"cached\":1}" );
+      }
+    } );
+    server.createContext( "/missing", exchange -> send( exchange, 404, "not found" ) );
+    server.createContext( "/stalled", exchange -> {
+      try {
+        Thread.sleep( 5000 );
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+      }
+      send( exchange, 200, "late" );
+    } );
+    server.createContext( "/delayed/", exchange -> {
+      // the first urls answer last
+      int n = Integer.parseInt( exchange.getRequestURI().getPath().substring( "/delayed/".length() ) );
+      try {
+        Thread.sleep( ( 5 - n ) * 100L );
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+      }
+      send( exchange, 200, "{\"n\":" + n + "}" );
+    } );
+    server.setExecutor( Executors.newCachedThreadPool() );
+    server.start();
+    base = "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  @After
+  public void stopServer() {
+    server.stop( 0 );
+  }
+
+  private void send( HttpExchange exchange, int status, String body ) throws IOException {
+    byte[] bytes = body.getBytes( StandardCharsets.UTF_8 );
+    exchange.sendResponseHeaders( status, bytes.length );
+    try ( OutputStream out = exchange.getResponseBody() ) {
+      out.write( bytes );
+    }
+    if ( status == 200 ) {
+      bodiesSent.incrementAndGet();
+    }
+  }
+
+  @Test
+  public void fetchesTheBody() throws Exception {
+    try ( UrlFetcher fetcher = new UrlFetcher( 2, false ) ) {
+      assertEquals( "{\"ok\":true}", new String( fetcher.fetch( base + "/ok" ), StandardCharsets.UTF_8 ) );
+      assertEquals( 1, fetcher.getRequests() );
+      assertEquals( 11, fetcher.getBytes() );
+    }
+  }
+
+  @Test
+  public void givesTheCachedBodyBackWhenNotModified() throws Exception {
+    try ( UrlFetcher fetcher = new UrlFetcher( 2, true ) ) {
+      byte[] first = fetcher.fetch( base + "/etag" );
+      byte[] second = fetcher.fetch( base + "/etag" );
+      assertSame( first, second );
+      assertEquals( 1, fetcher.getNotModified() );
+      assertEquals( 1, bodiesSent.get() );
+    }
+  }
+
+  @Test
+  public void failsOnAnErrorStatus() throws Exception {
+    try ( UrlFetcher fetcher = new UrlFetcher( 2, false ) ) {
+      fetcher.fetch( base + "/missing" );
+      fail( "a 404 must fail" );
+    } catch ( IOException e ) {
+      // the error path
+    }
+  }
+
+  @Test( timeout = 4000 )
+  public void failsOnAStalledServer() throws Exception {
+    try ( UrlFetcher fetcher = new UrlFetcher( 1, false, 500 ) ) {
+      fetcher.fetch( base + "/stalled" );
+      fail( "a stalled server must time out" );
+    } catch ( IOException e ) {
+      // timed out
+    }
+  }
+
+  @Test
+  public void keepsTheOrderOfTheRowsWithSeveralFetchesAtOnce() throws Exception {
+    Object[][] rows = new Object[ 5 ][];
+    for ( int i = 0; i < rows.length; i++ ) {
+      rows[ i ] = new Object[] { base + "/delayed/" + i };
+    }
+    InputsReader.ErrorHandler errorHandler = mock( InputsReader.ErrorHandler.class );
+    JsonInputData data = new JsonInputData();
+    Iterator<InputStream> inputs = urlInputs( rows, 4, data, errorHandler );
+
+    for ( int i = 0; i < rows.length; i++ ) {
+      assertTrue( inputs.hasNext() );
+      InputStream in = inputs.next();
+      assertArrayEquals( rows[ i ], data.readrow );
+      assertEquals( "{\"n\":" + i + "}", IOUtils.toString( in, StandardCharsets.UTF_8 ) );
+    }
+    assertFalse( inputs.hasNext() );
+    verify( errorHandler, never() ).urlError( anyString(), any( Exception.class ) );
+    ( (InputsReader.UrlContentIterator) inputs ).close();
+  }
+
+  @Test
+  public void reportsAnErrorStatusToTheErrorHandler() throws Exception {
+    Object[][] rows = { { base + "/ok" }, { base + "/missing" }, { base + "/ok" } };
+    InputsReader.ErrorHandler errorHandler = mock( InputsReader.ErrorHandler.class );
+    JsonInputData data = new JsonInputData();
+    Iterator<InputStream> inputs = urlInputs( rows, 2, data, errorHandler );
+
+    assertEquals( "{\"ok\":true}", IOUtils.toString( inputs.next(), StandardCharsets.UTF_8 ) );
+    assertNull( inputs.next() );
+    verify( errorHandler ).urlError( eq( base + "/missing" ), any( IOException.class ) );
+    assertEquals( "{\"ok\":true}", IOUtils.toString( inputs.next(), StandardCharsets.UTF_8 ) );
+    assertFalse( inputs.hasNext() );
+    ( (InputsReader.UrlContentIterator) inputs ).close();
+  }
+
+  /**
+   * @return the inputs of a step reading the urls of the first field of the rows
+   */
+  private Iterator<InputStream> urlInputs( Object[][] rows, int concurrency, JsonInputData data,
+                                           InputsReader.ErrorHandler errorHandler ) throws Exception {
+    final Deque<Object[]> input = new ArrayDeque<>();
+    for ( Object[] row : rows ) {
+      input.add( row );
+    }
+    JsonInput step = mock( JsonInput.class );
+    when( step.getRow() ).thenAnswer( new Answer<Object[]>() {
+      @Override
+      public Object[] answer( InvocationOnMock invocation ) {
+        return input.poll();
+      }
+    } );
+    when( step.environmentSubstitute( anyString() ) ).thenAnswer( new Answer<String>() {
+      @Override
+      public String answer( InvocationOnMock invocation ) {
+        return (String) invocation.getArguments()[ 0 ];
+      }
+    } );
+    JsonInputMeta meta = mock( JsonInputMeta.class );
+    when( meta.isInFields() ).thenReturn( true );
+    when( meta.getIsAFile() ).thenReturn( false );
+    when( meta.isReadUrl() ).thenReturn( true );
+    when( meta.getUrlConcurrency() ).thenReturn( concurrency );
+    when( meta.isUrlCache() ).thenReturn( false );
+    data.indexSourceField = 0;
+    return new InputsReader( step, meta, data, errorHandler ).iterator();
+  }
+}
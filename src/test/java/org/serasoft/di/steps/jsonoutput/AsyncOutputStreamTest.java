@@ -0,0 +1,242 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.serasoft.di.steps.jsonoutput;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncOutputStreamTest {
+
+    /**
+     * A target that can be slow, hold its writes or fail them
+     */
+    private static class Target extends OutputStream {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        volatile long delayMillis;
+        volatile boolean failing;
+        volatile CountDownLatch hold;
+        volatile int flushes;
+        volatile boolean closed;
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            try {
+                if (hold != null) {
+                    hold.await();
+                }
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            if (failing) {
+                throw new IOException("disk full");
+            }
+            synchronized (bytes) {
+                bytes.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        int size() {
+            synchronized (bytes) {
+                return bytes.size();
+            }
+        }
+    }
+
+    private Target target;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        target = new Target();
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test(timeout = 30000)
+    public void writesAllTheBytesToASlowTarget() throws IOException {
+        target.delayMillis = 1;
+        byte[] data = new byte[20000];
+        new Random(42).nextBytes(data);
+        AsyncOutputStream out = new AsyncOutputStream(target, 256, 3, "test");
+        int off = 0;
+        while (off < data.length) {
+            if (off % 3 == 0) {
+                out.write(data[off++]);
+            } else {
+                int len = Math.min(data.length - off, 1 + off % 700);
+                out.write(data, off, len);
+                off += len;
+            }
+        }
+        out.close();
+        assertArrayEquals(data, target.bytes.toByteArray());
+        assertTrue(target.closed);
+    }
+
+    @Test(timeout = 30000)
+    public void flushWaitsForTheBytesToBeWritten() throws IOException {
+        target.delayMillis = 50;
+        AsyncOutputStream out = new AsyncOutputStream(target, 1024, 4, "test");
+        out.write(new byte[100]);
+        out.flush();
+        assertEquals(100, target.size());
+        assertEquals(1, target.flushes);
+        out.write(new byte[10]);
+        out.flush();
+        assertEquals(110, target.size());
+        assertEquals(2, target.flushes);
+        out.close();
+    }
+
+    @Test(timeout = 30000)
+    public void throwsTheFailureOfTheTargetOnAWrite() throws IOException {
+        target.failing = true;
+        AsyncOutputStream out = new AsyncOutputStream(target, 16, 2, "test");
+        try {
+            // the failure is known once a full buffer is written
+            for (int i = 0; i < 1000000; i++) {
+                out.write(new byte[16]);
+            }
+            fail();
+        } catch (IOException e) {
+            assertEquals("disk full", e.getMessage());
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void throwsTheFailureOfTheTargetOnAFlush() throws IOException {
+        target.failing = true;
+        AsyncOutputStream out = new AsyncOutputStream(target, 1024, 2, "test");
+        out.write(new byte[10]);
+        try {
+            out.flush();
+            fail();
+        } catch (IOException e) {
+            assertEquals("disk full", e.getMessage());
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void throwsTheFailureOfTheTargetOnClose() throws IOException {
+        target.failing = true;
+        AsyncOutputStream out = new AsyncOutputStream(target, 1024, 2, "test");
+        out.write(new byte[10]);
+        try {
+            out.close();
+            fail();
+        } catch (IOException e) {
+            assertEquals("disk full", e.getMessage());
+        }
+        assertTrue(target.closed);
+    }
+
+    @Test(timeout = 30000)
+    public void closesOnceAfterAFailure() throws IOException {
+        target.failing = true;
+        AsyncOutputStream out = new AsyncOutputStream(target, 1024, 2, "test");
+        out.write(new byte[10]);
+        try {
+            out.flush();
+            fail();
+        } catch (IOException e) {
+            // the failure of the target
+        }
+        try {
+            out.close();
+            fail();
+        } catch (IOException e) {
+            assertEquals("disk full", e.getMessage());
+        }
+        assertTrue(target.closed);
+        // already closed
+        out.close();
+        try {
+            out.write(1);
+            fail();
+        } catch (IOException e) {
+            assertEquals("Stream closed", e.getMessage());
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void waitsForTheOnlyBufferToBeWritten() throws Exception {
+        target.hold = new CountDownLatch(1);
+        final AsyncOutputStream out = new AsyncOutputStream(target, 4, 1, "test");
+        // the first buffer is handed off, the second one waits for it to be written
+        Future<?> writes = executor.submit(() -> {
+            out.write(new byte[]{1, 2, 3, 4, 5, 6});
+            return null;
+        });
+        try {
+            writes.get(300, TimeUnit.MILLISECONDS);
+            fail();
+        } catch (TimeoutException e) {
+            // held by the target
+        }
+        assertFalse(writes.isDone());
+        assertEquals(0, target.size());
+
+        target.hold.countDown();
+        writes.get();
+        out.close();
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 6}, target.bytes.toByteArray());
+    }
+}
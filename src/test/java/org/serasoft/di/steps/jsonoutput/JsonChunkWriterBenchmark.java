@@ -0,0 +1,122 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.serasoft.di.steps.jsonoutput;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.pentaho.di.core.exception.KettleException;
+
+/**
+ * Compares the chunk wrapped in its bloc as the step wrote it before {@link JsonChunkWriter}, serialized, read back
+ * as a tree and serialized again, with the chunk writer streaming the same items once.
+ * <p>
+ * Run with <code>main</code> from the test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class JsonChunkWriterBenchmark {
+
+    private static final String BLOC_NAME = "data";
+
+    @Param({"1", "10", "1000", "100000"})
+    public int items;
+
+    private ObjectMapper mapper;
+    private List<ObjectNode> jsonItems;
+    private Object[][] rows;
+    private JsonChunkWriter chunkWriter;
+
+    @Setup
+    public void setUp() {
+        mapper = new ObjectMapper();
+        jsonItems = new ArrayList<>(items);
+        rows = new Object[items][];
+        for (int i = 0; i < items; i++) {
+            ObjectNode item = mapper.createObjectNode();
+            item.put("id", (long) i);
+            item.put("name", "item " + i);
+            item.put("price", i * 1.25);
+            item.put("active", i % 2 == 0);
+            item.putArray("tags").add("a").add("b");
+            jsonItems.add(item);
+            rows[i] = new Object[]{item};
+        }
+        // the items are built the same way for both, only the writing of the chunk is compared
+        chunkWriter = new JsonChunkWriter(BLOC_NAME, false, new JsonChunkWriter.ItemWriter() {
+            @Override
+            public void write(JsonGenerator generator, Object[] row) throws IOException {
+                generator.writeTree((ObjectNode) row[0]);
+            }
+        });
+    }
+
+    @Benchmark
+    public String readTreeRoundTrip() throws IOException {
+        ObjectNode theNode = mapper.createObjectNode();
+        theNode.set(BLOC_NAME, mapper.readTree(mapper.writeValueAsString(
+                jsonItems.size() > 1 ? jsonItems : jsonItems.get(0))));
+        return mapper.writeValueAsString(theNode);
+    }
+
+    @Benchmark
+    public String chunkWriter() throws IOException, KettleException {
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(writer)) {
+            chunkWriter.start(generator);
+            for (Object[] row : rows) {
+                chunkWriter.add(row);
+            }
+            chunkWriter.end();
+        }
+        return writer.toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JsonChunkWriterBenchmark.class.getSimpleName()).build()).run();
+    }
+}
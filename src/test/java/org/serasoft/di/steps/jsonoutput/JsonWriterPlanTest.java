@@ -0,0 +1,279 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.serasoft.di.steps.jsonoutput;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaBigNumber;
+import org.pentaho.di.core.row.value.ValueMetaBoolean;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
+import org.pentaho.di.core.row.value.ValueMetaString;
+
+/**
+ * Checks that the chunks written through the plan are the Json the step wrote from the object nodes of the rows.
+ */
+public class JsonWriterPlanTest {
+
+    private ObjectMapper mapper;
+    private LogChannelInterface log;
+    private RowMeta rowMeta;
+    private List<JsonOutputField> fields;
+
+    @Before
+    public void setUp() {
+        mapper = new ObjectMapper();
+        log = mock(LogChannelInterface.class);
+        rowMeta = new RowMeta();
+        fields = new ArrayList<>();
+    }
+
+    private void addField(ValueMetaInterface valueMeta, String elementName, boolean removeIfBlank,
+                          boolean jsonFragment) {
+        rowMeta.addValueMeta(valueMeta);
+        JsonOutputField field = new JsonOutputField();
+        field.setFieldName(valueMeta.getName());
+        field.setElementName(elementName);
+        field.setRemoveIfBlank(removeIfBlank);
+        field.setJSONFragment(jsonFragment);
+        fields.add(field);
+    }
+
+    private void addField(ValueMetaInterface valueMeta, String elementName) {
+        addField(valueMeta, elementName, false, false);
+    }
+
+    private void addAllTypes(boolean removeIfBlank) {
+        addField(new ValueMetaString("name"), "name", removeIfBlank, false);
+        addField(new ValueMetaInteger("id"), "id", removeIfBlank, false);
+        addField(new ValueMetaNumber("price"), "price", removeIfBlank, false);
+        addField(new ValueMetaBigNumber("amount"), "amount", removeIfBlank, false);
+        addField(new ValueMetaBoolean("active"), "active", removeIfBlank, false);
+        addField(new ValueMetaString("attributes"), "attributes", removeIfBlank, true);
+    }
+
+    /**
+     * The object node of a row, as the step built it before the plan: the fields put in their order, a null left out
+     * when blank values are removed, a fragment that can not be read leaving the member as it was.
+     */
+    private ObjectNode itemNode(Object[] row) throws KettleException {
+        ObjectNode itemNode = mapper.createObjectNode();
+        for (int i = 0; i < fields.size(); i++) {
+            JsonOutputField field = fields.get(i);
+            ValueMetaInterface v = rowMeta.getValueMeta(i);
+            String name = field.getElementName();
+            switch (v.getType()) {
+                case ValueMetaInterface.TYPE_BOOLEAN:
+                    Boolean boolValue = v.getBoolean(row[i]);
+                    if (boolValue != null || !field.isRemoveIfBlank()) {
+                        itemNode.put(name, boolValue);
+                    }
+                    break;
+                case ValueMetaInterface.TYPE_INTEGER:
+                    Long integerValue = v.getInteger(row[i]);
+                    if (integerValue != null || !field.isRemoveIfBlank()) {
+                        itemNode.put(name, integerValue);
+                    }
+                    break;
+                case ValueMetaInterface.TYPE_NUMBER:
+                    Double numberValue = v.getNumber(row[i]);
+                    if (numberValue != null || !field.isRemoveIfBlank()) {
+                        itemNode.put(name, numberValue);
+                    }
+                    break;
+                case ValueMetaInterface.TYPE_BIGNUMBER:
+                    BigDecimal bignumberValue = v.getBigNumber(row[i]);
+                    if (bignumberValue != null || !field.isRemoveIfBlank()) {
+                        itemNode.put(name, bignumberValue);
+                    }
+                    break;
+                default:
+                    String value = v.getString(row[i]);
+                    if (value != null && field.isJSONFragment()) {
+                        try {
+                            itemNode.set(name, mapper.readTree(value));
+                        } catch (IOException e) {
+                            // left as it was
+                        }
+                    } else if (value != null || !field.isRemoveIfBlank()) {
+                        itemNode.put(name, value);
+                    }
+            }
+        }
+        return itemNode;
+    }
+
+    /**
+     * The Json of a chunk as the step wrote it from the object nodes of its rows.
+     */
+    private String expected(String blocName, boolean arrayWithSingleInstance, Object[]... rows)
+            throws IOException, KettleException {
+        List<ObjectNode> jsonItems = new ArrayList<>();
+        for (Object[] row : rows) {
+            jsonItems.add(itemNode(row));
+        }
+        Object items = jsonItems.size() > 1 || arrayWithSingleInstance ? jsonItems : jsonItems.get(0);
+        if (blocName.isEmpty()) {
+            return mapper.writeValueAsString(items);
+        }
+        ObjectNode theNode = mapper.createObjectNode();
+        theNode.set(blocName, mapper.readTree(mapper.writeValueAsString(items)));
+        return mapper.writeValueAsString(theNode);
+    }
+
+    private String written(String blocName, boolean arrayWithSingleInstance, Object[]... rows)
+            throws IOException, KettleException {
+        int[] fieldIndexes = new int[fields.size()];
+        for (int i = 0; i < fieldIndexes.length; i++) {
+            fieldIndexes[i] = i;
+        }
+        JsonWriterPlan plan = new JsonWriterPlan(rowMeta, fields.toArray(new JsonOutputField[fields.size()]),
+                fieldIndexes, mapper, log);
+        JsonChunkWriter chunkWriter = new JsonChunkWriter(blocName, arrayWithSingleInstance, plan);
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(writer)) {
+            chunkWriter.start(generator);
+            for (Object[] row : rows) {
+                chunkWriter.add(row);
+            }
+            chunkWriter.end();
+        }
+        return writer.toString();
+    }
+
+    private void assertWritten(String blocName, boolean arrayWithSingleInstance, Object[]... rows)
+            throws IOException, KettleException {
+        assertEquals(expected(blocName, arrayWithSingleInstance, rows),
+                written(blocName, arrayWithSingleInstance, rows));
+    }
+
+    private static Object[] row(Object... values) {
+        return Arrays.copyOf(values, values.length);
+    }
+
+    @Test
+    public void writesASingleItemAloneOrInAnArray() throws Exception {
+        addAllTypes(false);
+        Object[] row = row("first", 1L, 1.5, new BigDecimal("2.50"), true, "{\"color\":\"red\",\"size\":[1,2]}");
+        assertWritten("", false, row);
+        assertWritten("", true, row);
+        assertEquals("{\"name\":\"first\",\"id\":1,\"price\":1.5,\"amount\":2.5,\"active\":true,"
+                + "\"attributes\":{\"color\":\"red\",\"size\":[1,2]}}", written("", false, row));
+    }
+
+    @Test
+    public void writesSeveralItemsInAnArray() throws Exception {
+        addAllTypes(false);
+        Object[] first = row("first", 1L, 1.5, new BigDecimal("2.50"), true, "[1,\"two\",null]");
+        Object[] second = row("second \"quoted\"", -2L, -0.25, new BigDecimal("-7"), false, "\"text\"");
+        Object[] third = row("third", Long.MAX_VALUE, 1e300, new BigDecimal("123456789.123456789"), null, "3");
+        assertWritten("", false, first, second, third);
+        assertWritten("", true, first, second, third);
+    }
+
+    @Test
+    public void wrapsTheItemsInTheBloc() throws Exception {
+        addAllTypes(false);
+        Object[] first = row("first", 1L, 1.5, new BigDecimal("2.5"), true, "{\"a\":[]}");
+        Object[] second = row("second", 2L, 3.0, new BigDecimal("4"), false, "{}");
+        assertWritten("data", false, first);
+        assertWritten("data", true, first);
+        assertWritten("data", false, first, second);
+        assertWritten("data", true, first, second);
+    }
+
+    @Test
+    public void writesTheLastNonBlankValueOfAnElementAtItsFirstPosition() throws Exception {
+        addField(new ValueMetaString("first"), "a");
+        addField(new ValueMetaInteger("other"), "b");
+        addField(new ValueMetaString("second"), "a", true, false);
+        addField(new ValueMetaInteger("third"), "c");
+        addField(new ValueMetaString("fourth"), "c");
+        assertWritten("", true,
+                row("one", 1L, "two", 3L, "four"),
+                row("one", 1L, null, 3L, null),
+                row(null, null, null, null, "four"));
+        assertEquals("{\"a\":\"two\",\"b\":1,\"c\":\"four\"}", written("", false, row("one", 1L, "two", 3L, "four")));
+        assertEquals("{\"a\":\"one\",\"b\":1,\"c\":null}", written("", false, row("one", 1L, null, 3L, null)));
+    }
+
+    @Test
+    public void leavesOutTheBlankValuesToRemove() throws Exception {
+        addAllTypes(true);
+        assertWritten("", true,
+                row(null, null, null, null, null, null),
+                row("name", null, 1.0, null, false, null));
+        assertEquals("{}", written("", false, row(null, null, null, null, null, null)));
+    }
+
+    @Test
+    public void writesTheBlankValuesToKeepAsNull() throws Exception {
+        addAllTypes(false);
+        assertWritten("", false, row(null, null, null, null, null, null));
+    }
+
+    @Test
+    public void writesBigNumbersWithoutTrailingZeros() throws Exception {
+        addField(new ValueMetaBigNumber("amount"), "amount");
+        assertWritten("", true,
+                row(new BigDecimal("1.500")),
+                row(new BigDecimal("0.000")),
+                row(new BigDecimal("100")),
+                row(new BigDecimal("-0.0100")),
+                row(new BigDecimal("12345678901234567890.1234567890")));
+        assertEquals("[{\"amount\":1.5},{\"amount\":0},{\"amount\":1E+2}]",
+                written("", true,
+                        row(new BigDecimal("1.500")), row(new BigDecimal("0.000")), row(new BigDecimal("100"))));
+    }
+
+    @Test
+    public void keepsTheEarlierFieldOfAnElementWhenAFragmentIsNotJson() throws Exception {
+        addField(new ValueMetaString("text"), "value");
+        addField(new ValueMetaString("json"), "value", false, true);
+        Object[] good = row("text", "{\"json\":true}");
+        Object[] bad = row("text", "{not json");
+        assertWritten("", true, good, bad);
+        assertEquals("{\"value\":\"text\"}", written("", false, bad));
+        verify(log, atLeastOnce()).logError(anyString());
+    }
+}